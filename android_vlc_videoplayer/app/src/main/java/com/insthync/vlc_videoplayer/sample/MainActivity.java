@@ -3,17 +3,38 @@ package com.insthync.vlc_videoplayer.sample;
 import android.net.Uri;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.util.Log;
 
+import com.insthync.vlc_videoplayer.library.FileResumePositionStore;
+import com.insthync.vlc_videoplayer.library.HttpCacheProxy;
+import com.insthync.vlc_videoplayer.library.NetworkCachingController;
+import com.insthync.vlc_videoplayer.library.ThumbnailService;
 import com.insthync.vlc_videoplayer.library.VLCVideoPlayer;
 
+import java.io.IOException;
+
 public class MainActivity extends AppCompatActivity {
 
+    private static final String TAG = "MainActivity";
+
     private VLCVideoPlayer videoPlayer;
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        // builds the engine while the layout inflates
+        VLCVideoPlayer.warmUp(this);
         setContentView(R.layout.activity_main);
 
         videoPlayer = (VLCVideoPlayer)findViewById(R.id.videoPlayer);
+        try {
+            // the clip loops, so cache it instead of downloading it again every time
+            videoPlayer.setCacheProxy(HttpCacheProxy.get(this));
+        } catch (IOException e) {
+            Log.w(TAG, "Could not start cache proxy, streaming directly", e);
+        }
+        if (ThumbnailService.isSupported())
+            videoPlayer.setThumbnailService(ThumbnailService.get(this));
+        videoPlayer.setResumePositionStore(FileResumePositionStore.get(this));
+        videoPlayer.setNetworkCachingController(new NetworkCachingController());
         videoPlayer.setSource(Uri.parse("http://clips.vorwaerts-gmbh.de/big_buck_bunny.mp4"));
         videoPlayer.setLoop(true);
         videoPlayer.play();
@@ -23,12 +44,14 @@ public class MainActivity extends AppCompatActivity {
     @Override
     public void onPause() {
         super.onPause();
-        videoPlayer.pause();
+        // keep the soundtrack going without decoding or drawing video
+        videoPlayer.setAudioOnly(true);
     }
 
     @Override
     public void onResume() {
         super.onResume();
+        videoPlayer.setAudioOnly(false);
         videoPlayer.play();
     }
 }
@@ -0,0 +1,114 @@
+package com.insthync.vlc_videoplayer.library;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the time from inflating a player to its first rendered frame, with the engine
+ * built lazily on the main thread versus warmed up by {@link VLCVideoPlayer#warmUp(Context)}
+ * beforehand. Results are logged and reported as instrumentation status.
+ * <p>
+ * The native libraries stay loaded once the first run has loaded them, so only the first
+ * cold run includes that cost; it is reported separately. Pass {@code -e source <uri>} to
+ * benchmark another source, preferably a local one.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+    private static final String TAG = "StartupBenchmark";
+    private static final String DEFAULT_SOURCE = "http://clips.vorwaerts-gmbh.de/big_buck_bunny.mp4";
+    private static final int RUNS = 5;
+    private static final long FIRST_FRAME_TIMEOUT_MS = 30000;
+    private static final long POLL_MS = 5;
+
+    @Test
+    public void inflateToFirstFrame() throws Exception {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        String source = arguments.getString("source", DEFAULT_SOURCE);
+        LibVLCPool.setIdleTimeout(0);
+
+        long[] cold = new long[RUNS];
+        long[] warm = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            cold[i] = run(instrumentation, source, false);
+            warm[i] = run(instrumentation, source, true);
+        }
+
+        long firstCold = cold[0];
+        Arrays.sort(cold);
+        Arrays.sort(warm);
+        Bundle results = new Bundle();
+        results.putLong("first_cold_ms", firstCold);
+        results.putLong("median_cold_ms", cold[RUNS / 2]);
+        results.putLong("median_warm_ms", warm[RUNS / 2]);
+        Log.i(TAG, "Inflate to first frame: first " + firstCold + "ms, cold median "
+                + cold[RUNS / 2] + "ms, warmed up median " + warm[RUNS / 2] + "ms");
+        instrumentation.sendStatus(0, results);
+    }
+
+    private static long run(Instrumentation instrumentation, String source, boolean warmUp) throws Exception {
+        Context context = instrumentation.getTargetContext();
+        evictEngines(instrumentation);
+        if (warmUp) {
+            VLCVideoPlayer.warmUp(context);
+            // as if warmed up at application start, well before the player is needed
+            long deadline = SystemClock.uptimeMillis() + FIRST_FRAME_TIMEOUT_MS;
+            while (LibVLCPool.size() == 0 && SystemClock.uptimeMillis() < deadline)
+                SystemClock.sleep(POLL_MS);
+        }
+
+        Intent intent = new Intent(Intent.ACTION_VIEW, Uri.parse(source), context, StartupBenchmarkActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        final StartupBenchmarkActivity activity = (StartupBenchmarkActivity) instrumentation.startActivitySync(intent);
+        final long[] firstFrameMs = {-1};
+        long deadline = SystemClock.uptimeMillis() + FIRST_FRAME_TIMEOUT_MS;
+        while (firstFrameMs[0] < 0 && SystemClock.uptimeMillis() < deadline) {
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    if (activity.player.getPlaybackMetrics().getStartupCount() > 0)
+                        firstFrameMs[0] = SystemClock.uptimeMillis();
+                }
+            });
+            SystemClock.sleep(POLL_MS);
+        }
+        activity.finish();
+        instrumentation.waitForIdleSync();
+        assertTrue("No first frame within " + FIRST_FRAME_TIMEOUT_MS + "ms", firstFrameMs[0] >= 0);
+        return firstFrameMs[0] - activity.inflateStartMs;
+    }
+
+    /**
+     * Waits until the previous run's activity is gone and its players and engine are released.
+     */
+    private static void evictEngines(Instrumentation instrumentation) {
+        long deadline = SystemClock.uptimeMillis() + FIRST_FRAME_TIMEOUT_MS;
+        while (LibVLCPool.size() > 0) {
+            assertTrue("Engine still in use", SystemClock.uptimeMillis() < deadline);
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    // idle players hold on to their engine until released
+                    VLCPlayerPool.evictIdle();
+                    LibVLCPool.evictIdle();
+                }
+            });
+            SystemClock.sleep(POLL_MS);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.insthync.vlc_videoplayer.library;
+
+import android.app.Activity;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+
+import com.insthync.vlc_videoplayer.library.test.R;
+
+/**
+ * Hosts the player for {@link StartupBenchmark}: inflates it and plays the source passed as
+ * the intent data.
+ */
+public class StartupBenchmarkActivity extends Activity {
+
+    long inflateStartMs;
+    VLCVideoPlayer player;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        inflateStartMs = SystemClock.uptimeMillis();
+        setContentView(R.layout.benchmark_player);
+        player = (VLCVideoPlayer) findViewById(R.id.benchmark_player);
+        player.setPlaybackMetrics(new PlaybackMetrics());
+        Uri source = getIntent().getData();
+        if (source != null)
+            player.setSource(source);
+    }
+}
@@ -0,0 +1,265 @@
+package com.insthync.vlc_videoplayer.library;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * One cached HTTP resource: a sparse data file plus a memory-mapped index.
+ * <p>
+ * The data file is addressed by absolute byte offset and filled in {@link #CHUNK_SIZE}
+ * chunks in whatever order they are requested. The index holds the content length, the
+ * content type, the origin's validator (ETag or Last-Modified) and one bit per chunk telling
+ * whether it is fully present on disk. All methods are thread-safe.
+ */
+final class CacheFile {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final int MAGIC = 0x56434348;
+    private static final int VERSION = 2;
+    private static final int MAX_MIME_LENGTH = 100;
+    private static final int MAX_VALIDATOR_LENGTH = 120;
+    private static final int OFFSET_LENGTH = 8;
+    private static final int OFFSET_CHUNK_SIZE = 16;
+    private static final int OFFSET_MIME = 20;
+    private static final int HEADER_SIZE = 256;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    final String key;
+    private final File mDataFile;
+    private final File mIndexFile;
+
+    private RandomAccessFile mData;
+    private RandomAccessFile mIndex;
+    private MappedByteBuffer mBitmap;
+    private long mContentLength = -1;
+    private String mContentType;
+    private String mValidator;
+    // checked against the origin since this process opened the entry
+    private boolean mValidated;
+    private int mChunkCount;
+    private long mCachedBytes;
+    int refCount;
+
+    CacheFile(File dir, String key) {
+        this.key = key;
+        mDataFile = new File(dir, key + ".data");
+        mIndexFile = new File(dir, key + ".idx");
+    }
+
+    /**
+     * Loads an existing index, if any. Returns false if the entry is not initialized yet.
+     */
+    synchronized boolean load() throws IOException {
+        if (mBitmap != null) return true;
+        if (!mIndexFile.exists() || !mDataFile.exists()) return false;
+
+        RandomAccessFile index = new RandomAccessFile(mIndexFile, "rw");
+        if (index.length() < HEADER_SIZE || index.readInt() != MAGIC || index.readInt() != VERSION) {
+            index.close();
+            delete();
+            return false;
+        }
+        long length = index.readLong();
+        int chunkSize = index.readInt();
+        if (chunkSize != CHUNK_SIZE) {
+            index.close();
+            delete();
+            return false;
+        }
+        int mimeLength = index.readUnsignedShort();
+        byte[] mime = new byte[Math.min(mimeLength, MAX_MIME_LENGTH)];
+        index.readFully(mime);
+        int validatorLength = index.readUnsignedShort();
+        byte[] validator = new byte[Math.min(validatorLength, MAX_VALIDATOR_LENGTH)];
+        index.readFully(validator);
+
+        mIndex = index;
+        mContentLength = length;
+        mContentType = mime.length > 0 ? new String(mime, ASCII) : null;
+        mValidator = validator.length > 0 ? new String(validator, ASCII) : null;
+        mapIndex();
+        // the entry may have been loaded before, recount from the index
+        mCachedBytes = 0;
+        for (int i = 0; i < mChunkCount; i++) {
+            if (hasChunk(i)) mCachedBytes += chunkLength(i);
+        }
+        mData = new RandomAccessFile(mDataFile, "rw");
+        return true;
+    }
+
+    /**
+     * Creates the index for a resource of {@code contentLength} bytes. {@code validator} is the
+     * origin's ETag or Last-Modified value, or null if it sent neither.
+     */
+    synchronized void initialize(long contentLength, String contentType, String validator) throws IOException {
+        if (mBitmap != null) return;
+
+        byte[] mime = contentType != null ? contentType.getBytes(ASCII) : new byte[0];
+        if (mime.length > MAX_MIME_LENGTH) mime = new byte[0];
+        byte[] tag = validator != null ? validator.getBytes(ASCII) : new byte[0];
+        // a validator we cannot store would never match, so the entry would be refetched every time
+        if (tag.length > MAX_VALIDATOR_LENGTH) tag = new byte[0];
+
+        mIndex = new RandomAccessFile(mIndexFile, "rw");
+        mIndex.setLength(0);
+        mIndex.writeInt(MAGIC);
+        mIndex.writeInt(VERSION);
+        mIndex.writeLong(contentLength);
+        mIndex.writeInt(CHUNK_SIZE);
+        mIndex.writeShort(mime.length);
+        mIndex.write(mime);
+        mIndex.writeShort(tag.length);
+        mIndex.write(tag);
+
+        mContentLength = contentLength;
+        mContentType = contentType;
+        mValidator = tag.length > 0 ? validator : null;
+        mValidated = true;
+        mapIndex();
+
+        mData = new RandomAccessFile(mDataFile, "rw");
+        mData.setLength(contentLength);
+    }
+
+    private void mapIndex() throws IOException {
+        mChunkCount = (int) ((mContentLength + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        int bitmapBytes = (mChunkCount + 7) / 8;
+        mIndex.setLength(HEADER_SIZE + bitmapBytes);
+        mBitmap = mIndex.getChannel().map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, bitmapBytes);
+    }
+
+    synchronized boolean isInitialized() {
+        return mBitmap != null;
+    }
+
+    synchronized long getContentLength() {
+        return mContentLength;
+    }
+
+    synchronized String getContentType() {
+        return mContentType;
+    }
+
+    synchronized boolean isValidated() {
+        return mValidated;
+    }
+
+    /**
+     * Whether an origin response of {@code contentLength} bytes with {@code validator} still
+     * describes the cached resource. An entry stored without a validator is only checked by
+     * length, and an unknown ({@code <= 0}) length only by validator.
+     */
+    synchronized boolean matches(long contentLength, String validator) {
+        if (contentLength > 0 && contentLength != mContentLength) return false;
+        return mValidator == null || mValidator.equals(validator);
+    }
+
+    synchronized void setValidated() {
+        mValidated = true;
+    }
+
+    synchronized int getChunkCount() {
+        return mChunkCount;
+    }
+
+    /**
+     * Bytes of completely cached chunks.
+     */
+    synchronized long getCachedBytes() {
+        return mCachedBytes;
+    }
+
+    /**
+     * Size of {@code chunk}; only the last one may be shorter than {@link #CHUNK_SIZE}.
+     */
+    synchronized int chunkLength(int chunk) {
+        return (int) Math.min(CHUNK_SIZE, mContentLength - (long) chunk * CHUNK_SIZE);
+    }
+
+    synchronized boolean hasChunk(int chunk) {
+        return chunk >= 0 && chunk < mChunkCount && (mBitmap.get(chunk >> 3) & (1 << (chunk & 7))) != 0;
+    }
+
+    /**
+     * Marks {@code chunk} as fully written. Returns false if it already was.
+     */
+    synchronized boolean markChunk(int chunk) {
+        if (hasChunk(chunk) || chunk < 0 || chunk >= mChunkCount) return false;
+        int i = chunk >> 3;
+        mBitmap.put(i, (byte) (mBitmap.get(i) | (1 << (chunk & 7))));
+        mCachedBytes += chunkLength(chunk);
+        return true;
+    }
+
+    void write(long offset, byte[] buffer, int count) throws IOException {
+        FileChannel channel;
+        synchronized (this) {
+            if (mData == null) throw new IOException("Cache entry closed");
+            channel = mData.getChannel();
+        }
+        ByteBuffer src = ByteBuffer.wrap(buffer, 0, count);
+        while (src.hasRemaining())
+            offset += channel.write(src, offset);
+    }
+
+    int read(long offset, byte[] buffer, int count) throws IOException {
+        FileChannel channel;
+        synchronized (this) {
+            if (mData == null) throw new IOException("Cache entry closed");
+            channel = mData.getChannel();
+        }
+        return channel.read(ByteBuffer.wrap(buffer, 0, count), offset);
+    }
+
+    synchronized long lastModified() {
+        return mIndexFile.lastModified();
+    }
+
+    synchronized void touch() {
+        //noinspection ResultOfMethodCallIgnored
+        mIndexFile.setLastModified(System.currentTimeMillis());
+    }
+
+    synchronized void close() {
+        if (mBitmap != null) {
+            mBitmap.force();
+            mBitmap = null;
+        }
+        closeQuietly(mIndex);
+        closeQuietly(mData);
+        mIndex = null;
+        mData = null;
+    }
+
+    /**
+     * Deletes the files and forgets the content length, so the entry can be initialized again.
+     */
+    synchronized void delete() {
+        close();
+        mCachedBytes = 0;
+        mContentLength = -1;
+        mContentType = null;
+        mValidator = null;
+        mValidated = false;
+        mChunkCount = 0;
+        //noinspection ResultOfMethodCallIgnored
+        mIndexFile.delete();
+        //noinspection ResultOfMethodCallIgnored
+        mDataFile.delete();
+    }
+
+    private static void closeQuietly(RandomAccessFile file) {
+        if (file == null) return;
+        try {
+            file.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.insthync.vlc_videoplayer.library;
+
+/**
+ * Classifies devices into performance tiers and provides a decoding option preset per tier.
+ * <p>
+ * {@link #classify(DeviceSpecs)} is a pure function of the specs. The presets are plain
+ * {@link VlcOptions.Builder}s, so apps can override any option before building:
+ * <pre>
+ * VlcOptions options = DeviceProfile.newBuilder()
+ *         .setNetworkCaching(3000)
+ *         .build();
+ * </pre>
+ */
+public final class DeviceProfile {
+
+    /** Single/dual core, slow or armv6/MIPS CPUs, or less than 1 GB of RAM. */
+    public static final int TIER_LOW = 0;
+    public static final int TIER_MID = 1;
+    /** Fast quad core or 8+ cores with plenty of RAM. */
+    public static final int TIER_HIGH = 2;
+
+    private static final int LOW_RAM_MB = 1024;
+    private static final int HIGH_RAM_MB = 3072;
+    private static final float LOW_FREQUENCY_MHZ = 1200;
+    private static final float HIGH_FREQUENCY_MHZ = 2000;
+
+    private DeviceProfile() {
+    }
+
+    /**
+     * One of the {@code TIER_*} constants; {@link #TIER_MID} when specs are unknown.
+     */
+    public static int classify(DeviceSpecs specs) {
+        if (specs == null) return TIER_MID;
+
+        if ((specs.hasArmV6 && !specs.hasArmV7) || specs.hasMips)
+            return TIER_LOW;
+        if (specs.totalRamMb > 0 && specs.totalRamMb < LOW_RAM_MB)
+            return TIER_LOW;
+        if (specs.processors <= 2)
+            return TIER_LOW;
+
+        // bogoMIPS only tracks the clock on older ARM kernels; newer ones report the timer rate
+        float speed = specs.frequency > 0 ? specs.frequency : specs.bogoMIPS;
+        if (speed > 0 && speed < LOW_FREQUENCY_MHZ)
+            return TIER_LOW;
+
+        boolean enoughRam = specs.totalRamMb == 0 || specs.totalRamMb >= HIGH_RAM_MB;
+        if (enoughRam && (specs.processors >= 8 || (specs.processors >= 4 && specs.frequency >= HIGH_FREQUENCY_MHZ)))
+            return TIER_HIGH;
+
+        return TIER_MID;
+    }
+
+    /**
+     * Preset for the running device.
+     */
+    public static VlcOptions.Builder newBuilder() {
+        return newBuilder(classify(DeviceSpecs.current()));
+    }
+
+    /**
+     * Preset for {@code tier}: loop filter and frame skipping, decoder threads, caching,
+     * output chroma and resampler.
+     */
+    public static VlcOptions.Builder newBuilder(int tier) {
+        VlcOptions.Builder builder = VlcOptions.newBuilder();
+        switch (tier) {
+            case TIER_LOW:
+                return builder
+                        .setDeblocking(4)
+                        .setFrameSkipEnabled(true)
+                        .setThreads(2)
+                        .setNetworkCaching(3000)
+                        .setFileCaching(1000)
+                        .setChroma(VlcOptions.CHROMA_RGB16)
+                        .setResampler(VlcOptions.RESAMPLER_UGLY);
+            case TIER_HIGH:
+                return builder
+                        .setDeblocking(0)
+                        .setFrameSkipEnabled(false)
+                        .setNetworkCaching(1000)
+                        .setFileCaching(300)
+                        .setChroma(VlcOptions.CHROMA_RGB32)
+                        .setResampler(VlcOptions.RESAMPLER_SOXR);
+            case TIER_MID:
+            default:
+                return builder
+                        .setDeblocking(1)
+                        .setFrameSkipEnabled(false)
+                        .setNetworkCaching(1500)
+                        .setFileCaching(300)
+                        .setChroma(VlcOptions.CHROMA_RGB32)
+                        .setResampler(VlcOptions.RESAMPLER_SOXR);
+        }
+    }
+}
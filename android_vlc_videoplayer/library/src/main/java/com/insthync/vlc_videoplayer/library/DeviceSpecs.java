@@ -0,0 +1,144 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.videolan.libvlc.util.VLCUtil;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable snapshot of the hardware characteristics the decoding heuristics look at.
+ * <p>
+ * {@link #current()} probes the device once (VLCUtil parses /proc/cpuinfo) and memoizes
+ * the result. {@link #parse(String, String, String)} builds the same snapshot from captured
+ * procfs text, so classification can be tested on the JVM.
+ */
+public final class DeviceSpecs {
+
+    private static final Pattern PROCESSOR = Pattern.compile("(?m)^processor\\s*:\\s*\\d+");
+    private static final Pattern CPU_MHZ = Pattern.compile("(?m)^cpu MHz\\s*:\\s*([\\d.]+)");
+    private static final Pattern BOGOMIPS = Pattern.compile("(?mi)^bogomips\\s*:\\s*([\\d.]+)");
+    private static final Pattern CPU_ARCHITECTURE = Pattern.compile("(?m)^CPU architecture\\s*:\\s*(\\d+)");
+    private static final Pattern MIPS_MODEL = Pattern.compile("(?m)^cpu model\\s*:.*MIPS");
+    private static final Pattern MEM_TOTAL = Pattern.compile("(?m)^MemTotal:\\s*(\\d+)\\s*kB");
+
+    private static final Object sLock = new Object();
+    private static DeviceSpecs sCurrent;
+    private static boolean sProbed;
+
+    public final int processors;
+    /** Max CPU frequency in MHz, 0 if unknown. */
+    public final float frequency;
+    public final float bogoMIPS;
+    public final boolean hasArmV6;
+    public final boolean hasArmV7;
+    public final boolean hasMips;
+    /** Total RAM in MB, 0 if unknown. */
+    public final int totalRamMb;
+
+    public DeviceSpecs(int processors, float frequency, float bogoMIPS,
+                       boolean hasArmV6, boolean hasArmV7, boolean hasMips, int totalRamMb) {
+        this.processors = processors;
+        this.frequency = frequency;
+        this.bogoMIPS = bogoMIPS;
+        this.hasArmV6 = hasArmV6;
+        this.hasArmV7 = hasArmV7;
+        this.hasMips = hasMips;
+        this.totalRamMb = totalRamMb;
+    }
+
+    /**
+     * Specs of the running device, or null if they could not be determined.
+     */
+    public static DeviceSpecs current() {
+        synchronized (sLock) {
+            if (!sProbed) {
+                VLCUtil.MachineSpecs m = VLCUtil.getMachineSpecs();
+                if (m != null)
+                    sCurrent = new DeviceSpecs(m.processors, m.frequency, m.bogoMIPS, m.hasArmV6, m.hasArmV7, m.hasMips,
+                            parseTotalRamMb(readFile("/proc/meminfo")));
+                sProbed = true;
+            }
+            return sCurrent;
+        }
+    }
+
+    /**
+     * Builds specs from captured procfs/sysfs text. Any argument may be null.
+     *
+     * @param cpuinfo    contents of /proc/cpuinfo
+     * @param maxFreqKHz contents of /sys/devices/system/cpu/cpu0/cpufreq/cpuinfo_max_freq
+     * @param meminfo    contents of /proc/meminfo
+     */
+    public static DeviceSpecs parse(String cpuinfo, String maxFreqKHz, String meminfo) {
+        if (cpuinfo == null) cpuinfo = "";
+
+        int processors = 0;
+        Matcher m = PROCESSOR.matcher(cpuinfo);
+        while (m.find())
+            processors++;
+
+        float frequency = 0;
+        if (maxFreqKHz != null && !maxFreqKHz.trim().isEmpty()) {
+            try {
+                frequency = Long.parseLong(maxFreqKHz.trim()) / 1000f;
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        m = CPU_MHZ.matcher(cpuinfo);
+        while (m.find())
+            frequency = Math.max(frequency, Float.parseFloat(m.group(1)));
+
+        float bogoMIPS = 0;
+        m = BOGOMIPS.matcher(cpuinfo);
+        if (m.find())
+            bogoMIPS = Float.parseFloat(m.group(1));
+
+        int architecture = 0;
+        m = CPU_ARCHITECTURE.matcher(cpuinfo);
+        if (m.find())
+            architecture = Integer.parseInt(m.group(1));
+        boolean hasArmV7 = architecture >= 7 || cpuinfo.contains("ARMv7") || cpuinfo.contains("AArch64");
+        boolean hasArmV6 = hasArmV7 || architecture == 6 || cpuinfo.contains("ARMv6");
+        boolean hasMips = MIPS_MODEL.matcher(cpuinfo).find();
+
+        return new DeviceSpecs(Math.max(1, processors), frequency, bogoMIPS, hasArmV6, hasArmV7, hasMips,
+                parseTotalRamMb(meminfo));
+    }
+
+    static int parseTotalRamMb(String meminfo) {
+        if (meminfo == null) return 0;
+        Matcher m = MEM_TOTAL.matcher(meminfo);
+        return m.find() ? (int) (Long.parseLong(m.group(1)) / 1024) : 0;
+    }
+
+    private static String readFile(String path) {
+        StringBuilder sb = new StringBuilder();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(path));
+            String line;
+            while ((line = reader.readLine()) != null)
+                sb.append(line).append('\n');
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceSpecs{processors=" + processors + ", frequency=" + frequency + ", bogoMIPS=" + bogoMIPS
+                + ", armv6=" + hasArmV6 + ", armv7=" + hasArmV7 + ", mips=" + hasMips
+                + ", ramMb=" + totalRamMb + "}";
+    }
+}
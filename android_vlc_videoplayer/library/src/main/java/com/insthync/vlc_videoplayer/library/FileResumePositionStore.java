@@ -0,0 +1,391 @@
+package com.insthync.vlc_videoplayer.library;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ResumePositionStore} backed by an append-only log file.
+ * <p>
+ * Lookups and updates only touch an in-memory map. Updates are coalesced per key and
+ * appended to the log in batches on a background thread; the log is rewritten from the
+ * map once it holds too many superseded records. At most {@code maxEntries} titles are
+ * kept, dropping the least recently updated ones.
+ * <p>
+ * The log is loaded on the background thread and nothing waits for it: updates made
+ * meanwhile are buffered and applied on top of it, and lookups only see those updates until
+ * it is loaded. Use {@link #whenLoaded(Runnable)} to look a key up again once it is.
+ */
+public class FileResumePositionStore implements ResumePositionStore {
+
+    private static final String TAG = "ResumePositionStore";
+
+    public static final int DEFAULT_MAX_ENTRIES = 5000;
+    public static final long DEFAULT_FLUSH_DELAY_MS = 5000;
+    private static final String FILE_NAME = "vlc-resume-positions.log";
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    // compact once the log holds this many records more than there are live entries
+    private static final int COMPACT_SLACK = 1000;
+
+    private static FileResumePositionStore sInstance;
+
+    private final File mFile;
+    private final int mMaxEntries;
+    private final long mFlushDelayMs;
+    private final ScheduledExecutorService mExecutor;
+    private final CountDownLatch mLoaded = new CountDownLatch(1);
+
+    // access to both maps is guarded by mPositions
+    private final LinkedHashMap<String, Long> mPositions = new LinkedHashMap<>(64, 0.75f, false);
+    private final Map<String, Long> mDirty = new HashMap<>();
+    // updates made before the log is loaded, applied on top of it
+    private final Map<String, Long> mEarlyUpdates = new LinkedHashMap<>();
+    private final List<Runnable> mLoadCallbacks = new ArrayList<>();
+    private boolean mLoadDone;
+    private boolean mFlushScheduled;
+    private int mLogRecords;
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            writeDirty();
+        }
+    };
+
+    /**
+     * The shared store, kept in the app's files dir.
+     */
+    public static synchronized FileResumePositionStore get(Context context) {
+        if (sInstance == null)
+            sInstance = new FileResumePositionStore(new File(context.getFilesDir(), FILE_NAME),
+                    DEFAULT_MAX_ENTRIES, DEFAULT_FLUSH_DELAY_MS);
+        return sInstance;
+    }
+
+    public FileResumePositionStore(File file, int maxEntries, long flushDelayMs) {
+        mFile = file;
+        mMaxEntries = maxEntries;
+        mFlushDelayMs = flushDelayMs;
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ResumePositionStore");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    /**
+     * Answers from memory without waiting for the log; before it is loaded only positions
+     * put since then are known.
+     */
+    @Override
+    public long get(String key) {
+        synchronized (mPositions) {
+            Long position = mLoadDone ? mPositions.get(key) : mEarlyUpdates.get(key);
+            return position != null ? position : NO_POSITION;
+        }
+    }
+
+    public boolean isLoaded() {
+        synchronized (mPositions) {
+            return mLoadDone;
+        }
+    }
+
+    /**
+     * Runs {@code callback} once the log is loaded: right away on the calling thread if it
+     * already is, otherwise on the store's thread.
+     */
+    public void whenLoaded(Runnable callback) {
+        synchronized (mPositions) {
+            if (!mLoadDone) {
+                mLoadCallbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    @Override
+    public void put(String key, long positionMs) {
+        if (positionMs < 0) {
+            remove(key);
+            return;
+        }
+        synchronized (mPositions) {
+            if (!mLoadDone) {
+                mEarlyUpdates.put(key, positionMs);
+                return;
+            }
+            putLocked(key, positionMs);
+        }
+    }
+
+    private void putLocked(String key, long positionMs) {
+        // re-insert so iteration order is least recently updated first
+        mPositions.remove(key);
+        mPositions.put(key, positionMs);
+        mDirty.put(key, positionMs);
+        if (mPositions.size() > mMaxEntries) {
+            Iterator<String> it = mPositions.keySet().iterator();
+            String eldest = it.next();
+            it.remove();
+            mDirty.put(eldest, NO_POSITION);
+        }
+        scheduleFlush();
+    }
+
+    @Override
+    public void remove(String key) {
+        synchronized (mPositions) {
+            if (!mLoadDone) {
+                mEarlyUpdates.put(key, NO_POSITION);
+                return;
+            }
+            removeLocked(key);
+        }
+    }
+
+    private void removeLocked(String key) {
+        if (mPositions.remove(key) == null) return;
+        mDirty.put(key, NO_POSITION);
+        scheduleFlush();
+    }
+
+    public int size() {
+        awaitLoaded();
+        synchronized (mPositions) {
+            return mPositions.size();
+        }
+    }
+
+    /**
+     * Writes pending updates now and waits for them to hit the disk.
+     */
+    public void flush() {
+        try {
+            mExecutor.submit(mFlush).get();
+        } catch (Exception e) {
+            Log.w(TAG, "Flush failed", e);
+        }
+    }
+
+    private void scheduleFlush() {
+        if (mFlushScheduled) return;
+        mFlushScheduled = true;
+        mExecutor.schedule(mFlush, mFlushDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void awaitLoaded() {
+        try {
+            mLoaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // executor thread only
+    private void load() {
+        int records = 0;
+        // end of the last complete record
+        long validLength = 0;
+        byte[] log = null;
+        try {
+            log = readFully(mFile);
+            ByteArrayInputStream bytes = new ByteArrayInputStream(log);
+            DataInputStream in = new DataInputStream(bytes);
+            synchronized (mPositions) {
+                while (bytes.available() > 0) {
+                    byte op = in.readByte();
+                    String key = in.readUTF();
+                    if (op == OP_PUT) {
+                        long position = in.readLong();
+                        mPositions.remove(key);
+                        mPositions.put(key, position);
+                    } else if (op == OP_REMOVE) {
+                        mPositions.remove(key);
+                    } else {
+                        throw new IOException("Unknown record type " + op);
+                    }
+                    records++;
+                    validLength = log.length - bytes.available();
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // nothing stored yet
+        } catch (IOException e) {
+            if (log == null) {
+                Log.w(TAG, "Failed to read " + mFile, e);
+            } else {
+                // a torn or corrupt tail, e.g. from a crash mid-append
+                Log.w(TAG, "Dropping " + (log.length - validLength) + " bytes after the last complete record", e);
+                truncate(validLength);
+            }
+        } finally {
+            List<Runnable> callbacks;
+            synchronized (mPositions) {
+                mLogRecords = records;
+                while (mPositions.size() > mMaxEntries) {
+                    Iterator<String> it = mPositions.keySet().iterator();
+                    it.next();
+                    it.remove();
+                }
+                mLoadDone = true;
+                for (Map.Entry<String, Long> entry : mEarlyUpdates.entrySet()) {
+                    if (entry.getValue() == NO_POSITION)
+                        removeLocked(entry.getKey());
+                    else
+                        putLocked(entry.getKey(), entry.getValue());
+                }
+                mEarlyUpdates.clear();
+                callbacks = new ArrayList<>(mLoadCallbacks);
+                mLoadCallbacks.clear();
+            }
+            mLoaded.countDown();
+            for (Runnable callback : callbacks)
+                callback.run();
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+            return out.toByteArray();
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Cuts the log to {@code length} so later appends follow a complete record. Executor
+     * thread only.
+     */
+    private void truncate(long length) {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFile, "rw");
+            file.setLength(length);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to truncate " + mFile, e);
+        } finally {
+            closeQuietly(file);
+        }
+    }
+
+    // executor thread only
+    private void writeDirty() {
+        Map<String, Long> batch;
+        boolean compact;
+        synchronized (mPositions) {
+            mFlushScheduled = false;
+            if (mDirty.isEmpty()) return;
+            batch = new HashMap<>(mDirty);
+            mDirty.clear();
+            mLogRecords += batch.size();
+            compact = mLogRecords > mPositions.size() + COMPACT_SLACK;
+        }
+
+        if (compact) {
+            compact();
+            return;
+        }
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mFile, true)));
+            for (Map.Entry<String, Long> entry : batch.entrySet())
+                writeRecord(out, entry.getKey(), entry.getValue());
+            out.flush();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to append to " + mFile, e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    // executor thread only
+    private void compact() {
+        Map<String, Long> snapshot;
+        synchronized (mPositions) {
+            snapshot = new LinkedHashMap<>(mPositions);
+        }
+
+        File tmp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            for (Map.Entry<String, Long> entry : snapshot.entrySet())
+                writeRecord(out, entry.getKey(), entry.getValue());
+            out.flush();
+            out.close();
+            out = null;
+            if (!tmp.renameTo(mFile))
+                throw new IOException("Could not replace " + mFile);
+            synchronized (mPositions) {
+                // updates made while compacting are still in mDirty and appended later
+                mLogRecords = snapshot.size() + mDirty.size();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Compaction failed", e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, String key, long position) throws IOException {
+        if (position == NO_POSITION) {
+            out.writeByte(OP_REMOVE);
+            out.writeUTF(key);
+        } else {
+            out.writeByte(OP_PUT);
+            out.writeUTF(key);
+            out.writeLong(position);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.videolan.libvlc.Media;
+
+import java.util.Locale;
+
+/**
+ * The hardware decoding fallback chain: full acceleration, then MediaCodec decoding without
+ * direct rendering, then software decoding.
+ */
+final class HardwareDecoding {
+
+    /** Returned by {@link #fallback(int)} once software decoding has been reached. */
+    static final int NO_FALLBACK = -2;
+
+    private static final int[] RESOLUTION_CLASSES = {360, 480, 720, 1080, 1440, 2160, 4320};
+
+    private HardwareDecoding() {
+    }
+
+    /**
+     * The mode to open a media with, given the configured mode and the highest mode known to
+     * work for it ({@link VlcOptions#HW_DECODING_AUTOMATIC} if nothing is known).
+     */
+    static int resolve(int requested, int cap) {
+        if (cap == VlcOptions.HW_DECODING_AUTOMATIC) return requested;
+        if (requested == VlcOptions.HW_DECODING_AUTOMATIC) return cap;
+        return Math.min(requested, cap);
+    }
+
+    /**
+     * The next mode to try after {@code mode} failed.
+     */
+    static int fallback(int mode) {
+        switch (mode) {
+            case VlcOptions.HW_DECODING_AUTOMATIC:
+            case VlcOptions.HW_DECODING_FULL:
+                return VlcOptions.HW_DECODING_DECODING;
+            case VlcOptions.HW_DECODING_DECODING:
+                return VlcOptions.HW_DECODING_DISABLED;
+            default:
+                return NO_FALLBACK;
+        }
+    }
+
+    /**
+     * Identifies what a decoder has to cope with: the codec and a resolution class, e.g.
+     * {@code h264@1080}. Similar sizes share a class so one failure covers them all.
+     */
+    static String signature(String codec, int width, int height) {
+        int shortSide = Math.min(width, height);
+        int resolutionClass = 0;
+        for (int candidate : RESOLUTION_CLASSES) {
+            resolutionClass = candidate;
+            if (shortSide <= candidate) break;
+        }
+        return codec.trim().toLowerCase(Locale.US) + "@" + resolutionClass;
+    }
+
+    /**
+     * Signature of the first video track of {@code media}, or null if it has none yet.
+     */
+    static String signature(Media media) {
+        int count = media.getTrackCount();
+        for (int i = 0; i < count; i++) {
+            Media.Track track = media.getTrack(i);
+            if (track instanceof Media.VideoTrack && track.codec != null) {
+                Media.VideoTrack video = (Media.VideoTrack) track;
+                return signature(track.codec, video.width, video.height);
+            }
+        }
+        return null;
+    }
+}
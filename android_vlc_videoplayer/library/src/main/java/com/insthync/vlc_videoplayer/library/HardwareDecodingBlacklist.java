@@ -0,0 +1,148 @@
+package com.insthync.vlc_videoplayer.library;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers which hardware decoding modes failed for which codec and resolution, so later
+ * opens start at a mode that works instead of paying for another failed decoder init.
+ * <p>
+ * Two small maps are kept in SharedPreferences: decoder signature to the highest working
+ * {@code HW_DECODING_*} mode, and source key to the signature last seen for it, since the
+ * codec of a source is only known once it has been opened. A media that was already parsed
+ * is looked up by its own signature.
+ * <p>
+ * The preferences are read on a background thread; until then no caps are known and
+ * lookups answer {@link VlcOptions#HW_DECODING_AUTOMATIC} instead of waiting.
+ */
+public final class HardwareDecodingBlacklist {
+
+    private static final String PREFS_NAME = "vlc_hw_decoding";
+    private static final String CAP_PREFIX = "cap:";
+    private static final String SOURCE_PREFIX = "src:";
+    private static final int MAX_SOURCES = 500;
+
+    private static final String TAG = "HwDecodingBlacklist";
+
+    private static HardwareDecodingBlacklist sInstance;
+
+    private final Context mContext;
+    private SharedPreferences mPrefs;
+    private final Map<String, Integer> mCaps = new LinkedHashMap<>();
+    // insertion-ordered: the eldest source is forgotten first
+    private final LinkedHashMap<String, String> mSources = new LinkedHashMap<>();
+    // set by clear() before the load finished, which then keeps nothing it read
+    private boolean mCleared;
+
+    /**
+     * The shared blacklist. Returns at once; the stored failures are read in the background.
+     */
+    public static synchronized HardwareDecodingBlacklist get(Context context) {
+        if (sInstance == null) {
+            sInstance = new HardwareDecodingBlacklist(context.getApplicationContext());
+            sInstance.loadInBackground();
+        }
+        return sInstance;
+    }
+
+    private HardwareDecodingBlacklist(Context context) {
+        mContext = context;
+    }
+
+    private void loadInBackground() {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                SharedPreferences prefs = prefs();
+                Map<String, ?> stored = prefs.getAll();
+                synchronized (HardwareDecodingBlacklist.this) {
+                    if (mCleared) return;
+                    for (Map.Entry<String, ?> entry : stored.entrySet()) {
+                        String key = entry.getKey();
+                        Object value = entry.getValue();
+                        // entries recorded while loading are newer
+                        if (key.startsWith(CAP_PREFIX) && value instanceof Integer) {
+                            String signature = key.substring(CAP_PREFIX.length());
+                            if (!mCaps.containsKey(signature))
+                                mCaps.put(signature, (Integer) value);
+                        } else if (key.startsWith(SOURCE_PREFIX) && value instanceof String) {
+                            String source = key.substring(SOURCE_PREFIX.length());
+                            if (!mSources.containsKey(source))
+                                mSources.put(source, (String) value);
+                        }
+                    }
+                }
+                Log.d(TAG, "Loaded " + stored.size() + " entries");
+            }
+        }, "HwDecodingBlacklist load");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private synchronized SharedPreferences prefs() {
+        if (mPrefs == null)
+            mPrefs = mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return mPrefs;
+    }
+
+    /**
+     * The highest mode known to work for {@code sourceKey}, or
+     * {@link VlcOptions#HW_DECODING_AUTOMATIC} if none of its decoders failed before.
+     */
+    public synchronized int getCap(String sourceKey) {
+        String signature = sourceKey != null ? mSources.get(sourceKey) : null;
+        return getSignatureCap(signature);
+    }
+
+    /**
+     * The highest mode known to work for the decoder {@code signature}, see
+     * {@link HardwareDecoding#signature(org.videolan.libvlc.Media)}.
+     */
+    synchronized int getSignatureCap(String signature) {
+        Integer cap = signature != null ? mCaps.get(signature) : null;
+        return cap != null ? cap : VlcOptions.HW_DECODING_AUTOMATIC;
+    }
+
+    /**
+     * Records the decoder signature of {@code sourceKey}.
+     */
+    synchronized void setSignature(String sourceKey, String signature) {
+        if (sourceKey == null || signature == null || signature.equals(mSources.get(sourceKey))) return;
+        SharedPreferences.Editor editor = prefs().edit();
+        mSources.remove(sourceKey);
+        mSources.put(sourceKey, signature);
+        editor.putString(SOURCE_PREFIX + sourceKey, signature);
+        if (mSources.size() > MAX_SOURCES) {
+            Iterator<String> it = mSources.keySet().iterator();
+            editor.remove(SOURCE_PREFIX + it.next());
+            it.remove();
+        }
+        editor.apply();
+    }
+
+    /**
+     * Caps {@code signature} at {@code mode} after a higher mode failed on it.
+     */
+    synchronized void setCap(String signature, int mode) {
+        if (signature == null) return;
+        Integer cap = mCaps.get(signature);
+        if (cap != null && cap <= mode) return;
+        mCaps.put(signature, mode);
+        prefs().edit().putInt(CAP_PREFIX + signature, mode).apply();
+    }
+
+    /**
+     * Forgets all failures, e.g. after a system update that may have fixed the decoders.
+     */
+    public synchronized void clear() {
+        mCaps.clear();
+        mSources.clear();
+        mCleared = true;
+        prefs().edit().clear().apply();
+    }
+}
@@ -0,0 +1,99 @@
+package com.insthync.vlc_videoplayer.library;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-bucket histogram of non-negative long samples.
+ * <p>
+ * Bucket {@code i} counts samples up to and including {@code getUpperBound(i)}; the last bucket
+ * catches everything above the highest bound. Recording never allocates.
+ */
+public final class Histogram {
+
+    private final long[] mBounds;
+    private final long[] mCounts;
+    private long mTotalCount;
+    private long mSum;
+    private long mMax;
+
+    /**
+     * @param bounds strictly increasing bucket upper bounds
+     */
+    public Histogram(long... bounds) {
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1])
+                throw new IllegalArgumentException("Bounds must be strictly increasing");
+        }
+        mBounds = bounds.clone();
+        mCounts = new long[bounds.length + 1];
+    }
+
+    public void record(long value) {
+        int lo = 0;
+        int hi = mBounds.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (value <= mBounds[mid]) hi = mid;
+            else lo = mid + 1;
+        }
+        mCounts[lo]++;
+        mTotalCount++;
+        mSum += value;
+        if (value > mMax) mMax = value;
+    }
+
+    public int getBucketCount() {
+        return mCounts.length;
+    }
+
+    /**
+     * Upper bound of {@code bucket}, {@link Long#MAX_VALUE} for the overflow bucket.
+     */
+    public long getUpperBound(int bucket) {
+        return bucket < mBounds.length ? mBounds[bucket] : Long.MAX_VALUE;
+    }
+
+    public long getCount(int bucket) {
+        return mCounts[bucket];
+    }
+
+    public long getTotalCount() {
+        return mTotalCount;
+    }
+
+    public long getSum() {
+        return mSum;
+    }
+
+    public long getMax() {
+        return mMax;
+    }
+
+    public long getMean() {
+        return mTotalCount > 0 ? mSum / mTotalCount : 0;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile (0-100), capped at the largest
+     * recorded value. Returns 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        if (mTotalCount == 0) return 0;
+        long rank = (long) Math.ceil(mTotalCount * percentile / 100.0);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < mCounts.length; i++) {
+            seen += mCounts[i];
+            if (seen >= rank)
+                return Math.min(getUpperBound(i), mMax);
+        }
+        return mMax;
+    }
+
+    public void reset() {
+        Arrays.fill(mCounts, 0);
+        mTotalCount = 0;
+        mSum = 0;
+        mMax = 0;
+    }
+}
@@ -0,0 +1,604 @@
+package com.insthync.vlc_videoplayer.library;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Opt-in local HTTP proxy that caches progressive HTTP sources on disk.
+ * <p>
+ * VLC is pointed at {@link #getProxyUrl(String)} instead of the origin. Range requests are
+ * served from a size-bounded LRU {@link HttpDiskCache}; only the chunks missing on disk are
+ * fetched from the origin, so looping, seeking back and re-opening a clip cost no network.
+ * Responses without a known length (live or chunked streams) are passed through uncached.
+ * An entry is checked against the origin's ETag or Last-Modified value the first time it is
+ * served in a process and whenever a missing chunk is fetched; if the resource changed, the
+ * entry is dropped and fetched again.
+ */
+public final class HttpCacheProxy {
+
+    private static final String TAG = "HttpCacheProxy";
+
+    public static final long DEFAULT_MAX_CACHE_BYTES = 256L * 1024 * 1024;
+    private static final String CACHE_DIR = "vlc-http-cache";
+    private static final int MAX_CONNECTIONS = 8;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int TIMEOUT_MS = 15000;
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private static HttpCacheProxy sInstance;
+
+    private final HttpDiskCache mCache;
+    private final ExecutorService mExecutor;
+    private ServerSocket mServerSocket;
+    private Thread mAcceptThread;
+
+    private final AtomicLong mOriginRequests = new AtomicLong();
+    private final AtomicLong mOriginBytes = new AtomicLong();
+    private final AtomicLong mCacheBytes = new AtomicLong();
+
+    /**
+     * The shared proxy, caching in the app's cache dir with a budget of {@link #DEFAULT_MAX_CACHE_BYTES}.
+     */
+    public static synchronized HttpCacheProxy get(Context context) throws IOException {
+        if (sInstance == null) {
+            HttpCacheProxy proxy = new HttpCacheProxy(new File(context.getCacheDir(), CACHE_DIR), DEFAULT_MAX_CACHE_BYTES);
+            proxy.start();
+            sInstance = proxy;
+        }
+        return sInstance;
+    }
+
+    public HttpCacheProxy(File cacheDir, long maxCacheBytes) {
+        mCache = new HttpDiskCache(cacheDir, maxCacheBytes);
+        mExecutor = Executors.newFixedThreadPool(MAX_CONNECTIONS, new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "HttpCacheProxy #" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // the existing index is scanned before the first request is handled, off the caller's thread
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCache.load();
+            }
+        });
+    }
+
+    /**
+     * Binds the proxy to a free loopback port and starts accepting connections.
+     */
+    public synchronized void start() throws IOException {
+        if (mServerSocket != null) return;
+        mServerSocket = new ServerSocket(0, MAX_CONNECTIONS, InetAddress.getByName("127.0.0.1"));
+        final ServerSocket serverSocket = mServerSocket;
+        mAcceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop(serverSocket);
+            }
+        }, "HttpCacheProxy accept");
+        mAcceptThread.setDaemon(true);
+        mAcceptThread.start();
+        Log.d(TAG, "Listening on port " + mServerSocket.getLocalPort());
+    }
+
+    public synchronized void shutdown() {
+        if (mServerSocket == null) return;
+        try {
+            mServerSocket.close();
+        } catch (IOException ignored) {
+        }
+        mServerSocket = null;
+        mExecutor.shutdownNow();
+    }
+
+    public synchronized boolean isRunning() {
+        return mServerSocket != null;
+    }
+
+    /**
+     * Whether {@code url} can go through the proxy (plain HTTP/HTTPS).
+     */
+    public static boolean isCacheable(String url) {
+        String lower = url.toLowerCase(Locale.US);
+        return lower.startsWith("http://") || lower.startsWith("https://");
+    }
+
+    /**
+     * The loopback URL VLC should open instead of {@code url}. Returns {@code url} unchanged if
+     * it is not cacheable or the proxy is not running.
+     */
+    public synchronized String getProxyUrl(String url) {
+        if (mServerSocket == null || !isCacheable(url)) return url;
+        try {
+            return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/?url=" + URLEncoder.encode(url, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Downloads the first {@code bytes} of {@code url} into the cache in the background, so a
+     * player opening it later starts from disk. Chunks already cached are not fetched again.
+     * Does nothing for URLs that are not cacheable, for sources of unknown length and when the
+     * proxy is not running.
+     */
+    public void prefetch(String url, long bytes) {
+        if (bytes <= 0 || !isCacheable(url) || !isRunning()) return;
+        final Request request = new Request();
+        request.url = url;
+        request.prefetch = true;
+        request.end = bytes - 1;
+        try {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        serve(request, DISCARD);
+                    } catch (IOException e) {
+                        Log.d(TAG, "Prefetch of " + request.url + " ended: " + e.getMessage());
+                    } catch (RuntimeException e) {
+                        Log.w(TAG, "Prefetch of " + request.url + " failed", e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shut down in the meantime
+        }
+    }
+
+    public long getCacheSize() {
+        return mCache.size();
+    }
+
+    public long getMaxCacheSize() {
+        return mCache.maxSize();
+    }
+
+    /**
+     * Requests made to origin servers since the proxy was created.
+     */
+    public long getOriginRequestCount() {
+        return mOriginRequests.get();
+    }
+
+    public long getOriginBytes() {
+        return mOriginBytes.get();
+    }
+
+    /**
+     * Bytes served straight from disk.
+     */
+    public long getCacheHitBytes() {
+        return mCacheBytes.get();
+    }
+
+    /**
+     * Deletes every cached entry not currently being served.
+     */
+    public void clear() {
+        mCache.clear();
+    }
+
+    private void acceptLoop(ServerSocket serverSocket) {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            } catch (SocketException e) {
+                // closed by shutdown()
+            } catch (Exception e) {
+                Log.w(TAG, "Accept failed", e);
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try {
+            socket.setSoTimeout(TIMEOUT_MS);
+            Request request = Request.read(new BufferedInputStream(socket.getInputStream()));
+            OutputStream out = socket.getOutputStream();
+            if (request == null) {
+                writeStatus(out, "400 Bad Request");
+            } else if (request.badRange) {
+                writeStatus(out, "416 Range Not Satisfiable");
+            } else {
+                serve(request, out);
+            }
+            out.flush();
+        } catch (IOException e) {
+            // the player closed the connection, typically after a seek
+            Log.d(TAG, "Connection ended: " + e.getMessage());
+        } catch (RuntimeException e) {
+            // a bad request or origin response must not take the app down
+            Log.w(TAG, "Request failed", e);
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void serve(Request request, OutputStream out) throws IOException {
+        CacheFile file = mCache.open(request.url);
+        HttpURLConnection pending = null;
+        long pendingStart = -1;
+        try {
+            if (file.isInitialized() && !file.isValidated()) {
+                // a single byte is enough to learn the current length and validator
+                HttpURLConnection check = openOrigin(request.url, 0, 0);
+                try {
+                    if (file.matches(totalLength(check), validatorOf(check)))
+                        file.setValidated();
+                    else
+                        mCache.invalidate(file);
+                } catch (IOException e) {
+                    // origin unreachable: keep serving what is on disk and check again next time
+                    Log.d(TAG, "Could not revalidate " + request.url + ": " + e.getMessage());
+                } finally {
+                    check.disconnect();
+                }
+            }
+            if (!file.isInitialized()) {
+                pendingStart = request.start / CacheFile.CHUNK_SIZE * CacheFile.CHUNK_SIZE;
+                pending = openOrigin(request.url, pendingStart, -1);
+                long total = totalLength(pending);
+                if (total <= 0) {
+                    // a live stream has no head worth keeping
+                    if (request.prefetch) return;
+                    passThrough(pending, pendingStart, request, out);
+                    return;
+                }
+                file.initialize(total, pending.getContentType(), validatorOf(pending));
+            }
+
+            long total = file.getContentLength();
+            if (request.start >= total) {
+                writeStatus(out, "416 Range Not Satisfiable");
+                return;
+            }
+            long end = request.end < 0 ? total - 1 : Math.min(request.end, total - 1);
+            if (!request.prefetch)
+                writeHeaders(out, request, file.getContentType(), request.start, end, total);
+            if (request.head) return;
+
+            long position = request.start;
+            int lastChunk = (int) (end / CacheFile.CHUNK_SIZE);
+            while (position <= end) {
+                int chunk = (int) (position / CacheFile.CHUNK_SIZE);
+                if (file.hasChunk(chunk)) {
+                    if (request.prefetch)
+                        position = Math.min(end + 1, (long) (chunk + 1) * CacheFile.CHUNK_SIZE);
+                    else
+                        position = copyFromDisk(file, position, end, out);
+                    continue;
+                }
+
+                int runLast = chunk;
+                while (runLast < lastChunk && !file.hasChunk(runLast + 1))
+                    runLast++;
+                long runStart = (long) chunk * CacheFile.CHUNK_SIZE;
+                long runEnd = Math.min(total, (long) (runLast + 1) * CacheFile.CHUNK_SIZE) - 1;
+
+                HttpURLConnection connection;
+                if (pending != null && pendingStart == runStart) {
+                    connection = pending;
+                } else {
+                    if (pending != null) pending.disconnect();
+                    connection = openOrigin(request.url, runStart, runEnd);
+                }
+                pending = null;
+                try {
+                    if (!file.matches(totalLength(connection), validatorOf(connection))) {
+                        // the player already has headers for the old resource; it reconnects
+                        mCache.invalidate(file);
+                        throw new IOException("Origin changed while serving " + request.url);
+                    }
+                    position = copyFromOrigin(connection, file, runStart, runEnd, position, end, out);
+                } finally {
+                    connection.disconnect();
+                }
+            }
+        } finally {
+            if (pending != null) pending.disconnect();
+            mCache.close(file);
+        }
+    }
+
+    private long copyFromDisk(CacheFile file, long position, long end, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = file.getContentLength();
+        while (position <= end) {
+            int chunk = (int) (position / CacheFile.CHUNK_SIZE);
+            if (!file.hasChunk(chunk)) break;
+            long chunkEnd = Math.min(total, (long) (chunk + 1) * CacheFile.CHUNK_SIZE) - 1;
+            int count = (int) Math.min(buffer.length, Math.min(end, chunkEnd) - position + 1);
+            int read = file.read(position, buffer, count);
+            if (read <= 0) throw new IOException("Short read from cache at " + position);
+            out.write(buffer, 0, read);
+            mCacheBytes.addAndGet(read);
+            position += read;
+        }
+        return position;
+    }
+
+    /**
+     * Streams [runStart, runEnd] from the origin into the cache, forwarding the part from
+     * {@code position} up to {@code end} to the player.
+     *
+     * @return the next position to serve
+     */
+    private long copyFromOrigin(HttpURLConnection connection, CacheFile file, long runStart, long runEnd,
+                                long position, long end, OutputStream out) throws IOException {
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_PARTIAL && status != HttpURLConnection.HTTP_OK)
+            throw new IOException("Origin returned " + status);
+
+        InputStream in = connection.getInputStream();
+        try {
+            long offset = runStart;
+            if (status == HttpURLConnection.HTTP_OK && runStart > 0) {
+                // origin ignored the range header
+                long skipped = 0;
+                while (skipped < runStart) {
+                    long n = in.skip(runStart - skipped);
+                    if (n <= 0) throw new IOException("Origin ended before " + runStart);
+                    skipped += n;
+                }
+            }
+
+            long total = file.getContentLength();
+            int nextChunk = (int) (runStart / CacheFile.CHUNK_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (offset <= runEnd) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, runEnd - offset + 1));
+                if (read < 0) break;
+                mOriginBytes.addAndGet(read);
+                file.write(offset, buffer, read);
+
+                long readEnd = offset + read;
+                while (nextChunk < file.getChunkCount()
+                        && Math.min(total, (long) (nextChunk + 1) * CacheFile.CHUNK_SIZE) <= readEnd) {
+                    if (file.markChunk(nextChunk))
+                        mCache.onChunkCached(file.chunkLength(nextChunk));
+                    nextChunk++;
+                }
+
+                if (readEnd > position && position <= end) {
+                    int from = (int) (position - offset);
+                    int count = (int) (Math.min(readEnd - 1, end) - position + 1);
+                    out.write(buffer, from, count);
+                    position += count;
+                }
+                offset = readEnd;
+            }
+            if (offset <= runEnd && position <= end)
+                throw new IOException("Origin ended at " + offset + ", expected " + (runEnd + 1));
+        } finally {
+            in.close();
+        }
+        return position;
+    }
+
+    /**
+     * Streams a response of unknown length. A range request gets the bytes from its start on
+     * with a 206 and an open Content-Range, anything else the whole body with a 200.
+     */
+    private void passThrough(HttpURLConnection connection, long streamStart, Request request, OutputStream out)
+            throws IOException {
+        int status = connection.getResponseCode();
+        String type = connection.getContentType();
+        StringBuilder headers = new StringBuilder();
+        if (request.hasRange) {
+            headers.append("HTTP/1.1 206 Partial Content\r\n");
+            headers.append("Content-Range: bytes ").append(request.start).append("-*/*\r\n");
+        } else {
+            headers.append("HTTP/1.1 200 OK\r\n");
+        }
+        if (type != null) headers.append("Content-Type: ").append(type).append("\r\n");
+        headers.append("Connection: close\r\n\r\n");
+        out.write(headers.toString().getBytes("US-ASCII"));
+        if (request.head) return;
+
+        InputStream in = connection.getInputStream();
+        try {
+            // the probe request starts at a chunk boundary, or at 0 if the origin ignored the
+            // range; without a range the request starts at 0 as well
+            long skip = request.start - (status == HttpURLConnection.HTTP_PARTIAL ? streamStart : 0);
+            while (skip > 0) {
+                long n = in.skip(skip);
+                if (n <= 0) return;
+                skip -= n;
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                mOriginBytes.addAndGet(read);
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection openOrigin(String url, long start, long end) throws IOException {
+        mOriginRequests.incrementAndGet();
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        // byte offsets only make sense on the identity encoding
+        connection.setRequestProperty("Accept-Encoding", "identity");
+        if (start > 0 || end >= 0)
+            connection.setRequestProperty("Range", "bytes=" + start + "-" + (end >= 0 ? String.valueOf(end) : ""));
+        return connection;
+    }
+
+    private static long totalLength(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_PARTIAL) {
+            String contentRange = connection.getHeaderField("Content-Range");
+            if (contentRange != null) {
+                Matcher m = CONTENT_RANGE.matcher(contentRange);
+                if (m.find()) return Long.parseLong(m.group(3));
+            }
+            return -1;
+        }
+        if (status == HttpURLConnection.HTTP_OK) {
+            String length = connection.getHeaderField("Content-Length");
+            try {
+                return length != null ? Long.parseLong(length) : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        throw new IOException("Origin returned " + status);
+    }
+
+    /**
+     * The origin's ETag, or its Last-Modified value if it sent no ETag.
+     */
+    private static String validatorOf(HttpURLConnection connection) {
+        String etag = connection.getHeaderField("ETag");
+        return etag != null ? etag : connection.getHeaderField("Last-Modified");
+    }
+
+    private static void writeHeaders(OutputStream out, Request request, String contentType,
+                                     long start, long end, long total) throws IOException {
+        StringBuilder headers = new StringBuilder();
+        if (request.hasRange) {
+            headers.append("HTTP/1.1 206 Partial Content\r\n");
+            headers.append("Content-Range: bytes ").append(start).append('-').append(end).append('/').append(total).append("\r\n");
+        } else {
+            headers.append("HTTP/1.1 200 OK\r\n");
+        }
+        if (contentType != null)
+            headers.append("Content-Type: ").append(contentType).append("\r\n");
+        headers.append("Content-Length: ").append(end - start + 1).append("\r\n");
+        headers.append("Accept-Ranges: bytes\r\n");
+        headers.append("Connection: close\r\n\r\n");
+        out.write(headers.toString().getBytes("US-ASCII"));
+    }
+
+    private static void writeStatus(OutputStream out, String status) throws IOException {
+        out.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes("US-ASCII"));
+    }
+
+    private static final class Request {
+        String url;
+        boolean head;
+        boolean hasRange;
+        // a Range header that cannot be served
+        boolean badRange;
+        // fills the cache only, nothing is sent
+        boolean prefetch;
+        long start;
+        long end = -1;
+
+        /**
+         * Parses a request, returning null if it is malformed or not for a cacheable URL.
+         */
+        static Request read(InputStream in) throws IOException {
+            String requestLine = readLine(in);
+            if (requestLine == null) return null;
+            String[] parts = requestLine.split(" ");
+            if (parts.length < 2) return null;
+
+            Request request = new Request();
+            request.head = "HEAD".equals(parts[0]);
+            if (!request.head && !"GET".equals(parts[0])) return null;
+
+            int query = parts[1].indexOf("url=");
+            if (query >= 0) {
+                String encoded = parts[1].substring(query + 4);
+                int amp = encoded.indexOf('&');
+                if (amp >= 0) encoded = encoded.substring(0, amp);
+                try {
+                    request.url = URLDecoder.decode(encoded, "UTF-8");
+                } catch (IllegalArgumentException e) {
+                    // malformed % escape
+                }
+            }
+
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon <= 0) continue;
+                if (!line.substring(0, colon).trim().equalsIgnoreCase("Range")) continue;
+                Matcher m = RANGE.matcher(line.substring(colon + 1).trim());
+                if (m.matches() && !m.group(1).isEmpty()) {
+                    request.hasRange = true;
+                    try {
+                        request.start = Long.parseLong(m.group(1));
+                        if (!m.group(2).isEmpty())
+                            request.end = Long.parseLong(m.group(2));
+                    } catch (NumberFormatException e) {
+                        // beyond any length we could serve
+                        request.badRange = true;
+                    }
+                    if (request.end >= 0 && request.end < request.start)
+                        request.badRange = true;
+                }
+            }
+            // anything else would reach the origin connection as e.g. a file: or jar: URL
+            return request.url != null && isCacheable(request.url) ? request : null;
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = in.read()) != -1) {
+                if (c == '\n') break;
+                if (c != '\r') sb.append((char) c);
+            }
+            return c == -1 && sb.length() == 0 ? null : sb.toString();
+        }
+    }
+}
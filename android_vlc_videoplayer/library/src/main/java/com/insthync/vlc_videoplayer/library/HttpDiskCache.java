@@ -0,0 +1,167 @@
+package com.insthync.vlc_videoplayer.library;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Size-bounded LRU of {@link CacheFile}s in one directory.
+ * <p>
+ * Entries are keyed by the SHA-1 of their URL and ordered by last use; once the cached bytes
+ * exceed the budget, the least recently used entries that are not currently being served
+ * are deleted. The directory is scanned by {@link #load()} or, failing that, by the first
+ * call that needs the entries, so creating a cache does no disk I/O.
+ */
+final class HttpDiskCache {
+
+    private static final String TAG = "HttpDiskCache";
+
+    private final File mDir;
+    private final long mMaxBytes;
+    // access-ordered: eldest entry is the least recently used one
+    private final LinkedHashMap<String, CacheFile> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long mTotalBytes;
+    private boolean mLoaded;
+
+    HttpDiskCache(File dir, long maxBytes) {
+        mDir = dir;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Scans the directory for existing entries, oldest first. Does nothing after the first call.
+     */
+    synchronized void load() {
+        if (mLoaded) return;
+        mLoaded = true;
+        //noinspection ResultOfMethodCallIgnored
+        mDir.mkdirs();
+
+        File[] indexes = mDir.listFiles();
+        if (indexes == null) return;
+        Arrays.sort(indexes, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (File index : indexes) {
+            String name = index.getName();
+            if (!name.endsWith(".idx")) continue;
+            CacheFile file = new CacheFile(mDir, name.substring(0, name.length() - 4));
+            try {
+                if (file.load()) {
+                    mTotalBytes += file.getCachedBytes();
+                    mEntries.put(file.key, file);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Dropping unreadable cache entry " + name, e);
+                file.delete();
+            } finally {
+                file.close();
+            }
+        }
+        trim();
+    }
+
+    /**
+     * Opens the entry for {@code url}, creating it if needed. Must be balanced by {@link #close(CacheFile)}.
+     */
+    synchronized CacheFile open(String url) throws IOException {
+        load();
+        String key = keyFor(url);
+        CacheFile file = mEntries.get(key);
+        if (file == null) {
+            file = new CacheFile(mDir, key);
+            mEntries.put(key, file);
+        }
+        file.refCount++;
+        try {
+            file.load();
+        } catch (IOException e) {
+            file.refCount--;
+            throw e;
+        }
+        file.touch();
+        return file;
+    }
+
+    synchronized void close(CacheFile file) {
+        if (--file.refCount == 0) {
+            file.close();
+            trim();
+        }
+    }
+
+    /**
+     * Drops the content of {@code file}, which stays open, after the origin resource changed.
+     */
+    synchronized void invalidate(CacheFile file) {
+        mTotalBytes -= file.getCachedBytes();
+        file.delete();
+        Log.d(TAG, "Origin changed, dropped " + file.key);
+    }
+
+    synchronized void onChunkCached(int bytes) {
+        mTotalBytes += bytes;
+        trim();
+    }
+
+    synchronized long size() {
+        return mTotalBytes;
+    }
+
+    synchronized long maxSize() {
+        return mMaxBytes;
+    }
+
+    /**
+     * Deletes every entry not currently being served.
+     */
+    synchronized void clear() {
+        load();
+        Iterator<CacheFile> it = mEntries.values().iterator();
+        while (it.hasNext()) {
+            CacheFile file = it.next();
+            if (file.refCount > 0) continue;
+            mTotalBytes -= file.getCachedBytes();
+            file.delete();
+            it.remove();
+        }
+    }
+
+    private void trim() {
+        Iterator<CacheFile> it = mEntries.values().iterator();
+        while (mTotalBytes > mMaxBytes && it.hasNext()) {
+            CacheFile file = it.next();
+            if (file.refCount > 0) continue;
+            mTotalBytes -= file.getCachedBytes();
+            file.delete();
+            it.remove();
+            Log.d(TAG, "Evicted " + file.key + ", cache now " + mTotalBytes + " bytes");
+        }
+    }
+
+    static String keyFor(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
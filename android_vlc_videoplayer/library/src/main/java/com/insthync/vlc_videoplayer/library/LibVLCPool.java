@@ -0,0 +1,214 @@
+package com.insthync.vlc_videoplayer.library;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.videolan.libvlc.LibVLC;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Process-wide registry of {@link LibVLC} engines keyed by their effective option list.
+ * <p>
+ * Players built with identical options share one engine. Every {@link #acquire(Context, List)}
+ * or {@link #retain(LibVLC)} must be balanced by a {@link #release(LibVLC)}; once the last
+ * holder lets go the engine is kept warm for the idle timeout and then released.
+ */
+public final class LibVLCPool {
+
+    private static final String TAG = "LibVLCPool";
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 30000;
+
+    private static final Map<List<String>, Entry> sEntries = new HashMap<>();
+    private static final Map<LibVLC, Entry> sEngines = new IdentityHashMap<>();
+    // option lists whose engine is being built by warmUp()
+    private static final Set<List<String>> sWarming = new HashSet<>();
+    private static long sIdleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+    private static Handler sHandler;
+
+    private LibVLCPool() {
+    }
+
+    /**
+     * Returns the engine built for {@code options}, creating it on first use.
+     * The caller owns one reference and must hand it back with {@link #release(LibVLC)}.
+     */
+    public static synchronized LibVLC acquire(Context context, List<String> options) {
+        awaitWarmUp(options);
+        Entry entry = sEntries.get(options);
+        if (entry == null) {
+            List<String> key = Collections.unmodifiableList(new ArrayList<>(options));
+            LibVLC engine = new LibVLC(context.getApplicationContext(), new ArrayList<>(key));
+            entry = new Entry(key, engine);
+            sEntries.put(key, entry);
+            sEngines.put(engine, entry);
+            Log.d(TAG, "Created engine #" + sEntries.size() + " for " + key);
+        }
+        entry.retain();
+        return entry.engine;
+    }
+
+    /**
+     * Loads the native libraries and builds the engine for {@code options} on a background
+     * thread, so the first {@link #acquire(Context, List)} does not. An acquire that comes
+     * while the engine is still being built waits for it instead of building another one.
+     * The warmed engine is kept until first acquired, ignoring the idle timeout.
+     */
+    public static void warmUp(Context context, List<String> options) {
+        final Context appContext = context.getApplicationContext();
+        final List<String> key = Collections.unmodifiableList(new ArrayList<>(options));
+        synchronized (LibVLCPool.class) {
+            if (sEntries.containsKey(key) || !sWarming.add(key)) return;
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                LibVLC engine = null;
+                try {
+                    engine = new LibVLC(appContext, new ArrayList<>(key));
+                } catch (RuntimeException | UnsatisfiedLinkError e) {
+                    // acquire() builds it again and reports the failure to its caller
+                    Log.w(TAG, "Warm-up failed for " + key, e);
+                }
+                synchronized (LibVLCPool.class) {
+                    if (engine != null) {
+                        Entry entry = new Entry(key, engine);
+                        sEntries.put(key, entry);
+                        sEngines.put(engine, entry);
+                        Log.d(TAG, "Warmed up engine #" + sEntries.size() + " for " + key);
+                    }
+                    sWarming.remove(key);
+                    LibVLCPool.class.notifyAll();
+                }
+            }
+        }, "LibVLCWarmUp");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        thread.start();
+    }
+
+    private static void awaitWarmUp(List<String> options) {
+        boolean interrupted = false;
+        while (sWarming.contains(options)) {
+            try {
+                LibVLCPool.class.wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Adds a reference to an engine previously handed out by this pool.
+     */
+    public static synchronized void retain(LibVLC engine) {
+        Entry entry = sEngines.get(engine);
+        if (entry == null)
+            throw new IllegalArgumentException("LibVLC instance is not owned by LibVLCPool");
+        entry.retain();
+    }
+
+    /**
+     * Drops a reference. When the count reaches zero the engine is released after the idle timeout.
+     */
+    public static synchronized void release(LibVLC engine) {
+        if (engine == null) return;
+        Entry entry = sEngines.get(engine);
+        if (entry == null) {
+            Log.w(TAG, "release() called for an engine not owned by LibVLCPool");
+            return;
+        }
+        if (entry.refCount <= 0) {
+            Log.w(TAG, "Unbalanced release() for " + entry.key);
+            return;
+        }
+        if (--entry.refCount == 0) {
+            if (sIdleTimeoutMs <= 0) {
+                destroy(entry);
+            } else {
+                handler().postDelayed(entry.evict, sIdleTimeoutMs);
+            }
+        }
+    }
+
+    /**
+     * How long an unreferenced engine is kept around before being released.
+     * Zero or less releases it as soon as the last reference goes away.
+     */
+    public static synchronized void setIdleTimeout(long timeoutMs) {
+        sIdleTimeoutMs = timeoutMs;
+    }
+
+    public static synchronized long getIdleTimeout() {
+        return sIdleTimeoutMs;
+    }
+
+    /**
+     * Releases every engine that currently has no references, ignoring the idle timeout.
+     * Useful from {@code onTrimMemory()}.
+     */
+    public static synchronized void evictIdle() {
+        for (Entry entry : new ArrayList<>(sEntries.values())) {
+            if (entry.refCount == 0)
+                destroy(entry);
+        }
+    }
+
+    /**
+     * Number of engines currently alive, including idle ones waiting for eviction.
+     */
+    public static synchronized int size() {
+        return sEntries.size();
+    }
+
+    private static void destroy(Entry entry) {
+        if (sHandler != null)
+            sHandler.removeCallbacks(entry.evict);
+        sEntries.remove(entry.key);
+        sEngines.remove(entry.engine);
+        entry.engine.release();
+        Log.d(TAG, "Released engine for " + entry.key);
+    }
+
+    private static Handler handler() {
+        if (sHandler == null)
+            sHandler = new Handler(Looper.getMainLooper());
+        return sHandler;
+    }
+
+    private static class Entry {
+        final List<String> key;
+        final LibVLC engine;
+        int refCount;
+
+        final Runnable evict = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (LibVLCPool.class) {
+                    if (refCount == 0 && sEngines.get(engine) == Entry.this)
+                        destroy(Entry.this);
+                }
+            }
+        };
+
+        Entry(List<String> key, LibVLC engine) {
+            this.key = key;
+            this.engine = engine;
+        }
+
+        void retain() {
+            if (refCount++ == 0 && sHandler != null)
+                sHandler.removeCallbacks(evict);
+        }
+    }
+}
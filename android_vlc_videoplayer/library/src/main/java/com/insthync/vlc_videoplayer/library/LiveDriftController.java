@@ -0,0 +1,86 @@
+package com.insthync.vlc_videoplayer.library;
+
+/**
+ * Keeps a live stream near its target latency by nudging the playback rate.
+ * <p>
+ * A live source advances in real time, so any wall-clock time that the media clock falls
+ * behind after playback started (stalls, slow starts) is latency added on top of the
+ * target. Once that drift builds up, playback speeds up slightly until it is caught up;
+ * if it grows too large to catch up smoothly, {@link #needsResync()} asks for a reopen at
+ * the live edge. Pure and clock-agnostic, so traces can be replayed on the JVM.
+ */
+final class LiveDriftController {
+
+    // start catching up beyond this drift, stop below the lower bound
+    private static final long CATCH_UP_START_MS = 300;
+    private static final long CATCH_UP_STOP_MS = 50;
+    // drift caught up per second of playback at full boost is 1000 * MAX_BOOST ms
+    private static final float MIN_BOOST = 0.02f;
+    private static final float MAX_BOOST = 0.08f;
+    private static final long BOOST_PER_DRIFT_MS = 10000;
+    private static final long RESYNC_DRIFT_MS = 8000;
+    private static final float SMOOTHING = 0.2f;
+
+    private long mAnchorWallMs = -1;
+    private long mAnchorMediaMs;
+    private float mDriftMs;
+    private boolean mCatchingUp;
+    private float mRate = 1f;
+
+    /**
+     * Forgets the reference point, e.g. after opening or resuming, where the latency starts
+     * at its target again.
+     */
+    void reset() {
+        mAnchorWallMs = -1;
+        mDriftMs = 0;
+        mCatchingUp = false;
+        mRate = 1f;
+    }
+
+    /**
+     * Feeds a media clock update and returns the playback rate to use, in steps of 0.01.
+     */
+    float onTimeChanged(long mediaTimeMs, long nowMs) {
+        if (mAnchorWallMs < 0) {
+            mAnchorWallMs = nowMs;
+            mAnchorMediaMs = mediaTimeMs;
+            return mRate;
+        }
+        long drift = Math.max(0, (nowMs - mAnchorWallMs) - (mediaTimeMs - mAnchorMediaMs));
+        mDriftMs += SMOOTHING * (drift - mDriftMs);
+
+        if (!mCatchingUp && mDriftMs > CATCH_UP_START_MS) {
+            mCatchingUp = true;
+        } else if (mCatchingUp && mDriftMs < CATCH_UP_STOP_MS) {
+            mCatchingUp = false;
+            // what is left is jitter; measure from here
+            mAnchorWallMs = nowMs;
+            mAnchorMediaMs = mediaTimeMs;
+            mDriftMs = 0;
+        }
+
+        float rate = 1f;
+        if (mCatchingUp) {
+            float boost = Math.max(MIN_BOOST, Math.min(MAX_BOOST, mDriftMs / BOOST_PER_DRIFT_MS));
+            rate = Math.round((1f + boost) * 100) / 100f;
+        }
+        mRate = rate;
+        return rate;
+    }
+
+    long getDriftMs() {
+        return Math.round(mDriftMs);
+    }
+
+    float getRate() {
+        return mRate;
+    }
+
+    /**
+     * Whether the drift is too large to catch up by speeding up.
+     */
+    boolean needsResync() {
+        return mDriftMs > RESYNC_DRIFT_MS;
+    }
+}
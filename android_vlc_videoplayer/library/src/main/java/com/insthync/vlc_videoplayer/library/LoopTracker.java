@@ -0,0 +1,48 @@
+package com.insthync.vlc_videoplayer.library;
+
+/**
+ * Detects when a media repeated with {@code :input-repeat} wraps around to its start, and how
+ * long the wrap took beyond the media time that was left to play.
+ * <p>
+ * A wrap shows up as the media clock jumping back by more than half the length without a
+ * seek having been requested shortly before.
+ */
+final class LoopTracker {
+
+    // a backward jump this soon after a seek request is the seek landing
+    private static final long SEEK_WINDOW_MS = 2000;
+
+    private long mLastMediaMs = -1;
+    private long mLastWallMs;
+    private long mSeekAtMs = -1;
+
+    /**
+     * Returns the gap in milliseconds if this update is the first one after a wrap, -1 otherwise.
+     */
+    long onTimeChanged(long mediaMs, long lengthMs, long nowMs) {
+        long gap = -1;
+        if (mLastMediaMs >= 0 && lengthMs > 0 && mLastMediaMs - mediaMs > lengthMs / 2) {
+            if (mSeekAtMs >= 0 && nowMs - mSeekAtMs < SEEK_WINDOW_MS) {
+                mSeekAtMs = -1;
+            } else {
+                long expected = Math.max(0, lengthMs - mLastMediaMs) + mediaMs;
+                gap = Math.max(0, nowMs - mLastWallMs - expected);
+            }
+        }
+        mLastMediaMs = mediaMs;
+        mLastWallMs = nowMs;
+        return gap;
+    }
+
+    void onSeek(long nowMs) {
+        mSeekAtMs = nowMs;
+    }
+
+    /**
+     * Forgets the last position, e.g. when another media is opened.
+     */
+    void reset() {
+        mLastMediaMs = -1;
+        mSeekAtMs = -1;
+    }
+}
@@ -0,0 +1,58 @@
+package com.insthync.vlc_videoplayer.library;
+
+import android.net.Uri;
+import android.util.Log;
+
+import org.videolan.libvlc.LibVLC;
+import org.videolan.libvlc.Media;
+
+/**
+ * Prepares the metadata of the next {@link Media} of a playlist ahead of time.
+ * <p>
+ * The media is created with the player's options and parsed asynchronously while the current
+ * item is still playing, so its duration and tracks are known before the transition. The
+ * preparser reads through its own input, so the player still connects and probes when it
+ * plays the item; the actual pre-buffering is done by {@link HttpCacheProxy#prefetch(String, long)}.
+ */
+final class MediaPrefetcher {
+
+    private static final String TAG = "MediaPrefetcher";
+
+    private Uri mUri;
+    private Media mMedia;
+
+    void prefetch(LibVLC engine, Uri uri, VlcOptions options) {
+        if (uri.equals(mUri)) return;
+        clear();
+
+        Media media = new Media(engine, uri);
+        options.applyTo(media);
+        if (!media.parseAsync(Media.Parse.ParseNetwork)) {
+            Log.w(TAG, "Failed to start parsing " + uri);
+            media.release();
+            return;
+        }
+        mUri = uri;
+        mMedia = media;
+    }
+
+    /**
+     * Returns the prepared media for {@code uri} and hands its reference over to the caller,
+     * or null if something else was prefetched.
+     */
+    Media take(Uri uri) {
+        if (mMedia == null || !uri.equals(mUri)) return null;
+        Media media = mMedia;
+        mMedia = null;
+        mUri = null;
+        return media;
+    }
+
+    void clear() {
+        if (mMedia != null) {
+            mMedia.release();
+            mMedia = null;
+        }
+        mUri = null;
+    }
+}
@@ -0,0 +1,147 @@
+package com.insthync.vlc_videoplayer.library;
+
+/**
+ * Adapts the {@code :network-caching} of the next opened media to how playback went.
+ * <p>
+ * After each session the stall rate decides: sessions that rebuffer noticeably raise the
+ * caching, and a run of clean sessions on a connection that fills the buffer well ahead of
+ * real time lowers it again, for a faster start. The fill rate is measured from the Buffering
+ * percentages while the cache fills, separately for each opened media. The controller is a
+ * plain state machine fed with timestamps, so it can be replayed from recorded event traces;
+ * one instance can be shared by all views playing over the same connection, as each view
+ * tracks its own fill and only the caching decision is shared.
+ */
+public final class NetworkCachingController {
+
+    public static final int DEFAULT_INITIAL_MS = 1000;
+    public static final int DEFAULT_MIN_MS = 300;
+    public static final int DEFAULT_MAX_MS = 10000;
+
+    // sessions shorter than this without stalls say nothing about the connection
+    private static final long MIN_SESSION_PLAY_MS = 10000;
+    private static final float RAISE_STALLS_PER_MINUTE = 0.5f;
+    private static final float RAISE_REBUFFER_RATIO = 0.01f;
+    private static final float DOUBLE_REBUFFER_RATIO = 0.05f;
+    private static final int CLEAN_SESSIONS_TO_LOWER = 2;
+    // media milliseconds buffered per wall-clock millisecond needed before lowering
+    private static final float LOWER_FILL_RATE = 1.5f;
+    private static final float FILL_RATE_SMOOTHING = 0.3f;
+    private static final long MIN_FILL_SAMPLE_MS = 50;
+
+    private final int mMinMs;
+    private final int mMaxMs;
+    private int mCachingMs;
+    private int mCleanSessions;
+
+    private float mFillRate = -1;
+    private int mRaiseCount;
+    private int mLowerCount;
+
+    public NetworkCachingController() {
+        this(DEFAULT_INITIAL_MS, DEFAULT_MIN_MS, DEFAULT_MAX_MS);
+    }
+
+    public NetworkCachingController(int initialMs, int minMs, int maxMs) {
+        if (minMs <= 0 || maxMs < minMs)
+            throw new IllegalArgumentException("Invalid caching range " + minMs + "-" + maxMs);
+        mMinMs = minMs;
+        mMaxMs = maxMs;
+        mCachingMs = clamp(initialMs);
+    }
+
+    /**
+     * Buffer fill of one opened media, kept by whoever opened it.
+     */
+    static final class Fill {
+        final int cachingMs;
+        private float mLastPercent = -1;
+        private long mLastPercentAtMs;
+
+        Fill(int cachingMs) {
+            this.cachingMs = cachingMs;
+        }
+    }
+
+    /**
+     * Caching to open the next network media with.
+     */
+    public synchronized int getCachingMs() {
+        return mCachingMs;
+    }
+
+    /**
+     * Starts tracking a media opened now, with {@link Fill#cachingMs} of caching.
+     */
+    synchronized Fill openFill() {
+        return new Fill(mCachingMs);
+    }
+
+    /**
+     * Smoothed buffer fill rate in media milliseconds per wall-clock millisecond, or -1 if
+     * not measured yet. Above 1 the connection delivers faster than real time.
+     */
+    public synchronized float getFillRate() {
+        return mFillRate;
+    }
+
+    public synchronized int getRaiseCount() {
+        return mRaiseCount;
+    }
+
+    public synchronized int getLowerCount() {
+        return mLowerCount;
+    }
+
+    /**
+     * A Buffering event for the media tracked by {@code fill}.
+     */
+    synchronized void onBuffering(Fill fill, float percent, long nowMs) {
+        if (percent >= 100f || percent < fill.mLastPercent || fill.mLastPercent < 0) {
+            // a new fill starts, or the current one completed
+            fill.mLastPercent = percent >= 100f ? -1 : percent;
+            fill.mLastPercentAtMs = nowMs;
+            return;
+        }
+        long elapsed = nowMs - fill.mLastPercentAtMs;
+        if (elapsed < MIN_FILL_SAMPLE_MS) return;
+
+        float rate = (percent - fill.mLastPercent) / 100f * fill.cachingMs / elapsed;
+        mFillRate = mFillRate < 0 ? rate : mFillRate + FILL_RATE_SMOOTHING * (rate - mFillRate);
+        fill.mLastPercent = percent;
+        fill.mLastPercentAtMs = nowMs;
+    }
+
+    /**
+     * Adapts the caching to a finished session.
+     */
+    synchronized void onSessionEnd(int stallCount, long stallMs, long playMs) {
+        if (stallCount == 0 && playMs < MIN_SESSION_PLAY_MS) return;
+
+        long totalMs = playMs + stallMs;
+        float stallsPerMinute = totalMs > 0 ? stallCount * 60000f / totalMs : 0;
+        float rebufferRatio = totalMs > 0 ? stallMs / (float) totalMs : 0;
+
+        if (stallCount > 0 && (stallsPerMinute >= RAISE_STALLS_PER_MINUTE || rebufferRatio >= RAISE_REBUFFER_RATIO)) {
+            mCleanSessions = 0;
+            int raised = clamp(rebufferRatio >= DOUBLE_REBUFFER_RATIO ? mCachingMs * 2 : mCachingMs * 3 / 2);
+            if (raised != mCachingMs) {
+                mCachingMs = raised;
+                mRaiseCount++;
+            }
+        } else if (stallCount == 0) {
+            if (++mCleanSessions < CLEAN_SESSIONS_TO_LOWER || mFillRate < LOWER_FILL_RATE) return;
+            mCleanSessions = 0;
+            int lowered = clamp(mCachingMs * 3 / 4);
+            if (lowered != mCachingMs) {
+                mCachingMs = lowered;
+                mLowerCount++;
+            }
+        }
+    }
+
+    private int clamp(int cachingMs) {
+        // round to 100 ms so equal decisions produce equal options
+        int rounded = (cachingMs + 50) / 100 * 100;
+        return Math.max(mMinMs, Math.min(mMaxMs, rounded));
+    }
+}
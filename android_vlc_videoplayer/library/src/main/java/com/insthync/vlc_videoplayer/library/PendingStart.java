@@ -0,0 +1,48 @@
+package com.insthync.vlc_videoplayer.library;
+
+/**
+ * Start position of a media that was opened without playing.
+ * <p>
+ * libvlc can only seek once the input runs, so an open with {@code play == false} keeps its
+ * start position here until the first play, instead of silently starting from zero.
+ */
+final class PendingStart {
+
+    private boolean mPending;
+    private long mStartMs;
+
+    /**
+     * Records an open. Returns the position to seek to right after starting playback, which
+     * is {@code startMs} if the open plays and 0 if the position is kept for {@link #take()}.
+     */
+    long onOpen(boolean play, long startMs) {
+        startMs = Math.max(0, startMs);
+        mPending = !play && startMs > 0;
+        mStartMs = mPending ? startMs : 0;
+        return play ? startMs : 0;
+    }
+
+    /**
+     * Replaces the kept position, e.g. with a seek made before playback started. Returns
+     * false if nothing is pending, so the seek has to go to the player.
+     */
+    boolean replace(long startMs) {
+        if (!mPending) return false;
+        mStartMs = Math.max(0, startMs);
+        return true;
+    }
+
+    /**
+     * The position the next play has to start at, or 0; clears it.
+     */
+    long take() {
+        long start = mStartMs;
+        mPending = false;
+        mStartMs = 0;
+        return start;
+    }
+
+    boolean isPending() {
+        return mPending;
+    }
+}
@@ -0,0 +1,350 @@
+package com.insthync.vlc_videoplayer.library;
+
+/**
+ * Quality-of-service counters for one or more {@link VLCVideoPlayer}s.
+ * <p>
+ * A session runs from opening a source until it ends, is replaced or the player is released.
+ * Per session the startup time (open to first video frame), stalls (buffering after the first
+ * frame that was not caused by a seek), play time and decoded / lost frames are tracked, and
+ * folded into running totals and histograms when the session ends. Views may share one
+ * instance to aggregate a whole screen.
+ * <p>
+ * All recording happens on the main thread with primitive fields only, so the event path
+ * never allocates. Read it from the main thread as well.
+ */
+public final class PlaybackMetrics {
+
+    public interface Listener {
+        /**
+         * Called on the main thread when a session ends. {@code session} is reused for the next
+         * session, so copy out whatever has to outlive the call.
+         */
+        void onSessionEnd(PlaybackMetrics metrics, Session session);
+    }
+
+    /**
+     * Summary of one session.
+     */
+    public static final class Session {
+        long startupMs = -1;
+        int stallCount;
+        long stallMs;
+        long playMs;
+        int decodedFrames;
+        int displayedFrames;
+        int lostFrames;
+
+        /**
+         * Time from opening the source to the first video frame, or -1 if none was shown.
+         */
+        public long getStartupMs() {
+            return startupMs;
+        }
+
+        public int getStallCount() {
+            return stallCount;
+        }
+
+        public long getStallMs() {
+            return stallMs;
+        }
+
+        public long getPlayMs() {
+            return playMs;
+        }
+
+        public int getDecodedFrames() {
+            return decodedFrames;
+        }
+
+        public int getDisplayedFrames() {
+            return displayedFrames;
+        }
+
+        public int getLostFrames() {
+            return lostFrames;
+        }
+
+        /**
+         * Share of the session spent stalled rather than playing, 0-1.
+         */
+        public float getRebufferRatio() {
+            long total = playMs + stallMs;
+            return total > 0 ? stallMs / (float) total : 0;
+        }
+
+        void reset() {
+            startupMs = -1;
+            stallCount = 0;
+            stallMs = 0;
+            playMs = 0;
+            decodedFrames = 0;
+            displayedFrames = 0;
+            lostFrames = 0;
+        }
+    }
+
+    private final Session mSession = new Session();
+    private final Histogram mStartupHistogram =
+            new Histogram(100, 200, 300, 500, 750, 1000, 1500, 2000, 3000, 5000, 10000);
+    private final Histogram mStallHistogram =
+            new Histogram(100, 250, 500, 1000, 2000, 5000, 10000, 30000);
+    // per session, in permille
+    private final Histogram mRebufferHistogram =
+            new Histogram(0, 5, 10, 20, 50, 100, 200, 500);
+    private Listener mListener;
+
+    private boolean mActive;
+    private long mSessionStartMs;
+    private long mPlayingSinceMs = -1;
+    private long mStallStartMs = -1;
+    private boolean mPlaying;
+    private boolean mSeeking;
+
+    private long mSessionCount;
+    private long mStartupCount;
+    private long mStallCount;
+    private long mStallMs;
+    private long mPlayMs;
+    private long mDecodedFrames;
+    private long mDisplayedFrames;
+    private long mLostFrames;
+    private long mLayoutPasses;
+    private long mSkippedLayouts;
+    private long mLoopCount;
+    private final Histogram mLoopGapHistogram =
+            new Histogram(0, 20, 40, 80, 160, 320, 640, 1280);
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    void startSession(long nowMs) {
+        if (mActive)
+            endSession(nowMs, 0, 0, 0);
+        mSession.reset();
+        mActive = true;
+        mSessionStartMs = nowMs;
+        mPlayingSinceMs = -1;
+        mStallStartMs = -1;
+        mPlaying = false;
+        mSeeking = false;
+    }
+
+    void onFirstFrame(long nowMs) {
+        if (!mActive || mSession.startupMs >= 0) return;
+        mSession.startupMs = nowMs - mSessionStartMs;
+        mStartupCount++;
+        mStartupHistogram.record(mSession.startupMs);
+    }
+
+    void onPlaying(long nowMs) {
+        if (!mActive) return;
+        mPlaying = true;
+        if (mStallStartMs < 0 && mPlayingSinceMs < 0)
+            mPlayingSinceMs = nowMs;
+    }
+
+    void onPaused(long nowMs) {
+        if (!mActive) return;
+        mPlaying = false;
+        stopPlayClock(nowMs);
+    }
+
+    /**
+     * The next buffering episode is caused by a seek and is not counted as a stall.
+     */
+    void onSeek() {
+        mSeeking = true;
+    }
+
+    void onBuffering(float percent, long nowMs) {
+        // buffering before the first frame is part of the startup time
+        if (!mActive || mSession.startupMs < 0) return;
+        if (percent < 100f) {
+            if (mSeeking || mStallStartMs >= 0) return;
+            stopPlayClock(nowMs);
+            mStallStartMs = nowMs;
+            mSession.stallCount++;
+        } else {
+            mSeeking = false;
+            if (mStallStartMs < 0) return;
+            endStall(nowMs);
+            if (mPlaying)
+                mPlayingSinceMs = nowMs;
+        }
+    }
+
+    /**
+     * Returns the finished session, valid until the next one starts, or null if none was active.
+     */
+    Session endSession(long nowMs, int decodedFrames, int displayedFrames, int lostFrames) {
+        if (!mActive) return null;
+        stopPlayClock(nowMs);
+        if (mStallStartMs >= 0)
+            endStall(nowMs);
+        mActive = false;
+
+        Session session = mSession;
+        session.decodedFrames = decodedFrames;
+        session.displayedFrames = displayedFrames;
+        session.lostFrames = lostFrames;
+
+        mSessionCount++;
+        mStallCount += session.stallCount;
+        mStallMs += session.stallMs;
+        mPlayMs += session.playMs;
+        mDecodedFrames += decodedFrames;
+        mDisplayedFrames += displayedFrames;
+        mLostFrames += lostFrames;
+        if (session.playMs + session.stallMs > 0)
+            mRebufferHistogram.record(Math.round(session.getRebufferRatio() * 1000));
+
+        if (mListener != null)
+            mListener.onSessionEnd(this, session);
+        return session;
+    }
+
+    void onLayoutPass() {
+        mLayoutPasses++;
+    }
+
+    void onLayoutSkipped() {
+        mSkippedLayouts++;
+    }
+
+    void onLoop(long gapMs) {
+        mLoopCount++;
+        mLoopGapHistogram.record(gapMs);
+    }
+
+    boolean isSessionActive() {
+        return mActive;
+    }
+
+    private void stopPlayClock(long nowMs) {
+        if (mPlayingSinceMs < 0) return;
+        mSession.playMs += nowMs - mPlayingSinceMs;
+        mPlayingSinceMs = -1;
+    }
+
+    private void endStall(long nowMs) {
+        long duration = nowMs - mStallStartMs;
+        mStallStartMs = -1;
+        mSession.stallMs += duration;
+        mStallHistogram.record(duration);
+    }
+
+    public long getSessionCount() {
+        return mSessionCount;
+    }
+
+    /**
+     * Number of sessions that showed a first frame.
+     */
+    public long getStartupCount() {
+        return mStartupCount;
+    }
+
+    public long getStallCount() {
+        return mStallCount;
+    }
+
+    public long getStallMs() {
+        return mStallMs;
+    }
+
+    public long getPlayMs() {
+        return mPlayMs;
+    }
+
+    public long getDecodedFrames() {
+        return mDecodedFrames;
+    }
+
+    public long getDisplayedFrames() {
+        return mDisplayedFrames;
+    }
+
+    public long getLostFrames() {
+        return mLostFrames;
+    }
+
+    /**
+     * Surface layouts that changed the video geometry and so cost a layout pass.
+     */
+    public long getLayoutPassCount() {
+        return mLayoutPasses;
+    }
+
+    /**
+     * Surface layout requests that were dropped because the geometry did not change.
+     */
+    public long getSkippedLayoutCount() {
+        return mSkippedLayouts;
+    }
+
+    /**
+     * Times a looping media wrapped around to its start without being reopened.
+     */
+    public long getLoopCount() {
+        return mLoopCount;
+    }
+
+    /**
+     * Share of all finished sessions spent stalled rather than playing, 0-1.
+     */
+    public float getRebufferRatio() {
+        long total = mPlayMs + mStallMs;
+        return total > 0 ? mStallMs / (float) total : 0;
+    }
+
+    /**
+     * Startup times in milliseconds.
+     */
+    public Histogram getStartupHistogram() {
+        return mStartupHistogram;
+    }
+
+    /**
+     * Individual stall durations in milliseconds.
+     */
+    public Histogram getStallHistogram() {
+        return mStallHistogram;
+    }
+
+    /**
+     * Per-session rebuffer ratios in permille.
+     */
+    public Histogram getRebufferHistogram() {
+        return mRebufferHistogram;
+    }
+
+    /**
+     * Time each loop took beyond the media time left before the end, in milliseconds.
+     */
+    public Histogram getLoopGapHistogram() {
+        return mLoopGapHistogram;
+    }
+
+    /**
+     * Clears the totals and histograms. A session in progress keeps running.
+     */
+    public void reset() {
+        mSessionCount = 0;
+        mStartupCount = 0;
+        mStallCount = 0;
+        mStallMs = 0;
+        mPlayMs = 0;
+        mDecodedFrames = 0;
+        mDisplayedFrames = 0;
+        mLostFrames = 0;
+        mLayoutPasses = 0;
+        mSkippedLayouts = 0;
+        mLoopCount = 0;
+        mStartupHistogram.reset();
+        mStallHistogram.reset();
+        mRebufferHistogram.reset();
+        mLoopGapHistogram.reset();
+    }
+}
@@ -0,0 +1,296 @@
+package com.insthync.vlc_videoplayer.library;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.videolan.libvlc.LibVLC;
+import org.videolan.libvlc.Media;
+import org.videolan.libvlc.MediaPlayer;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs blocking MediaPlayer calls (setMedia, play, stop, seeks, release) on one background
+ * thread, in the order they were issued.
+ * <p>
+ * A queued command is dropped when a newer one for the same player makes it pointless: an
+ * open drops pending opens, play/pause/stop and seeks, a seek drops pending seeks, a
+ * play/pause/stop drops pending ones of those, and a release drops everything. Results come
+ * back to the UI thread through the player's own events, or through {@link Command#done()}.
+ */
+final class PlayerCommandExecutor {
+
+    private static final String TAG = "PlayerCommandExecutor";
+
+    static final int OPEN = 0;
+    static final int PLAYBACK = 1;
+    static final int SEEK = 2;
+    static final int RELEASE = 3;
+
+    abstract static class Command implements Runnable {
+        final Object target;
+        final int type;
+
+        Command(Object target, int type) {
+            this.target = target;
+            this.type = type;
+        }
+
+        /**
+         * Called on the result executor after {@link #run()}.
+         */
+        void done() {
+        }
+
+        /**
+         * Called instead of {@link #run()} when a newer command superseded this one.
+         */
+        void discard() {
+        }
+    }
+
+    private static PlayerCommandExecutor sInstance;
+
+    private final Executor mResultExecutor;
+    private final String mName;
+    private final LinkedList<Command> mPending = new LinkedList<>();
+    private Thread mThread;
+    private long mExecutedCount;
+    private long mSupersededCount;
+
+    /**
+     * The executor shared by all views, reporting results on the main thread.
+     */
+    static synchronized PlayerCommandExecutor get() {
+        if (sInstance == null) {
+            final Handler handler = new Handler(Looper.getMainLooper());
+            sInstance = new PlayerCommandExecutor("VLCPlayerCommands", new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    handler.post(command);
+                }
+            });
+        }
+        return sInstance;
+    }
+
+    PlayerCommandExecutor(String name, Executor resultExecutor) {
+        mName = name;
+        mResultExecutor = resultExecutor;
+    }
+
+    void execute(Command command) {
+        LinkedList<Command> superseded = null;
+        synchronized (mPending) {
+            Iterator<Command> it = mPending.iterator();
+            while (it.hasNext()) {
+                Command pending = it.next();
+                if (pending.target == command.target && supersedes(command.type, pending.type)) {
+                    it.remove();
+                    if (superseded == null) superseded = new LinkedList<>();
+                    superseded.add(pending);
+                }
+            }
+            mPending.addLast(command);
+            if (superseded != null) mSupersededCount += superseded.size();
+            if (mThread == null) {
+                mThread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        loop();
+                    }
+                }, mName);
+                mThread.setDaemon(true);
+                mThread.start();
+            }
+            mPending.notifyAll();
+        }
+        if (superseded != null) {
+            for (Command pending : superseded)
+                pending.discard();
+        }
+    }
+
+    static boolean supersedes(int newer, int older) {
+        switch (newer) {
+            case RELEASE:
+                return true;
+            case OPEN:
+                return older != RELEASE;
+            default:
+                return newer == older;
+        }
+    }
+
+    int getPendingCount() {
+        synchronized (mPending) {
+            return mPending.size();
+        }
+    }
+
+    long getExecutedCount() {
+        synchronized (mPending) {
+            return mExecutedCount;
+        }
+    }
+
+    long getSupersededCount() {
+        synchronized (mPending) {
+            return mSupersededCount;
+        }
+    }
+
+    private void loop() {
+        while (true) {
+            final Command command;
+            synchronized (mPending) {
+                while (mPending.isEmpty()) {
+                    try {
+                        mPending.wait();
+                    } catch (InterruptedException e) {
+                        // keep serving, commands must not be lost
+                    }
+                }
+                command = mPending.removeFirst();
+            }
+            try {
+                command.run();
+            } catch (Throwable t) {
+                // e.g. a player released behind our back; the thread must keep serving
+                Log.e(TAG, "Command of type " + command.type + " failed", t);
+            }
+            synchronized (mPending) {
+                mExecutedCount++;
+            }
+            mResultExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    command.done();
+                }
+            });
+        }
+    }
+
+    // MediaPlayer commands
+
+    /**
+     * Sets {@code media} on {@code player}, optionally starting playback at {@code startTime}.
+     * Takes over the caller's reference to {@code media}.
+     */
+    static Command open(final MediaPlayer player, final Media media, final boolean play, final long startTime) {
+        return new Command(player, OPEN) {
+            @Override
+            public void run() {
+                player.setMedia(media);
+                media.release();
+                if (play) {
+                    player.play();
+                    if (startTime > 0)
+                        player.setTime(startTime);
+                }
+            }
+
+            @Override
+            void discard() {
+                media.release();
+            }
+        };
+    }
+
+    static Command play(final MediaPlayer player) {
+        return play(player, 0);
+    }
+
+    /**
+     * Starts playback, then seeks to {@code startTime} if it is positive.
+     */
+    static Command play(final MediaPlayer player, final long startTime) {
+        return new Command(player, PLAYBACK) {
+            @Override
+            public void run() {
+                player.play();
+                if (startTime > 0)
+                    player.setTime(startTime);
+            }
+        };
+    }
+
+    static Command pause(final MediaPlayer player) {
+        return new Command(player, PLAYBACK) {
+            @Override
+            public void run() {
+                player.pause();
+            }
+        };
+    }
+
+    static Command stop(final MediaPlayer player) {
+        return new Command(player, PLAYBACK) {
+            @Override
+            public void run() {
+                player.stop();
+            }
+        };
+    }
+
+    static Command seekTime(final MediaPlayer player, final long timeMs) {
+        return seekTime(player, timeMs, null);
+    }
+
+    /**
+     * Seeks to {@code timeMs}, then runs {@code onDone}, if any, on the result executor.
+     */
+    static Command seekTime(final MediaPlayer player, final long timeMs, final Runnable onDone) {
+        return new Command(player, SEEK) {
+            @Override
+            public void run() {
+                player.setTime(timeMs);
+            }
+
+            @Override
+            void done() {
+                if (onDone != null)
+                    onDone.run();
+            }
+        };
+    }
+
+    /**
+     * Seeks to {@code position}, then runs {@code onDone}, if any, on the result executor.
+     */
+    static Command seekPosition(final MediaPlayer player, final float position, final Runnable onDone) {
+        return new Command(player, SEEK) {
+            @Override
+            public void run() {
+                player.setPosition(position);
+            }
+
+            @Override
+            void done() {
+                if (onDone != null)
+                    onDone.run();
+            }
+        };
+    }
+
+    /**
+     * Releases {@code player}, then gives back its reference to {@code engine}, if any.
+     */
+    static Command release(final MediaPlayer player, final LibVLC engine) {
+        return new Command(player, RELEASE) {
+            @Override
+            public void run() {
+                player.release();
+            }
+
+            @Override
+            void done() {
+                if (engine != null)
+                    LibVLCPool.release(engine);
+            }
+        };
+    }
+}
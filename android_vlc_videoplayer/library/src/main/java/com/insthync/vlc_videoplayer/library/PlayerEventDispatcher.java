@@ -0,0 +1,143 @@
+package com.insthync.vlc_videoplayer.library;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+
+import java.util.Arrays;
+
+/**
+ * Fans player events out to {@link VLCVideoPlayer.PlayerListener}s.
+ * <p>
+ * Events only record their latest values in fields and queue one message per event type, so
+ * listeners run after the view has updated its own UI, a slow listener only delays a single
+ * coalesced callback instead of a growing backlog, and nothing is allocated per event.
+ * Listeners are held in a copy-on-write array and may add or remove listeners from a callback.
+ */
+final class PlayerEventDispatcher extends Handler {
+
+    private static final int MSG_PREPARED = 1;
+    private static final int MSG_BUFFERING = 2;
+    private static final int MSG_PROGRESS = 3;
+    private static final int MSG_COMPLETION = 4;
+    private static final int MSG_ERROR = 5;
+    private static final int MSG_TRACKS = 6;
+
+    private static final VLCVideoPlayer.PlayerListener[] NO_LISTENERS = new VLCVideoPlayer.PlayerListener[0];
+
+    private final VLCVideoPlayer mPlayer;
+    private volatile VLCVideoPlayer.PlayerListener[] mListeners = NO_LISTENERS;
+
+    // latest values, main thread only
+    private long mDurationMs;
+    private float mBufferingPercent;
+    private long mPositionMs;
+    // bit per Media.Track.Type that changed since the last dispatch
+    private int mChangedTrackTypes;
+
+    PlayerEventDispatcher(VLCVideoPlayer player) {
+        super(Looper.getMainLooper());
+        mPlayer = player;
+    }
+
+    synchronized void add(VLCVideoPlayer.PlayerListener listener) {
+        VLCVideoPlayer.PlayerListener[] listeners = mListeners;
+        for (VLCVideoPlayer.PlayerListener l : listeners)
+            if (l == listener) return;
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        mListeners = listeners;
+    }
+
+    synchronized void remove(VLCVideoPlayer.PlayerListener listener) {
+        VLCVideoPlayer.PlayerListener[] listeners = mListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] != listener) continue;
+            VLCVideoPlayer.PlayerListener[] copy = listeners.length == 1 ? NO_LISTENERS
+                    : new VLCVideoPlayer.PlayerListener[listeners.length - 1];
+            System.arraycopy(listeners, 0, copy, 0, i);
+            System.arraycopy(listeners, i + 1, copy, i, listeners.length - i - 1);
+            mListeners = copy;
+            return;
+        }
+    }
+
+    void prepared(long durationMs) {
+        mDurationMs = durationMs;
+        dispatch(MSG_PREPARED);
+    }
+
+    void buffering(float percent) {
+        mBufferingPercent = percent;
+        dispatch(MSG_BUFFERING);
+    }
+
+    void progress(long positionMs, long durationMs) {
+        mPositionMs = positionMs;
+        mDurationMs = durationMs;
+        dispatch(MSG_PROGRESS);
+    }
+
+    void completion() {
+        dispatch(MSG_COMPLETION);
+    }
+
+    void error() {
+        dispatch(MSG_ERROR);
+    }
+
+    void tracksChanged(int trackType) {
+        if (trackType < 0) return;
+        mChangedTrackTypes |= 1 << trackType;
+        dispatch(MSG_TRACKS);
+    }
+
+    /**
+     * Drops callbacks not delivered yet, e.g. for a source that was replaced.
+     */
+    void cancel() {
+        removeCallbacksAndMessages(null);
+        mChangedTrackTypes = 0;
+    }
+
+    private void dispatch(int what) {
+        if (mListeners.length == 0 || hasMessages(what)) return;
+        sendEmptyMessage(what);
+    }
+
+    @Override
+    public void handleMessage(Message msg) {
+        VLCVideoPlayer.PlayerListener[] listeners = mListeners;
+        switch (msg.what) {
+            case MSG_PREPARED:
+                for (VLCVideoPlayer.PlayerListener l : listeners)
+                    l.onPrepared(mPlayer, mDurationMs);
+                break;
+            case MSG_BUFFERING:
+                for (VLCVideoPlayer.PlayerListener l : listeners)
+                    l.onBuffering(mPlayer, mBufferingPercent);
+                break;
+            case MSG_PROGRESS:
+                for (VLCVideoPlayer.PlayerListener l : listeners)
+                    l.onProgress(mPlayer, mPositionMs, mDurationMs);
+                break;
+            case MSG_COMPLETION:
+                for (VLCVideoPlayer.PlayerListener l : listeners)
+                    l.onCompletion(mPlayer);
+                break;
+            case MSG_ERROR:
+                for (VLCVideoPlayer.PlayerListener l : listeners)
+                    l.onError(mPlayer);
+                break;
+            case MSG_TRACKS:
+                int types = mChangedTrackTypes;
+                mChangedTrackTypes = 0;
+                for (int type = 0; types != 0; type++, types >>>= 1) {
+                    if ((types & 1) == 0) continue;
+                    for (VLCVideoPlayer.PlayerListener l : listeners)
+                        l.onTracksChanged(mPlayer, type);
+                }
+                break;
+        }
+    }
+}
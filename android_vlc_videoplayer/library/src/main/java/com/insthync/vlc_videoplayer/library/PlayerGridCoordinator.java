@@ -0,0 +1,320 @@
+package com.insthync.vlc_videoplayer.library;
+
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps a group of {@link VLCVideoPlayer}s, e.g. a dashboard grid, within a budget of active
+ * decoders.
+ * <p>
+ * Players are ranked by the focused one first, then by how much of them is on screen. The
+ * first {@code budget} of those that are sufficiently visible keep playing, decoding only
+ * keyframes unless focused; the others are paused on their last frame. Players that stay
+ * off-screen or detached longer than the release delay also give back their MediaPlayer.
+ * Paused players stay parked in {@link VLCPlayerPool}, and the pool's decoder cap is raised
+ * to the budget if needed, so the pool never reclaims a player the coordinator keeps.
+ * Visibility is re-evaluated on scroll, layout and visibility changes. Main thread only.
+ */
+public final class PlayerGridCoordinator {
+
+    /** Within the budget and visible: playing. */
+    static final int STATE_ACTIVE = 0;
+    /** Visible, but beyond the budget or too obscured: paused. */
+    static final int STATE_PAUSED = 1;
+    /** Not visible at all: paused, released after the release delay. */
+    static final int STATE_HIDDEN = 2;
+
+    public static final float DEFAULT_MIN_VISIBLE_FRACTION = 0.25f;
+    public static final long DEFAULT_RELEASE_DELAY_MS = 5000;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final List<VLCVideoPlayer> mPlayers = new ArrayList<>();
+    private final Rect mRect = new Rect();
+    private int mBudget;
+    private float mMinVisibleFraction = DEFAULT_MIN_VISIBLE_FRACTION;
+    private long mReleaseDelayMs = DEFAULT_RELEASE_DELAY_MS;
+    private boolean mKeyframesWhenUnfocused = true;
+    private VLCVideoPlayer mFocused;
+
+    // per player, parallel to mPlayers
+    private float[] mFractions = new float[0];
+    private int[] mStates = new int[0];
+    private final List<Integer> mAppliedStates = new ArrayList<>();
+    private final List<Long> mHiddenSinceMs = new ArrayList<>();
+    private boolean mUpdatePosted;
+
+    private final Runnable mUpdate = new Runnable() {
+        @Override
+        public void run() {
+            mUpdatePosted = false;
+            update();
+        }
+    };
+
+    private final Runnable mReleaseCheck = new Runnable() {
+        @Override
+        public void run() {
+            requestUpdate();
+        }
+    };
+
+    private final ViewTreeObserver.OnScrollChangedListener mScrollListener = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            requestUpdate();
+        }
+    };
+
+    private final ViewTreeObserver.OnGlobalLayoutListener mLayoutListener = new ViewTreeObserver.OnGlobalLayoutListener() {
+        @Override
+        public void onGlobalLayout() {
+            requestUpdate();
+        }
+    };
+
+    /**
+     * A coordinator with a budget matching the device's performance tier.
+     */
+    public PlayerGridCoordinator() {
+        this(defaultBudget(DeviceProfile.classify(DeviceSpecs.current())));
+    }
+
+    public PlayerGridCoordinator(int budget) {
+        setBudget(budget);
+    }
+
+    static int defaultBudget(int tier) {
+        switch (tier) {
+            case DeviceProfile.TIER_LOW:
+                return 2;
+            case DeviceProfile.TIER_HIGH:
+                return 6;
+            default:
+                return 4;
+        }
+    }
+
+    /**
+     * Most players decoding at once. Raises {@link VLCPlayerPool#setMaxActive(int)} if it is lower.
+     */
+    public void setBudget(int budget) {
+        if (budget < 1) throw new IllegalArgumentException("Budget must be at least 1");
+        mBudget = budget;
+        if (VLCPlayerPool.getMaxActive() < budget)
+            VLCPlayerPool.setMaxActive(budget);
+        requestUpdate();
+    }
+
+    public int getBudget() {
+        return mBudget;
+    }
+
+    /**
+     * Share of a player that must be on screen for it to play.
+     */
+    public void setMinVisibleFraction(float fraction) {
+        mMinVisibleFraction = fraction;
+        requestUpdate();
+    }
+
+    /**
+     * How long a player may stay hidden before its MediaPlayer is released.
+     */
+    public void setReleaseDelay(long delayMs) {
+        mReleaseDelayMs = delayMs;
+        requestUpdate();
+    }
+
+    /**
+     * Whether active players other than the focused one decode keyframes only. Defaults to true.
+     * The decode mode is chosen when a player is resumed, so a change reaches players that are
+     * already playing only after they were paused by the coordinator.
+     */
+    public void setKeyframesWhenUnfocused(boolean keyframes) {
+        mKeyframesWhenUnfocused = keyframes;
+        requestUpdate();
+    }
+
+    /**
+     * The player the user is looking at, always active. May be null. It decodes every frame
+     * from the next time it is resumed; moving the focus does not reopen playing players.
+     */
+    public void setFocused(VLCVideoPlayer player) {
+        mFocused = player;
+        requestUpdate();
+    }
+
+    public VLCVideoPlayer getFocused() {
+        return mFocused;
+    }
+
+    public void add(VLCVideoPlayer player) {
+        if (mPlayers.contains(player)) return;
+        mPlayers.add(player);
+        // paused until the next update, so attaching it never takes a decoder
+        mAppliedStates.add(STATE_PAUSED);
+        mHiddenSinceMs.add(-1L);
+        player.setGridCoordinator(this);
+        player.suspendForGrid(false);
+        if (player.getWindowToken() != null)
+            onAttached(player);
+        requestUpdate();
+    }
+
+    /**
+     * Stops coordinating {@code player}, resuming it if the coordinator had paused it.
+     */
+    public void remove(VLCVideoPlayer player) {
+        int index = mPlayers.indexOf(player);
+        if (index < 0) return;
+        mPlayers.remove(index);
+        mAppliedStates.remove(index);
+        mHiddenSinceMs.remove(index);
+        if (player == mFocused)
+            mFocused = null;
+        player.setGridCoordinator(null);
+        removeTreeListeners(player);
+        player.setDecodeModeOnResume(VLCVideoPlayer.DECODE_FULL);
+        player.resumeForGrid();
+        requestUpdate();
+    }
+
+    void onAttached(VLCVideoPlayer player) {
+        ViewTreeObserver observer = player.getViewTreeObserver();
+        // the tree is shared by all players, so listeners are only added once
+        observer.removeOnScrollChangedListener(mScrollListener);
+        observer.addOnScrollChangedListener(mScrollListener);
+        removeLayoutListener(observer);
+        observer.addOnGlobalLayoutListener(mLayoutListener);
+        requestUpdate();
+    }
+
+    void onDetached(VLCVideoPlayer player) {
+        removeTreeListeners(player);
+        requestUpdate();
+    }
+
+    private void removeTreeListeners(VLCVideoPlayer player) {
+        ViewTreeObserver observer = player.getViewTreeObserver();
+        if (!observer.isAlive()) return;
+        observer.removeOnScrollChangedListener(mScrollListener);
+        removeLayoutListener(observer);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void removeLayoutListener(ViewTreeObserver observer) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+            observer.removeOnGlobalLayoutListener(mLayoutListener);
+        else
+            observer.removeGlobalOnLayoutListener(mLayoutListener);
+    }
+
+    /**
+     * Re-evaluates visibility on the next frame; repeated calls are coalesced.
+     */
+    public void requestUpdate() {
+        if (mUpdatePosted) return;
+        mUpdatePosted = true;
+        mHandler.post(mUpdate);
+    }
+
+    private void update() {
+        int count = mPlayers.size();
+        if (mFractions.length < count) {
+            mFractions = new float[count];
+            mStates = new int[count];
+        }
+        int focused = -1;
+        for (int i = 0; i < count; i++) {
+            VLCVideoPlayer player = mPlayers.get(i);
+            mFractions[i] = visibleFraction(player);
+            if (player == mFocused)
+                focused = i;
+        }
+        assign(mFractions, count, focused, mBudget, mMinVisibleFraction, mStates);
+
+        long now = SystemClock.uptimeMillis();
+        long nextRelease = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            VLCVideoPlayer player = mPlayers.get(i);
+            int state = mStates[i];
+
+            long hiddenSince = mHiddenSinceMs.get(i);
+            if (state == STATE_HIDDEN) {
+                if (hiddenSince < 0)
+                    mHiddenSinceMs.set(i, hiddenSince = now);
+            } else {
+                mHiddenSinceMs.set(i, -1L);
+            }
+            boolean release = state == STATE_HIDDEN && now - hiddenSince >= mReleaseDelayMs;
+            if (state == STATE_HIDDEN && !release)
+                nextRelease = Math.min(nextRelease, hiddenSince + mReleaseDelayMs);
+
+            int applied = mAppliedStates.get(i);
+            if (state == STATE_ACTIVE || applied == -1) continue;
+            if (applied == STATE_ACTIVE || release)
+                player.suspendForGrid(release);
+            // a released player stays in a separate state so it is not released twice
+            mAppliedStates.set(i, release ? -1 : state);
+        }
+        // suspend before resuming, so the budget never exceeds the pool's decoder cap
+        for (int i = 0; i < count; i++) {
+            if (mStates[i] != STATE_ACTIVE || mAppliedStates.get(i) == STATE_ACTIVE) continue;
+            // the mode is picked when a tile resumes; focus moving between playing tiles
+            // does not reopen them
+            boolean keyframes = mKeyframesWhenUnfocused && i != focused;
+            VLCVideoPlayer player = mPlayers.get(i);
+            player.setDecodeModeOnResume(keyframes ? VLCVideoPlayer.DECODE_KEYFRAMES : VLCVideoPlayer.DECODE_FULL);
+            player.resumeForGrid();
+            mAppliedStates.set(i, STATE_ACTIVE);
+        }
+
+        mHandler.removeCallbacks(mReleaseCheck);
+        if (nextRelease != Long.MAX_VALUE)
+            mHandler.postDelayed(mReleaseCheck, nextRelease - now);
+    }
+
+    private float visibleFraction(View view) {
+        int area = view.getWidth() * view.getHeight();
+        if (area == 0 || view.getWindowToken() == null || view.getWindowVisibility() != View.VISIBLE
+                || !view.isShown() || !view.getGlobalVisibleRect(mRect))
+            return 0;
+        return mRect.width() * mRect.height() / (float) area;
+    }
+
+    /**
+     * Assigns a {@code STATE_*} to each of the first {@code count} players given the share of
+     * each that is on screen.
+     */
+    static void assign(float[] visibleFractions, int count, int focused, int budget,
+                       float minVisibleFraction, int[] outStates) {
+        for (int i = 0; i < count; i++)
+            outStates[i] = visibleFractions[i] > 0 ? STATE_PAUSED : STATE_HIDDEN;
+
+        int active = 0;
+        if (focused >= 0 && visibleFractions[focused] > 0) {
+            outStates[focused] = STATE_ACTIVE;
+            active++;
+        }
+        // selection by decreasing visible share; counts are small
+        while (active < budget) {
+            int best = -1;
+            for (int i = 0; i < count; i++) {
+                if (outStates[i] != STATE_PAUSED || visibleFractions[i] < minVisibleFraction) continue;
+                if (best < 0 || visibleFractions[i] > visibleFractions[best])
+                    best = i;
+            }
+            if (best < 0) break;
+            outStates[best] = STATE_ACTIVE;
+            active++;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.insthync.vlc_videoplayer.library;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bookkeeping behind {@link VLCPlayerPool}: which players are borrowed and by whom, in least
+ * recently used order, and which are kept warm. Free of libvlc so it runs on the JVM.
+ *
+ * @param <P> player
+ * @param <K> what a player is bound to, an idle player is only reused for the same key
+ * @param <B> borrower
+ */
+final class PlayerLedger<P, K, B> {
+
+    // access order, so the eldest entry is the least recently used borrower
+    private final LinkedHashMap<P, B> mBorrowed = new LinkedHashMap<>(8, 0.75f, true);
+    // oldest first
+    private final LinkedList<P> mIdle = new LinkedList<>();
+    private final Map<P, K> mKeys = new IdentityHashMap<>();
+    // borrowed but paused, these neither count towards the cap nor get reclaimed
+    private final Set<P> mParked = Collections.newSetFromMap(new IdentityHashMap<P, Boolean>());
+
+    /**
+     * The least recently used decoding player and its borrower, to be reclaimed before
+     * another player starts decoding if {@code maxActive} already do. Null if there is room.
+     */
+    Map.Entry<P, B> nextToReclaim(int maxActive) {
+        if (decodingCount() < maxActive) return null;
+        for (Map.Entry<P, B> entry : mBorrowed.entrySet()) {
+            if (!mParked.contains(entry.getKey()))
+                return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Removes and returns the most recently returned idle player bound to {@code key}, or null.
+     */
+    P takeIdle(K key) {
+        Iterator<P> it = mIdle.descendingIterator();
+        while (it.hasNext()) {
+            P candidate = it.next();
+            if (mKeys.get(candidate) == key) {
+                it.remove();
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records {@code player} as borrowed, most recently used.
+     */
+    void borrow(P player, K key, B borrower) {
+        mKeys.put(player, key);
+        mBorrowed.put(player, borrower);
+    }
+
+    /**
+     * Marks a borrowed player as most recently used.
+     */
+    void touch(P player) {
+        // a lookup is an access in an access-ordered map
+        mBorrowed.get(player);
+    }
+
+    /**
+     * Parks a borrowed player that is paused, or unparks it once it decodes again.
+     */
+    void setParked(P player, boolean parked) {
+        if (!mBorrowed.containsKey(player)) return;
+        if (parked)
+            mParked.add(player);
+        else
+            mParked.remove(player);
+    }
+
+    boolean isParked(P player) {
+        return mParked.contains(player);
+    }
+
+    /**
+     * Moves a borrowed player to the idle list. Returns false if it was not borrowed.
+     */
+    boolean giveBack(P player) {
+        if (mBorrowed.remove(player) == null) return false;
+        mParked.remove(player);
+        mIdle.addLast(player);
+        return true;
+    }
+
+    /**
+     * Drops the oldest idle players beyond {@code maxIdle} and returns them, oldest first.
+     * Their keys stay available through {@link #forget(Object)}.
+     */
+    List<P> trimIdle(int maxIdle) {
+        List<P> trimmed = new ArrayList<>();
+        while (mIdle.size() > maxIdle)
+            trimmed.add(mIdle.removeFirst());
+        return trimmed;
+    }
+
+    /**
+     * Forgets a trimmed player and returns its key.
+     */
+    K forget(P player) {
+        return mKeys.remove(player);
+    }
+
+    int activeCount() {
+        return mBorrowed.size();
+    }
+
+    int decodingCount() {
+        return mBorrowed.size() - mParked.size();
+    }
+
+    int idleCount() {
+        return mIdle.size();
+    }
+}
@@ -0,0 +1,105 @@
+package com.insthync.vlc_videoplayer.library;
+
+import android.os.SystemClock;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+
+/**
+ * Decouples progress UI updates from the rate VLC fires TimeChanged at.
+ * <p>
+ * Bursts of {@link #onTimeChanged(long)} are coalesced into a single update posted on the
+ * next animation frame, and updates are spaced by the budget for the current controls
+ * state. A rate of 0 Hz disables updates for that state entirely; the latest time is
+ * delivered as soon as the controls become visible again.
+ */
+final class ProgressScheduler implements Runnable {
+
+    static final float DEFAULT_VISIBLE_HZ = 4f;
+    static final float DEFAULT_HIDDEN_HZ = 0f;
+
+    interface Callback {
+        void onProgressUpdate(long timeMs);
+    }
+
+    private final View mView;
+    private final Callback mCallback;
+
+    private long mVisibleIntervalMs;
+    private long mHiddenIntervalMs;
+    private boolean mControlsVisible;
+
+    private long mPendingTime;
+    private boolean mDirty;
+    private boolean mScheduled;
+    private long mLastUpdateMs;
+
+    ProgressScheduler(View view, Callback callback) {
+        mView = view;
+        mCallback = callback;
+        setRates(DEFAULT_VISIBLE_HZ, DEFAULT_HIDDEN_HZ);
+    }
+
+    /**
+     * @param visibleHz maximum updates per second while the controls are shown, 0 to disable
+     * @param hiddenHz  maximum updates per second while the controls are hidden, 0 to disable
+     */
+    void setRates(float visibleHz, float hiddenHz) {
+        mVisibleIntervalMs = toInterval(visibleHz);
+        mHiddenIntervalMs = toInterval(hiddenHz);
+        schedule();
+    }
+
+    void setControlsVisible(boolean visible) {
+        if (mControlsVisible == visible) return;
+        mControlsVisible = visible;
+        if (visible) {
+            // show fresh values right away instead of waiting for the next budget slot
+            mLastUpdateMs = 0;
+        }
+        schedule();
+    }
+
+    void onTimeChanged(long timeMs) {
+        mPendingTime = timeMs;
+        mDirty = true;
+        schedule();
+    }
+
+    /**
+     * Forces the next time update through immediately, e.g. after a media change.
+     */
+    void invalidate() {
+        mLastUpdateMs = 0;
+        schedule();
+    }
+
+    void cancel() {
+        mView.removeCallbacks(this);
+        mScheduled = false;
+    }
+
+    @Override
+    public void run() {
+        mScheduled = false;
+        if (!mDirty) return;
+        mDirty = false;
+        mLastUpdateMs = SystemClock.uptimeMillis();
+        mCallback.onProgressUpdate(mPendingTime);
+    }
+
+    private void schedule() {
+        long interval = mControlsVisible ? mVisibleIntervalMs : mHiddenIntervalMs;
+        if (mScheduled || !mDirty || interval <= 0) return;
+
+        long delay = mLastUpdateMs + interval - SystemClock.uptimeMillis();
+        mScheduled = true;
+        if (delay > 0)
+            ViewCompat.postOnAnimationDelayed(mView, this, delay);
+        else
+            ViewCompat.postOnAnimation(mView, this);
+    }
+
+    private static long toInterval(float hz) {
+        return hz > 0 ? Math.max(1, Math.round(1000f / hz)) : 0;
+    }
+}
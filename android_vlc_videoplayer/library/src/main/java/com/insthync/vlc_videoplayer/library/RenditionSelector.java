@@ -0,0 +1,121 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.videolan.libvlc.Media;
+
+import java.util.List;
+
+/**
+ * Picks the video rendition to play from measured throughput and the size of the view.
+ * <p>
+ * Sources carrying several video tracks get the smallest one that still covers the view
+ * among those whose bitrate fits the throughput, selected through
+ * {@link VLCVideoPlayer#selectTrack(int, int)}. Adaptive streams (HLS, DASH) switch variants
+ * inside libvlc instead, so for them the same limits are passed as {@code :adaptive-*} options
+ * when the media is opened. Throughput is measured from the bytes read while the player
+ * buffers, when it downloads as fast as the link allows.
+ */
+public final class RenditionSelector {
+
+    // share of the measured throughput a rendition may use
+    private static final float BANDWIDTH_HEADROOM = 0.75f;
+    private static final float SMOOTHING = 0.3f;
+    private static final long MIN_SAMPLE_MS = 200;
+
+    private long mThroughputBps = -1;
+    private long mSampleBytes = -1;
+    private long mSampleAtMs;
+
+    /**
+     * Smoothed download throughput in bits per second, or -1 before the first measurement.
+     */
+    public synchronized long getThroughputBps() {
+        return mThroughputBps;
+    }
+
+    /**
+     * Sets the throughput estimate, e.g. from an earlier session or a known link.
+     */
+    public synchronized void setThroughputBps(long throughputBps) {
+        mThroughputBps = throughputBps;
+    }
+
+    /**
+     * Total bytes read by the input so far, sampled while buffering.
+     */
+    synchronized void onBufferingSample(long readBytes, long nowMs) {
+        if (mSampleBytes < 0 || readBytes < mSampleBytes) {
+            mSampleBytes = readBytes;
+            mSampleAtMs = nowMs;
+            return;
+        }
+        long elapsed = nowMs - mSampleAtMs;
+        if (elapsed < MIN_SAMPLE_MS) return;
+        long bps = (readBytes - mSampleBytes) * 8000 / elapsed;
+        mThroughputBps = mThroughputBps < 0 ? bps : mThroughputBps + (long) (SMOOTHING * (bps - mThroughputBps));
+        mSampleBytes = readBytes;
+        mSampleAtMs = nowMs;
+    }
+
+    /**
+     * Buffering finished; the next samples measure a new download burst.
+     */
+    synchronized void onBufferingDone() {
+        mSampleBytes = -1;
+    }
+
+    /**
+     * Id of the video track to play in a {@code viewWidth} x {@code viewHeight} view, or -1
+     * to leave the choice to libvlc.
+     */
+    public synchronized int select(List<TrackInfo> videoTracks, int viewWidth, int viewHeight) {
+        return pick(videoTracks, mThroughputBps, viewWidth, viewHeight);
+    }
+
+    /**
+     * Limits adaptive streams opened as {@code media} to what {@link #select} would pick.
+     */
+    synchronized void applyTo(Media media, int viewWidth, int viewHeight) {
+        if (viewWidth > 0 && viewHeight > 0) {
+            media.addOption(":adaptive-maxwidth=" + viewWidth);
+            media.addOption(":adaptive-maxheight=" + viewHeight);
+        }
+        if (mThroughputBps > 0)
+            media.addOption(":adaptive-bw=" + Math.max(1, (long) (mThroughputBps * BANDWIDTH_HEADROOM / 1000)));
+    }
+
+    static int pick(List<TrackInfo> videoTracks, long throughputBps, int viewWidth, int viewHeight) {
+        TrackInfo best = null;
+        TrackInfo lowest = null;
+        long budget = throughputBps > 0 ? (long) (throughputBps * BANDWIDTH_HEADROOM) : Long.MAX_VALUE;
+        for (TrackInfo track : videoTracks) {
+            if (track.getType() != TrackInfo.TYPE_VIDEO || track.getId() < 0) continue;
+            if (lowest == null || track.getBitrate() < lowest.getBitrate())
+                lowest = track;
+            // an unknown bitrate is assumed to fit
+            if (track.getBitrate() > budget) continue;
+            if (best == null || better(track, best, viewWidth, viewHeight))
+                best = track;
+        }
+        if (best == null)
+            best = lowest;
+        return best != null ? best.getId() : -1;
+    }
+
+    /**
+     * Prefers renditions covering the view, and the smallest of those; below the view size,
+     * the largest.
+     */
+    private static boolean better(TrackInfo a, TrackInfo b, int viewWidth, int viewHeight) {
+        boolean aCovers = covers(a, viewWidth, viewHeight);
+        boolean bCovers = covers(b, viewWidth, viewHeight);
+        if (aCovers != bCovers) return aCovers;
+        long aPixels = (long) a.getWidth() * a.getHeight();
+        long bPixels = (long) b.getWidth() * b.getHeight();
+        if (aPixels != bPixels) return aCovers ? aPixels < bPixels : aPixels > bPixels;
+        return a.getBitrate() < b.getBitrate();
+    }
+
+    private static boolean covers(TrackInfo track, int viewWidth, int viewHeight) {
+        return track.getWidth() >= viewWidth || track.getHeight() >= viewHeight;
+    }
+}
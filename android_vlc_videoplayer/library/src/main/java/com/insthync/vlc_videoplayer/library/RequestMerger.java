@@ -0,0 +1,66 @@
+package com.insthync.vlc_videoplayer.library;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges requests for the same key into one piece of work while it is queued or running,
+ * collecting the callbacks waiting for it. Thread-safe.
+ *
+ * @param <K> what is requested
+ * @param <C> who waits for it
+ */
+final class RequestMerger<K, C> {
+
+    private final Map<K, List<C>> mPending = new HashMap<>();
+
+    /**
+     * Adds {@code callback} to the request for {@code key}. Returns true if there was none,
+     * in which case the caller has to start the work.
+     */
+    synchronized boolean add(K key, C callback) {
+        List<C> callbacks = mPending.get(key);
+        if (callbacks != null) {
+            if (!callbacks.contains(callback))
+                callbacks.add(callback);
+            return false;
+        }
+        callbacks = new ArrayList<>(1);
+        callbacks.add(callback);
+        mPending.put(key, callbacks);
+        return true;
+    }
+
+    /**
+     * Removes {@code callback} from every request.
+     */
+    synchronized void cancel(C callback) {
+        for (List<C> callbacks : mPending.values())
+            callbacks.remove(callback);
+    }
+
+    /**
+     * Whether anybody still waits for {@code key}. A request nobody waits for is dropped, so
+     * the caller can skip the work.
+     */
+    synchronized boolean isWanted(K key) {
+        List<C> callbacks = mPending.get(key);
+        if (callbacks != null && !callbacks.isEmpty()) return true;
+        mPending.remove(key);
+        return false;
+    }
+
+    /**
+     * Ends the request for {@code key} and returns its callbacks, to be called with the result.
+     */
+    synchronized List<C> finish(K key) {
+        List<C> callbacks = mPending.remove(key);
+        return callbacks != null ? callbacks : new ArrayList<C>(0);
+    }
+
+    synchronized int size() {
+        return mPending.size();
+    }
+}
@@ -0,0 +1,56 @@
+package com.insthync.vlc_videoplayer.library;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Builds {@link ResumePositionStore} keys from source URIs.
+ * <p>
+ * Scheme and host are lower-cased, default ports and fragments dropped and query parameters
+ * sorted, so equivalent spellings of a URI share one key while different hosts or queries
+ * for the same path do not.
+ */
+final class ResumeKeys {
+
+    private ResumeKeys() {
+    }
+
+    static String normalize(String uri) {
+        URI parsed;
+        try {
+            parsed = new URI(uri);
+        } catch (URISyntaxException e) {
+            return uri;
+        }
+        if (parsed.isOpaque() || parsed.getScheme() == null)
+            return uri;
+
+        String scheme = parsed.getScheme().toLowerCase(Locale.US);
+        StringBuilder sb = new StringBuilder(uri.length());
+        sb.append(scheme).append("://");
+        if (parsed.getRawUserInfo() != null)
+            sb.append(parsed.getRawUserInfo()).append('@');
+        if (parsed.getHost() != null)
+            sb.append(parsed.getHost().toLowerCase(Locale.US));
+        int port = parsed.getPort();
+        if (port != -1 && !(port == 80 && "http".equals(scheme)) && !(port == 443 && "https".equals(scheme)))
+            sb.append(':').append(port);
+
+        String path = parsed.getRawPath();
+        sb.append(path == null || path.isEmpty() ? "/" : path);
+
+        String query = parsed.getRawQuery();
+        if (query != null && !query.isEmpty()) {
+            String[] params = query.split("&");
+            Arrays.sort(params);
+            sb.append('?');
+            for (int i = 0; i < params.length; i++) {
+                if (i > 0) sb.append('&');
+                sb.append(params[i]);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,21 @@
+package com.insthync.vlc_videoplayer.library;
+
+/**
+ * Remembers where playback of a source was left off.
+ * <p>
+ * Keys are normalized source URIs. {@link #put(String, long)} is called on every progress
+ * update, so implementations must answer from memory and defer any I/O.
+ */
+public interface ResumePositionStore {
+
+    long NO_POSITION = -1;
+
+    /**
+     * Last stored position in milliseconds, or {@link #NO_POSITION}.
+     */
+    long get(String key);
+
+    void put(String key, long positionMs);
+
+    void remove(String key);
+}
@@ -0,0 +1,201 @@
+package com.insthync.vlc_videoplayer.library;
+
+/**
+ * Debounces seek requests coming from the SeekBar.
+ * <p>
+ * While a seek is in flight further drag targets only replace the pending one, so a finger
+ * drag issues at most one native seek at a time instead of one per SeekBar delta. Drag
+ * targets use the fast (position based) seek; releasing the thumb issues one precise seek.
+ * A seek counts as completed on the first TimeChanged after the player has applied it, and
+ * as timed out {@link #SEEK_TIMEOUT_MS} after it was issued if none arrives (e.g. while
+ * paused), which also issues the pending drag target.
+ * <p>
+ * The public getters expose seek counters and latency for monitoring.
+ */
+public final class SeekPipeline {
+
+    static final long SEEK_TIMEOUT_MS = 1000;
+
+    interface Target {
+        /**
+         * Seeks to {@code timeMs} quickly, landing on a keyframe, and reports
+         * {@link SeekPipeline#onSeekApplied(long)} with {@code seekId} once the player has done so.
+         */
+        void seekFast(long timeMs, long seekId);
+
+        /**
+         * Like {@link #seekFast(long, long)}, but to the exact time.
+         */
+        void seekPrecise(long timeMs, long seekId);
+
+        void postDelayed(Runnable action, long delayMs);
+
+        void removeCallbacks(Runnable action);
+    }
+
+    private final Target mTarget;
+
+    private boolean mDragging;
+    private boolean mInFlight;
+    private boolean mApplied;
+    private long mSeekId;
+    private long mIssuedAtMs;
+    private long mPendingTarget = -1;
+
+    private long mRequestCount;
+    private long mIssuedCount;
+    private long mDroppedCount;
+    private long mCompletedCount;
+    private long mTimedOutCount;
+    private long mLastLatencyMs;
+    private long mMaxLatencyMs;
+    private long mTotalLatencyMs;
+
+    private final Runnable mTimeout = new Runnable() {
+        @Override
+        public void run() {
+            if (!mInFlight) return;
+            mInFlight = false;
+            mTimedOutCount++;
+            issuePending(mIssuedAtMs + SEEK_TIMEOUT_MS);
+        }
+    };
+
+    SeekPipeline(Target target) {
+        mTarget = target;
+    }
+
+    void startDrag() {
+        mDragging = true;
+    }
+
+    void dragTo(long timeMs, long nowMs) {
+        mRequestCount++;
+        if (mInFlight) {
+            if (mPendingTarget >= 0) mDroppedCount++;
+            mPendingTarget = timeMs;
+        } else {
+            issue(timeMs, true, nowMs);
+        }
+    }
+
+    void stopDrag(long timeMs, long nowMs) {
+        mDragging = false;
+        mRequestCount++;
+        if (mPendingTarget >= 0) {
+            mDroppedCount++;
+            mPendingTarget = -1;
+        }
+        issue(timeMs, false, nowMs);
+    }
+
+    /**
+     * A single precise seek not coming from a drag, e.g. {@code seekTo()} or a key press.
+     */
+    void seek(long timeMs, long nowMs) {
+        mRequestCount++;
+        mPendingTarget = -1;
+        issue(timeMs, false, nowMs);
+    }
+
+    /**
+     * The player has run the seek issued with {@code seekId}.
+     */
+    void onSeekApplied(long seekId) {
+        if (mInFlight && seekId == mSeekId)
+            mApplied = true;
+    }
+
+    void onTimeChanged(long nowMs) {
+        if (!mInFlight || !mApplied) return;
+
+        long latency = nowMs - mIssuedAtMs;
+        mInFlight = false;
+        mTarget.removeCallbacks(mTimeout);
+        mCompletedCount++;
+        mLastLatencyMs = latency;
+        mTotalLatencyMs += latency;
+        if (latency > mMaxLatencyMs) mMaxLatencyMs = latency;
+
+        issuePending(nowMs);
+    }
+
+    /**
+     * Forgets any in-flight or pending seek, e.g. when the media changes.
+     */
+    void reset() {
+        mDragging = false;
+        mInFlight = false;
+        mPendingTarget = -1;
+        mTarget.removeCallbacks(mTimeout);
+    }
+
+    boolean isDragging() {
+        return mDragging;
+    }
+
+    boolean isInFlight() {
+        return mInFlight;
+    }
+
+    private void issuePending(long nowMs) {
+        if (mPendingTarget < 0 || !mDragging) return;
+        long target = mPendingTarget;
+        mPendingTarget = -1;
+        issue(target, true, nowMs);
+    }
+
+    private void issue(long timeMs, boolean fast, long nowMs) {
+        mInFlight = true;
+        mApplied = false;
+        mIssuedAtMs = nowMs;
+        mIssuedCount++;
+        long seekId = ++mSeekId;
+        mTarget.removeCallbacks(mTimeout);
+        mTarget.postDelayed(mTimeout, SEEK_TIMEOUT_MS);
+        if (fast)
+            mTarget.seekFast(timeMs, seekId);
+        else
+            mTarget.seekPrecise(timeMs, seekId);
+    }
+
+    /**
+     * Seek requests received from the SeekBar and the public API.
+     */
+    public long getRequestCount() {
+        return mRequestCount;
+    }
+
+    /**
+     * Native seeks actually issued to the player.
+     */
+    public long getIssuedCount() {
+        return mIssuedCount;
+    }
+
+    /**
+     * Requests superseded by a newer target before they were issued.
+     */
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * Seeks that never reported completion within the timeout.
+     */
+    public long getTimedOutCount() {
+        return mTimedOutCount;
+    }
+
+    public long getLastLatencyMs() {
+        return mLastLatencyMs;
+    }
+
+    public long getMaxLatencyMs() {
+        return mMaxLatencyMs;
+    }
+
+    public long getAverageLatencyMs() {
+        return mCompletedCount == 0 ? 0 : mTotalLatencyMs / mCompletedCount;
+    }
+}
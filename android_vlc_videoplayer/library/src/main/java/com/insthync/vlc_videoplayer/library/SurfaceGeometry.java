@@ -0,0 +1,180 @@
+package com.insthync.vlc_videoplayer.library;
+
+/**
+ * Sizes of the video surface for a given display, video format and scale mode.
+ * <p>
+ * The buffer size is the decoded picture size, the surface size stretches the whole buffer
+ * so that its visible part covers the frame, and the frame size is the on-screen area,
+ * cropping whatever of the surface lies outside it. Instances are immutable and compare by
+ * value, so callers can tell whether anything changed since the last layout.
+ */
+final class SurfaceGeometry {
+
+    final int bufferWidth;
+    final int bufferHeight;
+    final int surfaceWidth;
+    final int surfaceHeight;
+    final int frameWidth;
+    final int frameHeight;
+
+    SurfaceGeometry(int bufferWidth, int bufferHeight, int surfaceWidth, int surfaceHeight,
+                    int frameWidth, int frameHeight) {
+        this.bufferWidth = bufferWidth;
+        this.bufferHeight = bufferHeight;
+        this.surfaceWidth = surfaceWidth;
+        this.surfaceHeight = surfaceHeight;
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+    }
+
+    /**
+     * Returns null if the display or video size is not known yet.
+     *
+     * @param portrait whether the display is in portrait orientation; the display size is
+     *                 swapped if it does not match, as the decor view may not be laid out yet
+     * @param sizeMode one of the {@code VLCVideoPlayer.SURFACE_*} constants
+     */
+    static SurfaceGeometry compute(int displayWidth, int displayHeight, boolean portrait,
+                                   int videoWidth, int videoHeight, int visibleWidth, int visibleHeight,
+                                   int sarNum, int sarDen, int sizeMode) {
+        double dw = displayWidth, dh = displayHeight;
+        if (displayWidth > displayHeight && portrait || displayWidth < displayHeight && !portrait) {
+            dw = displayHeight;
+            dh = displayWidth;
+        }
+
+        if (dw * dh == 0 || videoWidth * videoHeight == 0 || visibleWidth * visibleHeight == 0)
+            return null;
+
+        // compute the aspect ratio
+        double ar, vw;
+        if (sarDen == sarNum || sarDen == 0) {
+            /* No indication about the density, assuming 1:1 */
+            vw = visibleWidth;
+            ar = (double) visibleWidth / (double) visibleHeight;
+        } else {
+            /* Use the specified aspect ratio */
+            vw = visibleWidth * (double) sarNum / sarDen;
+            ar = vw / visibleHeight;
+        }
+
+        // compute the display aspect ratio
+        double dar = dw / dh;
+
+        switch (sizeMode) {
+            case VLCVideoPlayer.SURFACE_BEST_FIT:
+                if (dar < ar)
+                    dh = dw / ar;
+                else
+                    dw = dh * ar;
+                break;
+            case VLCVideoPlayer.SURFACE_FIT_HORIZONTAL:
+                dh = dw / ar;
+                break;
+            case VLCVideoPlayer.SURFACE_FIT_VERTICAL:
+                dw = dh * ar;
+                break;
+            case VLCVideoPlayer.SURFACE_FILL:
+                break;
+            case VLCVideoPlayer.SURFACE_16_9:
+                ar = 16.0 / 9.0;
+                if (dar < ar)
+                    dh = dw / ar;
+                else
+                    dw = dh * ar;
+                break;
+            case VLCVideoPlayer.SURFACE_4_3:
+                ar = 4.0 / 3.0;
+                if (dar < ar)
+                    dh = dw / ar;
+                else
+                    dw = dh * ar;
+                break;
+            case VLCVideoPlayer.SURFACE_ORIGINAL:
+                dh = visibleHeight;
+                dw = vw;
+                break;
+        }
+
+        return new SurfaceGeometry(videoWidth, videoHeight,
+                (int) Math.ceil(dw * videoWidth / visibleWidth),
+                (int) Math.ceil(dh * videoHeight / visibleHeight),
+                (int) Math.floor(dw),
+                (int) Math.floor(dh));
+    }
+
+    /**
+     * Same layout, with the buffer no larger than the picture is shown on screen. The
+     * decoded picture is then scaled down when it is rendered into the buffer instead of
+     * filling a full size buffer that the compositor shrinks again. Sizes are kept even for
+     * 4:2:0 chromas.
+     */
+    SurfaceGeometry withBufferCappedToSurface() {
+        int width = Math.max(2, Math.min(bufferWidth, surfaceWidth) & ~1);
+        int height = Math.max(2, Math.min(bufferHeight, surfaceHeight) & ~1);
+        if (width >= bufferWidth && height >= bufferHeight) return this;
+        return new SurfaceGeometry(width, height, surfaceWidth, surfaceHeight, frameWidth, frameHeight);
+    }
+
+    /**
+     * Transform for a view that stretches the whole buffer to {@code viewWidth} x
+     * {@code viewHeight}, such as a TextureView, so the picture ends up the size of
+     * {@link #surfaceWidth} x {@link #surfaceHeight} times {@code zoom}, centered and moved by
+     * {@code panX}/{@code panY} pixels. The pan is clamped so a zoomed picture still covers
+     * the view.
+     *
+     * @param out receives scale x, scale y, translate x, translate y, and the clamped pan x and y
+     */
+    void textureTransform(int viewWidth, int viewHeight, float zoom, float panX, float panY, float[] out) {
+        float width = surfaceWidth * zoom;
+        float height = surfaceHeight * zoom;
+        float maxPanX = Math.max(0, (width - viewWidth) / 2f);
+        float maxPanY = Math.max(0, (height - viewHeight) / 2f);
+        panX = Math.max(-maxPanX, Math.min(maxPanX, panX));
+        panY = Math.max(-maxPanY, Math.min(maxPanY, panY));
+
+        out[0] = width / viewWidth;
+        out[1] = height / viewHeight;
+        out[2] = (viewWidth - width) / 2f + panX;
+        out[3] = (viewHeight - height) / 2f + panY;
+        out[4] = panX;
+        out[5] = panY;
+    }
+
+    boolean sameBuffer(SurfaceGeometry other) {
+        return other != null && bufferWidth == other.bufferWidth && bufferHeight == other.bufferHeight;
+    }
+
+    boolean sameSurface(SurfaceGeometry other) {
+        return other != null && surfaceWidth == other.surfaceWidth && surfaceHeight == other.surfaceHeight;
+    }
+
+    boolean sameFrame(SurfaceGeometry other) {
+        return other != null && frameWidth == other.frameWidth && frameHeight == other.frameHeight;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SurfaceGeometry)) return false;
+        SurfaceGeometry other = (SurfaceGeometry) o;
+        return sameBuffer(other) && sameSurface(other) && sameFrame(other);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = bufferWidth;
+        result = 31 * result + bufferHeight;
+        result = 31 * result + surfaceWidth;
+        result = 31 * result + surfaceHeight;
+        result = 31 * result + frameWidth;
+        result = 31 * result + frameHeight;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "buffer " + bufferWidth + "x" + bufferHeight + ", surface " + surfaceWidth + "x" + surfaceHeight
+                + ", frame " + frameWidth + "x" + frameHeight;
+    }
+}
@@ -0,0 +1,152 @@
+package com.insthync.vlc_videoplayer.library;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Size-bounded directory of JPEG thumbnails, evicting the least recently used files.
+ */
+final class ThumbnailDiskCache {
+
+    private static final String TAG = "ThumbnailDiskCache";
+
+    private final File mDir;
+    private final long mMaxBytes;
+    private final int mQuality;
+    private long mTotalBytes = -1;
+
+    ThumbnailDiskCache(File dir, long maxBytes, int quality) {
+        mDir = dir;
+        mMaxBytes = maxBytes;
+        mQuality = quality;
+    }
+
+    Bitmap get(String key) {
+        byte[] jpeg = getBytes(key);
+        return jpeg != null ? BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length) : null;
+    }
+
+    void put(String key, Bitmap bitmap) {
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        if (!bitmap.compress(Bitmap.CompressFormat.JPEG, mQuality, jpeg)) {
+            Log.w(TAG, "Could not encode thumbnail " + key);
+            return;
+        }
+        putBytes(key, jpeg.toByteArray());
+    }
+
+    /**
+     * The encoded thumbnail for {@code key}, marking it as recently used, or null.
+     */
+    synchronized byte[] getBytes(String key) {
+        File file = fileFor(key);
+        if (!file.exists()) return null;
+        //noinspection ResultOfMethodCallIgnored
+        file.setLastModified(System.currentTimeMillis());
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            byte[] data = new byte[(int) file.length()];
+            int read = 0;
+            while (read < data.length) {
+                int count = in.read(data, read, data.length - read);
+                if (count < 0) throw new IOException("Truncated " + file);
+                read += count;
+            }
+            return data;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read thumbnail " + key, e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    synchronized void putBytes(String key, byte[] data) {
+        //noinspection ResultOfMethodCallIgnored
+        mDir.mkdirs();
+        File file = fileFor(key);
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            out.write(data);
+            out.close();
+            out = null;
+            long previous = file.length();
+            if (!tmp.renameTo(file))
+                throw new IOException("Could not write " + file);
+            if (mTotalBytes >= 0)
+                mTotalBytes += file.length() - previous;
+            trim();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to cache thumbnail " + key, e);
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    synchronized void clear() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        mTotalBytes = 0;
+    }
+
+    private void trim() {
+        File[] files = null;
+        if (mTotalBytes < 0) {
+            // first write since start: count what earlier runs left behind
+            files = mDir.listFiles();
+            mTotalBytes = 0;
+            if (files != null) {
+                for (File file : files)
+                    mTotalBytes += file.length();
+            }
+        }
+        if (mTotalBytes <= mMaxBytes) return;
+
+        if (files == null) files = mDir.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < files.length && mTotalBytes > mMaxBytes; i++) {
+            long length = files[i].length();
+            if (files[i].delete())
+                mTotalBytes -= length;
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(mDir, HttpDiskCache.keyFor(key) + ".jpg");
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.insthync.vlc_videoplayer.library;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.ImageFormat;
+import android.graphics.PixelFormat;
+import android.media.Image;
+import android.media.ImageReader;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.util.Log;
+import android.util.LruCache;
+
+import org.videolan.libvlc.IVLCVout;
+import org.videolan.libvlc.LibVLC;
+import org.videolan.libvlc.Media;
+import org.videolan.libvlc.MediaPlayer;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grabs single video frames in the background, e.g. for seek previews and poster frames.
+ * <p>
+ * A grab plays the source muted on a hidden MediaPlayer of the shared LibVLC engine, starting
+ * at the requested time and rendering into an ImageReader, and scales the first frame down to
+ * the requested width. Requests for the same frame are merged, at most {@code maxWorkers}
+ * grabs run at once, and results are kept in a memory LRU and a JPEG disk cache. The engine
+ * is acquired by the first grab and each worker keeps one player; the video size of a source
+ * is parsed once. Needs API 19 for ImageReader; on older devices every request yields null.
+ */
+public final class ThumbnailService {
+
+    public interface Callback {
+        /**
+         * Called on the main thread. {@code bitmap} is null if no frame could be grabbed. It may
+         * be shared with the memory cache, so it must not be recycled or modified.
+         */
+        void onThumbnail(Uri source, long timeMs, Bitmap bitmap);
+    }
+
+    private static final String TAG = "ThumbnailService";
+
+    private static final long FRAME_TIMEOUT_MS = 5000;
+    private static final int JPEG_QUALITY = 80;
+    private static final int DEFAULT_MAX_WORKERS = 2;
+    private static final long DEFAULT_DISK_CACHE_BYTES = 32 * 1024 * 1024;
+    private static final int VIDEO_SIZE_CACHE_ENTRIES = 64;
+
+    private static ThumbnailService sInstance;
+
+    private final Context mContext;
+    // acquired by the first grab, guarded by this
+    private LibVLC mEngine;
+    private final VlcOptions mOptions;
+    private final LruCache<String, Bitmap> mMemoryCache;
+    private final ThumbnailDiskCache mDiskCache;
+    private final ThreadPoolExecutor mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private Handler mImageHandler;
+    private final RequestMerger<String, Callback> mRequests = new RequestMerger<>();
+    // {width, height} by normalized source, parsed once
+    private final LruCache<String, int[]> mVideoSizes = new LruCache<>(VIDEO_SIZE_CACHE_ENTRIES);
+    private volatile long mGranularityMs = 1000;
+
+    // per worker, reused between grabs
+    private final ThreadLocal<MediaPlayer> mPlayer = new ThreadLocal<>();
+    private final ThreadLocal<Bitmap> mFrameBitmap = new ThreadLocal<>();
+    private final ThreadLocal<ByteBuffer> mRowBuffer = new ThreadLocal<>();
+
+    /**
+     * The shared service, using the default options, an eighth of the heap up to 16 MB for
+     * the memory cache and 32 MB of the app's cache dir.
+     */
+    public static synchronized ThumbnailService get(Context context) {
+        if (sInstance == null) {
+            Context app = context.getApplicationContext();
+            int memoryBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, 16 * 1024 * 1024);
+            sInstance = new ThumbnailService(app, new VlcOptions(), memoryBytes,
+                    new File(app.getCacheDir(), "vlc-thumbnails"), DEFAULT_DISK_CACHE_BYTES, DEFAULT_MAX_WORKERS);
+        }
+        return sInstance;
+    }
+
+    public ThumbnailService(Context context, VlcOptions options, int memoryCacheBytes,
+                            File diskCacheDir, long diskCacheBytes, int maxWorkers) {
+        mContext = context.getApplicationContext();
+        mOptions = options;
+        mMemoryCache = new LruCache<String, Bitmap>(memoryCacheBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getRowBytes() * value.getHeight();
+            }
+        };
+        mDiskCache = new ThumbnailDiskCache(diskCacheDir, diskCacheBytes, JPEG_QUALITY);
+        mExecutor = new ThreadPoolExecutor(maxWorkers, maxWorkers, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private int mCount;
+
+            @Override
+            public Thread newThread(@NonNull final Runnable r) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            r.run();
+                        } finally {
+                            releaseWorkerPlayer();
+                        }
+                    }
+                }, "ThumbnailWorker-" + (++mCount));
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    }
+
+    /**
+     * Requested times are rounded down to a multiple of this, so nearby requests share one
+     * frame. Defaults to one second.
+     */
+    public void setTimeGranularity(long granularityMs) {
+        mGranularityMs = Math.max(1, granularityMs);
+    }
+
+    /**
+     * Delivers the frame at {@code timeMs}, at most {@code width} pixels wide, to
+     * {@code callback}. Cached frames are delivered before this returns.
+     */
+    @MainThread
+    public void requestFrame(@NonNull Uri source, long timeMs, int width, @NonNull Callback callback) {
+        long time = Math.max(0, timeMs) / mGranularityMs * mGranularityMs;
+        String key = ResumeKeys.normalize(source.toString()) + "@" + time + "/" + width;
+        Bitmap cached = mMemoryCache.get(key);
+        if (cached != null) {
+            callback.onThumbnail(source, time, cached);
+            return;
+        }
+
+        if (mRequests.add(key, callback))
+            mExecutor.execute(new Request(key, source, time, width));
+    }
+
+    /**
+     * Stops delivering to {@code callback}. Queued grabs nobody waits for any more are skipped.
+     */
+    @MainThread
+    public void cancel(@NonNull Callback callback) {
+        mRequests.cancel(callback);
+    }
+
+    public void clearCache() {
+        mMemoryCache.evictAll();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mDiskCache.clear();
+            }
+        });
+    }
+
+    private final class Request implements Runnable {
+        final String key;
+        final Uri source;
+        final long timeMs;
+        final int width;
+
+        Request(String key, Uri source, long timeMs, int width) {
+            this.key = key;
+            this.source = source;
+            this.timeMs = timeMs;
+            this.width = width;
+        }
+
+        @Override
+        public void run() {
+            if (!mRequests.isWanted(key)) return;
+
+            Bitmap bitmap = mDiskCache.get(key);
+            if (bitmap == null && isSupported()) {
+                bitmap = grab(source, timeMs, width);
+                if (bitmap != null)
+                    mDiskCache.put(key, bitmap);
+            }
+            if (bitmap != null)
+                mMemoryCache.put(key, bitmap);
+
+            final List<Callback> targets = mRequests.finish(key);
+            final Bitmap result = bitmap;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (Callback callback : targets)
+                        callback.onThumbnail(source, timeMs, result);
+                }
+            });
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private Bitmap grab(Uri source, long timeMs, int width) {
+        int format = mOptions.getPixelFormat();
+        if (format == ImageFormat.YV12) {
+            Log.w(TAG, "YV12 output is not supported for thumbnails");
+            return null;
+        }
+
+        LibVLC engine = engine();
+        Media media = new Media(engine, source);
+        int[] size = videoSize(media, source);
+        if (size == null) {
+            Log.w(TAG, "No video track in " + source);
+            media.release();
+            return null;
+        }
+        int videoWidth = size[0];
+        int videoHeight = size[1];
+
+        mOptions.applyTo(media);
+        // decode in software: direct rendering would bypass the image reader
+        VlcOptions.applyHardwareDecoding(media, VlcOptions.HW_DECODING_DISABLED);
+        media.addOption(":start-time=" + timeMs / 1000.0);
+        media.addOption(":no-audio");
+        media.addOption(":no-spu");
+
+        ImageReader reader = ImageReader.newInstance(videoWidth, videoHeight, format, 2);
+        final CountDownLatch firstFrame = new CountDownLatch(1);
+        final Image[] frame = new Image[1];
+        reader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
+            @Override
+            public void onImageAvailable(ImageReader r) {
+                Image image = r.acquireLatestImage();
+                if (image == null) return;
+                synchronized (frame) {
+                    if (frame[0] == null) {
+                        frame[0] = image;
+                        firstFrame.countDown();
+                        return;
+                    }
+                }
+                image.close();
+            }
+        }, imageHandler());
+
+        MediaPlayer player = mPlayer.get();
+        if (player == null) {
+            player = new MediaPlayer(engine);
+            mPlayer.set(player);
+        }
+        player.setMedia(media);
+        media.release();
+        IVLCVout vlcOut = player.getVLCVout();
+        vlcOut.setVideoSurface(reader.getSurface(), null);
+        vlcOut.attachViews();
+        try {
+            player.play();
+            if (!firstFrame.await(FRAME_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "No frame from " + source + " at " + timeMs + "ms");
+                return null;
+            }
+            synchronized (frame) {
+                return toBitmap(frame[0], width);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            player.stop();
+            vlcOut.detachViews();
+            synchronized (frame) {
+                if (frame[0] != null)
+                    frame[0].close();
+            }
+            reader.close();
+        }
+    }
+
+    /**
+     * {width, height} of the first video track of {@code source}, parsing {@code media} the
+     * first time only. Null if it has no video.
+     */
+    private int[] videoSize(Media media, Uri source) {
+        String key = ResumeKeys.normalize(source.toString());
+        int[] size = mVideoSizes.get(key);
+        if (size != null) return size;
+
+        if (media.parse(Media.Parse.ParseNetwork)) {
+            for (int i = 0; i < media.getTrackCount(); i++) {
+                Media.Track track = media.getTrack(i);
+                if (track instanceof Media.VideoTrack) {
+                    Media.VideoTrack video = (Media.VideoTrack) track;
+                    if (video.width <= 0 || video.height <= 0) break;
+                    size = new int[]{video.width, video.height};
+                    mVideoSizes.put(key, size);
+                    return size;
+                }
+            }
+        }
+        return null;
+    }
+
+    private synchronized LibVLC engine() {
+        if (mEngine == null)
+            mEngine = LibVLCPool.acquire(mContext, mOptions.get());
+        return mEngine;
+    }
+
+    /**
+     * Releases the calling worker's player, when the worker thread ends.
+     */
+    private void releaseWorkerPlayer() {
+        MediaPlayer player = mPlayer.get();
+        if (player == null) return;
+        mPlayer.remove();
+        player.release();
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private Bitmap toBitmap(Image image, int width) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        Bitmap.Config config = image.getFormat() == PixelFormat.RGB_565 ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        Image.Plane plane = image.getPlanes()[0];
+        int pixelStride = plane.getPixelStride();
+        int rowStride = plane.getRowStride();
+        ByteBuffer pixels = plane.getBuffer();
+
+        if (rowStride != w * pixelStride) {
+            // drop the row padding, Bitmap expects tightly packed rows
+            int rowBytes = w * pixelStride;
+            ByteBuffer packed = mRowBuffer.get();
+            if (packed == null || packed.capacity() < rowBytes * h) {
+                packed = ByteBuffer.allocateDirect(rowBytes * h);
+                mRowBuffer.set(packed);
+            }
+            packed.clear();
+            for (int row = 0; row < h; row++) {
+                pixels.limit(row * rowStride + rowBytes);
+                pixels.position(row * rowStride);
+                packed.put(pixels);
+            }
+            packed.flip();
+            pixels = packed;
+        }
+
+        Bitmap full = mFrameBitmap.get();
+        if (full == null || full.getWidth() != w || full.getHeight() != h || full.getConfig() != config) {
+            if (full != null)
+                full.recycle();
+            full = Bitmap.createBitmap(w, h, config);
+            mFrameBitmap.set(full);
+        }
+        full.copyPixelsFromBuffer(pixels);
+
+        int targetWidth = Math.min(width, w);
+        int targetHeight = Math.max(1, Math.round(h * (targetWidth / (float) w)));
+        if (targetWidth == w)
+            return full.copy(config, false);
+        return Bitmap.createScaledBitmap(full, targetWidth, targetHeight, true);
+    }
+
+    private synchronized Handler imageHandler() {
+        if (mImageHandler == null) {
+            HandlerThread thread = new HandlerThread("ThumbnailImages");
+            thread.start();
+            mImageHandler = new Handler(thread.getLooper());
+        }
+        return mImageHandler;
+    }
+}
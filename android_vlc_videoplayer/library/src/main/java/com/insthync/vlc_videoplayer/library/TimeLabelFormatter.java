@@ -0,0 +1,87 @@
+package com.insthync.vlc_videoplayer.library;
+
+/**
+ * Allocation-free mm:ss / h:mm:ss formatter for the position and duration labels.
+ * <p>
+ * The text is written into a reused {@code char[]} meant for
+ * {@code TextView.setText(char[], int, int)}, and {@link #update(long, boolean)} reports
+ * whether the displayed second actually changed so redundant label writes can be skipped.
+ */
+final class TimeLabelFormatter {
+
+    // "-" + up to 19 digits of hours + ":mm:ss"
+    static final int MAX_LENGTH = 26;
+
+    private final char[] mBuffer = new char[MAX_LENGTH];
+    private int mLength;
+    private long mLastSeconds = -1;
+    private boolean mLastNegative;
+
+    /**
+     * Formats {@code durationMs} into the internal buffer.
+     *
+     * @return true if the text differs from the previous call, false if the label can be left alone
+     */
+    boolean update(long durationMs, boolean negativePrefix) {
+        long seconds = Math.max(0, durationMs) / 1000;
+        if (seconds == mLastSeconds && negativePrefix == mLastNegative)
+            return false;
+        mLastSeconds = seconds;
+        mLastNegative = negativePrefix;
+        mLength = format(durationMs, negativePrefix, mBuffer);
+        return true;
+    }
+
+    char[] buffer() {
+        return mBuffer;
+    }
+
+    int length() {
+        return mLength;
+    }
+
+    /**
+     * Forgets the last formatted value so the next {@link #update(long, boolean)} always writes.
+     */
+    void reset() {
+        mLastSeconds = -1;
+    }
+
+    /**
+     * Writes {@code durationMs} as mm:ss, or h:mm:ss from one hour on, into {@code out}
+     * starting at index 0. Negative durations are clamped to zero.
+     *
+     * @return number of chars written
+     */
+    static int format(long durationMs, boolean negativePrefix, char[] out) {
+        long totalSeconds = Math.max(0, durationMs) / 1000;
+        long hours = totalSeconds / 3600;
+        int minutes = (int) (totalSeconds / 60 % 60);
+        int seconds = (int) (totalSeconds % 60);
+
+        int pos = 0;
+        if (negativePrefix)
+            out[pos++] = '-';
+        if (hours > 0) {
+            pos = writeLong(hours, out, pos);
+            out[pos++] = ':';
+        }
+        out[pos++] = (char) ('0' + minutes / 10);
+        out[pos++] = (char) ('0' + minutes % 10);
+        out[pos++] = ':';
+        out[pos++] = (char) ('0' + seconds / 10);
+        out[pos++] = (char) ('0' + seconds % 10);
+        return pos;
+    }
+
+    private static int writeLong(long value, char[] out, int pos) {
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10)
+            digits++;
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+}
@@ -0,0 +1,96 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.videolan.libvlc.Media;
+
+/**
+ * One audio, video or subtitle track of the playing media, as listed by
+ * {@link VLCVideoPlayer#getTracks(int)}.
+ */
+public final class TrackInfo {
+
+    public static final int TYPE_AUDIO = Media.Track.Type.Audio;
+    public static final int TYPE_VIDEO = Media.Track.Type.Video;
+    public static final int TYPE_TEXT = Media.Track.Type.Text;
+
+    private final int mType;
+    private final int mId;
+    private final String mName;
+    private final String mLanguage;
+    private final String mCodec;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mBitrate;
+    private final boolean mSelected;
+
+    TrackInfo(int type, int id, String name, String language, String codec,
+              int width, int height, int bitrate, boolean selected) {
+        mType = type;
+        mId = id;
+        mName = name;
+        mLanguage = language;
+        mCodec = codec;
+        mWidth = width;
+        mHeight = height;
+        mBitrate = bitrate;
+        mSelected = selected;
+    }
+
+    /**
+     * One of the {@code TYPE_*} constants.
+     */
+    public int getType() {
+        return mType;
+    }
+
+    /**
+     * Id to pass to {@link VLCVideoPlayer#selectTrack(int, int)}.
+     */
+    public int getId() {
+        return mId;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Language code, or null if unknown.
+     */
+    public String getLanguage() {
+        return mLanguage;
+    }
+
+    public String getCodec() {
+        return mCodec;
+    }
+
+    /**
+     * Picture width of a video track, 0 if unknown or not video.
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Bits per second as declared by the container, 0 if unknown.
+     */
+    public int getBitrate() {
+        return mBitrate;
+    }
+
+    public boolean isSelected() {
+        return mSelected;
+    }
+
+    @Override
+    public String toString() {
+        return "TrackInfo{" + mType + "/" + mId + " " + mName
+                + (mWidth > 0 ? " " + mWidth + "x" + mHeight : "")
+                + (mBitrate > 0 ? " " + mBitrate + "bps" : "")
+                + (mSelected ? " selected" : "") + "}";
+    }
+}
@@ -5,20 +5,13 @@ import android.content.res.TypedArray;
 import android.graphics.Color;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.AttrRes;
-import java.util.Locale;
-import java.util.concurrent.TimeUnit;
 
 /** @author Aidan Follestad (afollestad) */
 class Util {
 
     static String getDurationString(long durationMs, boolean negativePrefix) {
-        return String.format(
-                Locale.getDefault(),
-                "%s%02d:%02d",
-                negativePrefix ? "-" : "",
-                TimeUnit.MILLISECONDS.toMinutes(durationMs),
-                TimeUnit.MILLISECONDS.toSeconds(durationMs)
-                        - TimeUnit.MINUTES.toSeconds(TimeUnit.MILLISECONDS.toMinutes(durationMs)));
+        char[] buffer = new char[TimeLabelFormatter.MAX_LENGTH];
+        return new String(buffer, 0, TimeLabelFormatter.format(durationMs, negativePrefix, buffer));
     }
 
     static boolean isColorDark(int color) {
@@ -0,0 +1,162 @@
+package com.insthync.vlc_videoplayer.library;
+
+import android.util.Log;
+
+import org.videolan.libvlc.IVLCVout;
+import org.videolan.libvlc.LibVLC;
+import org.videolan.libvlc.MediaPlayer;
+
+import java.util.Map;
+
+/**
+ * Bounded pool of warm {@link MediaPlayer} instances.
+ * <p>
+ * Views borrow a player when they are attached and give it back when detached, so a
+ * RecyclerView item that scrolls out and back only pays for re-binding its surface instead
+ * of a full native player construction. At most {@link #setMaxActive(int)} players decode
+ * at the same time; acquiring beyond that reclaims the least recently used borrower. Players
+ * parked with {@link #setDecoding(MediaPlayer, boolean)} are paused and count for neither.
+ * Returned players are kept warm up to {@link #setMaxIdle(int)} and released LRU-first.
+ * <p>
+ * All methods must be called from the main thread.
+ */
+public final class VLCPlayerPool {
+
+    private static final String TAG = "VLCPlayerPool";
+    public static final int DEFAULT_MAX_IDLE = 2;
+    public static final int DEFAULT_MAX_ACTIVE = 4;
+
+    /**
+     * Implemented by whoever holds a pooled player.
+     */
+    public interface Borrower {
+        /**
+         * The pool needs {@code player} back to honour the decoder cap. The borrower must stop
+         * using it and detach its callbacks before returning; the pool recycles it afterwards.
+         */
+        void onPlayerReclaimed(MediaPlayer player);
+    }
+
+    private static final PlayerLedger<MediaPlayer, LibVLC, Borrower> sLedger = new PlayerLedger<>();
+
+    private static int sMaxIdle = DEFAULT_MAX_IDLE;
+    private static int sMaxActive = DEFAULT_MAX_ACTIVE;
+
+    private VLCPlayerPool() {
+    }
+
+    /**
+     * Hands out a player bound to {@code engine}, reusing a warm one when possible.
+     * The returned player has no event listener and no attached views.
+     */
+    public static MediaPlayer acquire(LibVLC engine, Borrower borrower) {
+        return acquire(engine, borrower, true);
+    }
+
+    /**
+     * Like {@link #acquire(LibVLC, Borrower)}, but a player that is not {@code decoding} is
+     * handed out parked, see {@link #setDecoding(MediaPlayer, boolean)}.
+     */
+    public static MediaPlayer acquire(LibVLC engine, Borrower borrower, boolean decoding) {
+        if (decoding)
+            makeRoom();
+
+        MediaPlayer player = sLedger.takeIdle(engine);
+        if (player == null) {
+            player = new MediaPlayer(engine);
+            LibVLCPool.retain(engine);
+        }
+
+        sLedger.borrow(player, engine, borrower);
+        sLedger.setParked(player, !decoding);
+        return player;
+    }
+
+    /**
+     * Tells the pool whether a borrowed player decodes. A parked player, e.g. a paused grid
+     * tile, keeps its last frame but neither counts towards the cap nor gets reclaimed.
+     * Unparking reclaims another player if the cap is reached.
+     */
+    public static void setDecoding(MediaPlayer player, boolean decoding) {
+        if (decoding == !sLedger.isParked(player)) return;
+        if (decoding)
+            makeRoom();
+        sLedger.setParked(player, !decoding);
+    }
+
+    private static void makeRoom() {
+        Map.Entry<MediaPlayer, Borrower> eldest;
+        while ((eldest = sLedger.nextToReclaim(sMaxActive)) != null) {
+            Log.d(TAG, "Decoder cap (" + sMaxActive + ") reached, reclaiming LRU player");
+            MediaPlayer player = eldest.getKey();
+            eldest.getValue().onPlayerReclaimed(player);
+            recycle(player);
+        }
+    }
+
+    /**
+     * Marks {@code player} as most recently used so it is the last to be reclaimed. Borrowers
+     * call this whenever the user interacts with the player, e.g. on play or seek.
+     */
+    public static void touch(MediaPlayer player) {
+        sLedger.touch(player);
+    }
+
+    /**
+     * Gives a borrowed player back. It is stopped, unbound from any view and kept warm
+     * until it falls out of the idle LRU.
+     */
+    public static void recycle(MediaPlayer player) {
+        if (player == null || !sLedger.giveBack(player)) return;
+
+        player.setEventListener(null);
+        IVLCVout vlcOut = player.getVLCVout();
+        if (vlcOut.areViewsAttached())
+            vlcOut.detachViews();
+        PlayerCommandExecutor.get().execute(PlayerCommandExecutor.stop(player));
+
+        trimIdle(sMaxIdle);
+    }
+
+    public static void setMaxIdle(int maxIdle) {
+        sMaxIdle = Math.max(0, maxIdle);
+        trimIdle(sMaxIdle);
+    }
+
+    public static int getMaxIdle() {
+        return sMaxIdle;
+    }
+
+    /**
+     * Hard cap on players handed out at the same time, i.e. concurrent decoders.
+     */
+    public static void setMaxActive(int maxActive) {
+        sMaxActive = Math.max(1, maxActive);
+    }
+
+    public static int getMaxActive() {
+        return sMaxActive;
+    }
+
+    public static int getActiveCount() {
+        return sLedger.activeCount();
+    }
+
+    public static int getIdleCount() {
+        return sLedger.idleCount();
+    }
+
+    /**
+     * Releases every warm player. Useful from {@code onTrimMemory()}.
+     */
+    public static void evictIdle() {
+        trimIdle(0);
+    }
+
+    private static void trimIdle(int maxIdle) {
+        for (MediaPlayer player : sLedger.trimIdle(maxIdle)) {
+            LibVLC engine = sLedger.forget(player);
+            PlayerCommandExecutor.get().execute(PlayerCommandExecutor.release(player, engine));
+        }
+    }
+}
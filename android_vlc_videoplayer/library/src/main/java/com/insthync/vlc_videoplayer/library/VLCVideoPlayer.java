@@ -7,10 +7,14 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.res.Configuration;
 import android.content.res.TypedArray;
-import android.graphics.PixelFormat;
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Build;
+import android.os.SystemClock;
+import android.support.annotation.FloatRange;
+import android.support.annotation.IntDef;
 import android.support.annotation.IntRange;
 import android.support.annotation.NonNull;
 import android.support.v7.content.res.AppCompatResources;
@@ -20,11 +24,13 @@ import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
+import android.view.TextureView;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.animation.DecelerateInterpolator;
 import android.widget.FrameLayout;
 import android.widget.ImageButton;
+import android.widget.ImageView;
 import android.widget.SeekBar;
 import android.widget.TextView;
 
@@ -33,6 +39,12 @@ import org.videolan.libvlc.LibVLC;
 import org.videolan.libvlc.Media;
 import org.videolan.libvlc.MediaPlayer;
 
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Created by Ittipon Teerapruettikulchai on 6/29/17.
  */
@@ -40,16 +52,89 @@ import org.videolan.libvlc.MediaPlayer;
 public class VLCVideoPlayer extends FrameLayout implements
         MediaPlayer.EventListener,
         IVLCVout.Callback,
+        VLCPlayerPool.Borrower,
         View.OnClickListener,
-        SeekBar.OnSeekBarChangeListener {
+        SeekBar.OnSeekBarChangeListener,
+        ProgressScheduler.Callback {
 
     public static final String TAG = "VLCVideoPlayer";
+
+    // playlist transitions only show the spinner if opening takes longer than this
+    private static final long TRANSITION_SPINNER_DELAY_MS = 500;
+    // head of the next playlist item cached ahead of the transition, a few seconds of HD video
+    private static final long PREBUFFER_BYTES = 2 * 1024 * 1024;
+
+    public interface OnPlaylistTransitionListener {
+        /**
+         * The playlist item at {@code index} rendered its first frame
+         * {@code timeToFirstFrameMs} after the transition was requested.
+         */
+        void onPlaylistTransition(VLCVideoPlayer player, int index, long timeToFirstFrameMs);
+    }
+
+    /**
+     * Playback callbacks, delivered on the main thread after the view has updated its own
+     * controls. Events of the same type that arrive before a callback runs are coalesced into
+     * one carrying the latest values.
+     *
+     * @see SimplePlayerListener
+     */
+    public interface PlayerListener {
+        /** The current source started playing for the first time. */
+        void onPrepared(VLCVideoPlayer player, long durationMs);
+
+        void onBuffering(VLCVideoPlayer player, float percent);
+
+        void onProgress(VLCVideoPlayer player, long positionMs, long durationMs);
+
+        /** The end of the source was reached. */
+        void onCompletion(VLCVideoPlayer player);
+
+        void onError(VLCVideoPlayer player);
+
+        /**
+         * Tracks of {@code trackType}, a {@code Media.Track.Type} constant, were added or removed.
+         */
+        void onTracksChanged(VLCVideoPlayer player, int trackType);
+    }
+
+    /**
+     * {@link PlayerListener} with empty methods, to override only the ones needed.
+     */
+    public static class SimplePlayerListener implements PlayerListener {
+        @Override
+        public void onPrepared(VLCVideoPlayer player, long durationMs) {
+        }
+
+        @Override
+        public void onBuffering(VLCVideoPlayer player, float percent) {
+        }
+
+        @Override
+        public void onProgress(VLCVideoPlayer player, long positionMs, long durationMs) {
+        }
+
+        @Override
+        public void onCompletion(VLCVideoPlayer player) {
+        }
+
+        @Override
+        public void onError(VLCVideoPlayer player) {
+        }
+
+        @Override
+        public void onTracksChanged(VLCVideoPlayer player, int trackType) {
+        }
+    }
     private FrameLayout mSurfaceFrame;
     private SurfaceView mSurface;
     private SurfaceHolder mSurfaceHolder;
+    private TextureView mTextureView;
     private MediaPlayer mPlayer;
     private Uri mSource;
+    private String mSourceKey;
     private LibVLC mVlcInstance;
+    private VlcOptions mVlcOptions = new VlcOptions();
 
     private View mVideoFrame;
     private View mControlsFrame;
@@ -59,7 +144,64 @@ public class VLCVideoPlayer extends FrameLayout implements
     private SeekBar mSeeker;
     private TextView mLabelPosition;
     private TextView mLabelDuration;
+    private ImageView mSeekPreview;
+    private ThumbnailService mThumbnails;
+    private final ThumbnailService.Callback mPreviewCallback = new ThumbnailService.Callback() {
+        @Override
+        public void onThumbnail(Uri source, long timeMs, Bitmap bitmap) {
+            if (bitmap == null || mSeekPreview == null || !mSeekPipeline.isDragging() || !source.equals(mSource))
+                return;
+            mSeekPreview.setImageBitmap(bitmap);
+            mSeekPreview.setVisibility(View.VISIBLE);
+            positionSeekPreview();
+        }
+    };
     private ImageButton mBtnPlayPause;
+    private final TimeLabelFormatter mPositionFormatter = new TimeLabelFormatter();
+    private final TimeLabelFormatter mDurationFormatter = new TimeLabelFormatter();
+    private final ProgressScheduler mProgressScheduler = new ProgressScheduler(this, this);
+    // native calls that may block run here instead of on the UI thread
+    private final PlayerCommandExecutor mCommands = PlayerCommandExecutor.get();
+    private final SeekPipeline mSeekPipeline = new SeekPipeline(new SeekPipeline.Target() {
+        @Override
+        public void seekFast(long timeMs, long seekId) {
+            if (mPlayer == null) return;
+            long length = mDuration > 0 ? mDuration : mPlayer.getLength();
+            mMetrics.onSeek();
+            mLoopTracker.onSeek(SystemClock.uptimeMillis());
+            if (length > 0)
+                mCommands.execute(PlayerCommandExecutor.seekPosition(mPlayer, timeMs / (float) length, seekApplied(seekId)));
+            else
+                mCommands.execute(PlayerCommandExecutor.seekTime(mPlayer, timeMs, seekApplied(seekId)));
+        }
+
+        @Override
+        public void seekPrecise(long timeMs, long seekId) {
+            if (mPlayer == null) return;
+            mMetrics.onSeek();
+            mLoopTracker.onSeek(SystemClock.uptimeMillis());
+            mCommands.execute(PlayerCommandExecutor.seekTime(mPlayer, timeMs, seekApplied(seekId)));
+        }
+
+        private Runnable seekApplied(final long seekId) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    mSeekPipeline.onSeekApplied(seekId);
+                }
+            };
+        }
+
+        @Override
+        public void postDelayed(Runnable action, long delayMs) {
+            VLCVideoPlayer.this.postDelayed(action, delayMs);
+        }
+
+        @Override
+        public void removeCallbacks(Runnable action) {
+            VLCVideoPlayer.this.removeCallbacks(action);
+        }
+    });
 
     private Drawable mPlayDrawable;
     private Drawable mPauseDrawable;
@@ -75,17 +217,109 @@ public class VLCVideoPlayer extends FrameLayout implements
     private int mSarNum;
     private int mSarDen;
 
-    private static final int SURFACE_BEST_FIT = 0;
-    private static final int SURFACE_FIT_HORIZONTAL = 1;
-    private static final int SURFACE_FIT_VERTICAL = 2;
-    private static final int SURFACE_FILL = 3;
-    private static final int SURFACE_16_9 = 4;
-    private static final int SURFACE_4_3 = 5;
-    private static final int SURFACE_ORIGINAL = 6;
+    @IntDef({SURFACE_BEST_FIT, SURFACE_FIT_HORIZONTAL, SURFACE_FIT_VERTICAL, SURFACE_FILL,
+            SURFACE_16_9, SURFACE_4_3, SURFACE_ORIGINAL})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface ScaleMode {
+    }
+
+    /** Fit the whole picture, letterboxing as needed. */
+    public static final int SURFACE_BEST_FIT = 0;
+    /** Fill the width, cropping or letterboxing vertically. */
+    public static final int SURFACE_FIT_HORIZONTAL = 1;
+    /** Fill the height, cropping or pillarboxing horizontally. */
+    public static final int SURFACE_FIT_VERTICAL = 2;
+    /** Stretch to the display, ignoring the aspect ratio. */
+    public static final int SURFACE_FILL = 3;
+    public static final int SURFACE_16_9 = 4;
+    public static final int SURFACE_4_3 = 5;
+    /** Native video size. */
+    public static final int SURFACE_ORIGINAL = 6;
     private int mCurrentSize = SURFACE_FIT_VERTICAL;
+    private SurfaceGeometry mSurfaceGeometry;
+    private boolean mCapBufferToView = false;
+
+    @IntDef({RENDER_SURFACE_VIEW, RENDER_TEXTURE_VIEW})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface RenderTarget {
+    }
+
+    /** Render into a SurfaceView; scale mode changes resize the surface. */
+    public static final int RENDER_SURFACE_VIEW = 0;
+    /**
+     * Render into a TextureView; scale mode, zoom and pan are applied as a transform,
+     * without relayout or a new buffer.
+     */
+    public static final int RENDER_TEXTURE_VIEW = 1;
+    private int mRenderTarget = RENDER_SURFACE_VIEW;
+
+    @IntDef({DECODE_FULL, DECODE_KEYFRAMES})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface DecodeMode {
+    }
+
+    /** Decode every frame. */
+    public static final int DECODE_FULL = 0;
+    /**
+     * Decode keyframes only, in software. The picture updates about once per GOP at a
+     * fraction of the CPU cost; meant for thumbnails in a grid.
+     */
+    public static final int DECODE_KEYFRAMES = 1;
+    private int mDecodeMode = DECODE_FULL;
+    // mode the current media was opened with
+    private int mOpenedDecodeMode = DECODE_FULL;
+    private PlayerGridCoordinator mGrid;
+
+    public static final int DEFAULT_LIVE_LATENCY_MS = 500;
+    private boolean mLiveMode = false;
+    // playback rate last set by the live drift control
+    private float mLiveRate = 1f;
+    private int mLiveLatencyMs = DEFAULT_LIVE_LATENCY_MS;
+    private final LiveDriftController mDrift = new LiveDriftController();
+    private final LoopTracker mLoopTracker = new LoopTracker();
+    private final PendingStart mPendingStart = new PendingStart();
+    private RenditionSelector mRenditionSelector;
+    private boolean mAudioOnly = false;
+    // paused by the grid coordinator while playing, to resume once it is active again
+    private boolean mResumeAfterGrid;
+    // not made active by the grid coordinator, the pooled player is parked
+    private boolean mGridParked;
+    private float mZoom = 1f;
+    private float mPanX;
+    private float mPanY;
+    private final Matrix mTextureMatrix = new Matrix();
+    private final float[] mTextureTransform = new float[6];
 
     private boolean mWasPlayed = false;
     private long mPlayedTime = 0;
+    private long mDuration = 0;
+    private boolean mPlayWhenAttached = false;
+
+    private final List<Uri> mPlaylist = new ArrayList<>();
+    private int mPlaylistIndex = -1;
+    private final MediaPrefetcher mPrefetcher = new MediaPrefetcher();
+    private long mTransitionStartMs = 0;
+    private OnPlaylistTransitionListener mPlaylistTransitionListener;
+    private final PlayerEventDispatcher mDispatcher = new PlayerEventDispatcher(this);
+    private HttpCacheProxy mCacheProxy;
+    private ResumePositionStore mResumeStore;
+    // source opened before the store was loaded, resumed once it is unless the user seeked
+    private String mLateResumeKey;
+    private PlaybackMetrics mMetrics = new PlaybackMetrics();
+    private NetworkCachingController mCachingController;
+    // fill of the current media if its caching is adapted, else null
+    private NetworkCachingController.Fill mCachingFill;
+    private HardwareDecodingBlacklist mHwBlacklist;
+    private int mHwMode = VlcOptions.HW_DECODING_AUTOMATIC;
+    // highest mode left for the current source after a failure in this session
+    private int mHwFallbackCap = VlcOptions.HW_DECODING_AUTOMATIC;
+    private final Runnable mShowProgressFrame = new Runnable() {
+        @Override
+        public void run() {
+            if (mProgressFrame != null)
+                mProgressFrame.setVisibility(View.VISIBLE);
+        }
+    };
 
     public VLCVideoPlayer(Context context) {
         super(context);
@@ -102,8 +336,28 @@ public class VLCVideoPlayer extends FrameLayout implements
         init(context, attrs);
     }
 
+    /**
+     * Starts loading the native libraries, building the engine for the default
+     * {@link VlcOptions} and reading past hardware decoding failures in the background. Call
+     * it early, e.g. from {@code Application.onCreate()}, so inflating and starting a player
+     * does not have to.
+     */
+    public static void warmUp(@NonNull Context context) {
+        warmUp(context, new VlcOptions());
+    }
+
+    /**
+     * Like {@link #warmUp(Context)}, for views that will use {@code options}.
+     */
+    public static void warmUp(@NonNull Context context, @NonNull VlcOptions options) {
+        LibVLCPool.warmUp(context, options.get());
+        HardwareDecodingBlacklist.get(context);
+    }
+
     private void init(Context context, AttributeSet attrs) {
-        mVlcInstance = new LibVLC(context, new VlcOptions().get());
+        // the engine is acquired once there is something to play, see ensurePlayer(); the
+        // blacklist reads its preferences in the background
+        mHwBlacklist = HardwareDecodingBlacklist.get(context);
 
         mPlayDrawable = AppCompatResources.getDrawable(context, R.drawable.videoplayer_action_play);
         mPauseDrawable = AppCompatResources.getDrawable(context, R.drawable.videoplayer_action_pause);
@@ -113,8 +367,10 @@ public class VLCVideoPlayer extends FrameLayout implements
 
             try {
                 String source = a.getString(R.styleable.VLCVideoPlayer_vvp_source);
-                if (source != null && !source.trim().isEmpty())
+                if (source != null && !source.trim().isEmpty()) {
                     mSource = Uri.parse(source);
+                    mSourceKey = ResumeKeys.normalize(mSource.toString());
+                }
                 int playDrawableResId = a.getResourceId(R.styleable.VLCVideoPlayer_vvp_playDrawable, -1);
                 int pauseDrawableResId = a.getResourceId(R.styleable.VLCVideoPlayer_vvp_pauseDrawable, -1);
 
@@ -131,6 +387,9 @@ public class VLCVideoPlayer extends FrameLayout implements
                 mControlsDisabled = a.getBoolean(R.styleable.VLCVideoPlayer_vvp_disableControls, false);
 
                 mLoop = a.getBoolean(R.styleable.VLCVideoPlayer_vvp_loop, false);
+                mCurrentSize = a.getInt(R.styleable.VLCVideoPlayer_vvp_scaleMode, SURFACE_FIT_VERTICAL);
+                mRenderTarget = a.getInt(R.styleable.VLCVideoPlayer_vvp_renderTarget, RENDER_SURFACE_VIEW);
+                mLiveMode = a.getBoolean(R.styleable.VLCVideoPlayer_vvp_liveMode, false);
 
             } finally {
                 a.recycle();
@@ -143,28 +402,309 @@ public class VLCVideoPlayer extends FrameLayout implements
     }
 
     public void setSource(@NonNull Uri source) {
-        boolean isOldSource = mSource != null && source != null && mSource.getPath().equals(source.getPath());
+        String key = ResumeKeys.normalize(source.toString());
+        boolean isOldSource = mSourceKey != null && mSourceKey.equals(key);
 
         Log.d(TAG, "mSource " + mSource + " source " + source);
-        if (mSource != null && source != null)
-        Log.d(TAG, "setSource -> isOldSource = " + isOldSource + "(" +mSource.getPath()+ " / "+source.getPath()+")");
+        if (mSource != null)
+        Log.d(TAG, "setSource -> isOldSource = " + isOldSource + "(" + mSourceKey + " / " + key + ")");
         boolean hadSource = mSource != null;
 
         if (hadSource)
             stop();
 
+        // an explicit source leaves playlist mode
+        mPlaylist.clear();
+        mPlaylistIndex = -1;
+        mPrefetcher.clear();
+        mTransitionStartMs = 0;
+
+        mDispatcher.cancel();
         mSource = source;
-        if (mPlayer != null) {
-            Media media = new Media(mVlcInstance, mSource);
-            mPlayer.setMedia(media);
+        mSourceKey = key;
+        mHwFallbackCap = VlcOptions.HW_DECODING_AUTOMATIC;
+        // a live stream always opens at the live edge
+        if (!isOldSource || mLiveMode)
+            mPlayedTime = getStoredPosition(key);
+        openSource(mAutoPlay || isOldSource, mPlayedTime);
+    }
 
-            if (mAutoPlay || isOldSource) {
-                mPlayer.play();
-                if (isOldSource) {
-                    mPlayer.setTime(mPlayedTime);
-                }
+    /**
+     * Remembers playback positions in {@code store}, keyed by normalized source URI, and resumes
+     * from there whenever a source is opened again. Pass null to disable.
+     *
+     * @see FileResumePositionStore#get(Context)
+     */
+    public void setResumePositionStore(ResumePositionStore store) {
+        mResumeStore = store;
+    }
+
+    private long getStoredPosition(String key) {
+        mLateResumeKey = null;
+        // positions in a live stream do not survive the stream moving on
+        if (mResumeStore == null || mLiveMode) return 0;
+        if (mResumeStore instanceof FileResumePositionStore) {
+            FileResumePositionStore store = (FileResumePositionStore) mResumeStore;
+            if (!store.isLoaded())
+                resumeWhenLoaded(store, key);
+        }
+        return Math.max(0, mResumeStore.get(key));
+    }
+
+    /**
+     * Seeks to the stored position of {@code key} once {@code store} has read its log, if the
+     * source is still open and was not seeked in the meantime.
+     */
+    private void resumeWhenLoaded(final FileResumePositionStore store, final String key) {
+        mLateResumeKey = key;
+        store.whenLoaded(new Runnable() {
+            @Override
+            public void run() {
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!key.equals(mLateResumeKey) || store != mResumeStore) return;
+                        mLateResumeKey = null;
+                        long position = store.get(key);
+                        if (position <= 0) return;
+                        if (mPlayer == null)
+                            mPlayedTime = position;
+                        else
+                            seekTo((int) Math.min(Integer.MAX_VALUE, position));
+                    }
+                });
             }
+        });
+    }
+
+    private void openSource(boolean play, long startTime) {
+        if (mSource == null || !ensurePlayer()) return;
+
+        Uri uri = resolveSource(mSource);
+        Media media = mPrefetcher.take(uri);
+        if (media == null) {
+            media = new Media(mVlcInstance, uri);
+            mVlcOptions.applyTo(media);
         }
+        // skip decoding modes that already failed for this codec and resolution; a parsed
+        // media, e.g. a prefetched one, knows its own tracks
+        String signature = media.isParsed() ? HardwareDecoding.signature(media) : null;
+        int cap = signature != null ? mHwBlacklist.getSignatureCap(signature) : mHwBlacklist.getCap(mSourceKey);
+        mHwMode = HardwareDecoding.resolve(mVlcOptions.getHardwareDecoding(), cap);
+        mHwMode = HardwareDecoding.resolve(mHwMode, mHwFallbackCap);
+        if (mHwMode != mVlcOptions.getHardwareDecoding())
+            VlcOptions.applyHardwareDecoding(media, mHwMode);
+        if (mDecodeMode == DECODE_KEYFRAMES)
+            VlcOptions.applyKeyframesOnly(media);
+        mOpenedDecodeMode = mDecodeMode;
+        endMetricsSession();
+        mCachingFill = null;
+        mDrift.reset();
+        if (!mLiveMode && mLiveRate != 1f) {
+            mPlayer.setRate(1f);
+            mLiveRate = 1f;
+        }
+        mLoopTracker.reset();
+        if (mRenditionSelector != null)
+            mRenditionSelector.applyTo(media, getWidth(), getHeight());
+        // a single looping source repeats in place; playlists wrap in next()
+        if (mLoop && !mLiveMode && mPlaylistIndex < 0)
+            VlcOptions.applyRepeat(media);
+        if (mLiveMode) {
+            VlcOptions.applyLowLatency(media, mLiveLatencyMs);
+        } else if (mCachingController != null && isNetworkUri(uri)) {
+            mCachingFill = mCachingController.openFill();
+            media.addOption(":network-caching=" + mCachingFill.cachingMs);
+        }
+        mMetrics.startSession(SystemClock.uptimeMillis());
+        if (play && startTime > 0)
+            mMetrics.onSeek();
+        // a position opened without playing is applied by the first play()
+        startTime = mPendingStart.onOpen(play, startTime);
+        mCommands.execute(PlayerCommandExecutor.open(mPlayer, media, play, startTime));
+    }
+
+    /**
+     * Where startup, stall and frame statistics of this view are recorded. Several views may
+     * share one instance.
+     */
+    public void setPlaybackMetrics(@NonNull PlaybackMetrics metrics) {
+        if (metrics == mMetrics) return;
+        endMetricsSession();
+        mMetrics = metrics;
+    }
+
+    public PlaybackMetrics getPlaybackMetrics() {
+        return mMetrics;
+    }
+
+    private void endMetricsSession() {
+        if (!mMetrics.isSessionActive()) return;
+        long now = SystemClock.uptimeMillis();
+        Media media = mPlayer != null ? mPlayer.getMedia() : null;
+        Media.Stats stats = media != null ? media.getStats() : null;
+        if (media != null)
+            media.release();
+        PlaybackMetrics.Session session;
+        if (stats != null)
+            session = mMetrics.endSession(now, stats.decodedVideo, stats.displayedPictures, stats.lostPictures);
+        else
+            session = mMetrics.endSession(now, 0, 0, 0);
+        if (session != null && mCachingController != null && mCachingFill != null)
+            mCachingController.onSessionEnd(session.getStallCount(), session.getStallMs(), session.getPlayMs());
+    }
+
+    /**
+     * Adapts the network caching of every network source this view opens to the stalls and
+     * buffer fill rate seen in previous sessions. One controller can be shared by views that
+     * stream over the same connection, each view tracks its own fill; pass null to always use {@link VlcOptions#getNetworkCaching()}.
+     */
+    public void setNetworkCachingController(NetworkCachingController controller) {
+        mCachingController = controller;
+    }
+
+    public NetworkCachingController getNetworkCachingController() {
+        return mCachingController;
+    }
+
+    private static boolean isNetworkUri(Uri uri) {
+        String scheme = uri.getScheme();
+        return scheme != null && !"file".equals(scheme) && !"content".equals(scheme)
+                && !"android.resource".equals(scheme);
+    }
+
+    /**
+     * Options for the LibVLC engine backing this view. Views with equal options share one engine;
+     * changing them re-binds the view to a matching engine, resuming where it left off.
+     */
+    public void setVlcOptions(@NonNull VlcOptions options) {
+        if (options.equals(mVlcOptions)) return;
+        mVlcOptions = options;
+        if (mSurfaceHolder != null)
+            mSurfaceHolder.setFormat(options.getPixelFormat());
+        if (mVlcInstance == null) return;
+
+        boolean rebind = mPlayer != null;
+        release();
+        if (rebind)
+            bindPlayer();
+    }
+
+    public VlcOptions getVlcOptions() {
+        return mVlcOptions;
+    }
+
+    /**
+     * Replaces the playlist and starts playing it at {@code startIndex}. While an item plays the
+     * next one is parsed in the background and, with a {@link #setCacheProxy(HttpCacheProxy)
+     * cache proxy}, its first bytes are downloaded to disk, so the transition does not wait on
+     * the network. The next item is still opened on the transition, which is not gapless.
+     */
+    public void setPlaylist(@NonNull List<Uri> playlist, int startIndex) {
+        mPlaylist.clear();
+        mPlaylist.addAll(playlist);
+        mPrefetcher.clear();
+        if (mPlaylist.isEmpty()) {
+            mPlaylistIndex = -1;
+            return;
+        }
+        playPlaylistItem(Math.max(0, Math.min(startIndex, mPlaylist.size() - 1)));
+    }
+
+    /**
+     * Appends {@code uri} to the playlist, starting it if the playlist was empty.
+     */
+    public void enqueue(@NonNull Uri uri) {
+        mPlaylist.add(uri);
+        if (mPlaylistIndex < 0)
+            playPlaylistItem(0);
+        else if (mPlaylistIndex == mPlaylist.size() - 2 && mWasPlayed)
+            prefetchNext();
+    }
+
+    public List<Uri> getPlaylist() {
+        return new ArrayList<>(mPlaylist);
+    }
+
+    public int getPlaylistIndex() {
+        return mPlaylistIndex;
+    }
+
+    public boolean hasNext() {
+        return mPlaylistIndex >= 0 && (mPlaylistIndex < mPlaylist.size() - 1 || mLoop);
+    }
+
+    public boolean hasPrevious() {
+        return mPlaylistIndex > 0;
+    }
+
+    /**
+     * Moves to the next playlist item, wrapping around when looping. Returns false at the end.
+     */
+    public boolean next() {
+        if (!hasNext()) return false;
+        playPlaylistItem((mPlaylistIndex + 1) % mPlaylist.size());
+        return true;
+    }
+
+    public boolean previous() {
+        if (!hasPrevious()) return false;
+        playPlaylistItem(mPlaylistIndex - 1);
+        return true;
+    }
+
+    public void setOnPlaylistTransitionListener(OnPlaylistTransitionListener listener) {
+        mPlaylistTransitionListener = listener;
+    }
+
+    public void addPlayerListener(@NonNull PlayerListener listener) {
+        mDispatcher.add(listener);
+    }
+
+    public void removePlayerListener(PlayerListener listener) {
+        mDispatcher.remove(listener);
+    }
+
+    private void playPlaylistItem(int index) {
+        mPlaylistIndex = index;
+        mTransitionStartMs = SystemClock.uptimeMillis();
+        mSource = mPlaylist.get(index);
+        mSourceKey = ResumeKeys.normalize(mSource.toString());
+        mHwFallbackCap = VlcOptions.HW_DECODING_AUTOMATIC;
+        mPlayedTime = getStoredPosition(mSourceKey);
+        // setMedia() stops the current item itself, no need for a separate stop()
+        openSource(true, mPlayedTime);
+        if (mPlayer == null)
+            mPlayWhenAttached = true;
+        if (mBtnPlayPause != null)
+            mBtnPlayPause.setImageDrawable(mPauseDrawable);
+    }
+
+    private void prefetchNext() {
+        if (mVlcInstance == null || !hasNext()) return;
+        int next = (mPlaylistIndex + 1) % mPlaylist.size();
+        if (next == mPlaylistIndex) return;
+        Uri uri = mPlaylist.get(next);
+        mPrefetcher.prefetch(mVlcInstance, resolveSource(uri), mVlcOptions);
+        // the head of the next item is on disk by the time it opens
+        if (mCacheProxy != null)
+            mCacheProxy.prefetch(uri.toString(), PREBUFFER_BYTES);
+    }
+
+    /**
+     * Routes HTTP sources through the given caching proxy, so looping, seeking back and
+     * re-opening a clip are served from disk. Pass null to open sources directly.
+     * Takes effect the next time a source is opened.
+     */
+    public void setCacheProxy(HttpCacheProxy proxy) {
+        mCacheProxy = proxy;
+    }
+
+    private Uri resolveSource(Uri source) {
+        if (mCacheProxy == null) return source;
+        String url = source.toString();
+        String proxyUrl = mCacheProxy.getProxyUrl(url);
+        return proxyUrl.equals(url) ? source : Uri.parse(proxyUrl);
     }
 
     public void setHideControlsOnPlay(boolean hideControlsOnPlay) {
@@ -175,18 +715,115 @@ public class VLCVideoPlayer extends FrameLayout implements
         mAutoPlay = autoPlay;
     }
 
+    /**
+     * Repeats the source forever. Single sources repeat in place, without reopening or
+     * flushing the decoders; playlists wrap around in {@link #next()}. Loop counts and gaps
+     * are recorded in the {@link PlaybackMetrics}.
+     * <p>
+     * The in-place repeat is fixed into the media when it is opened, so changing this while a
+     * single source is open reopens it at the current position, keeping it playing or paused.
+     */
     public void setLoop(boolean loop) {
+        if (loop == mLoop) return;
         mLoop = loop;
+        if (mPlayer == null || mSource == null || mLiveMode || mPlaylistIndex >= 0) return;
+
+        boolean playing = mPlayer.isPlaying() || mPlayWhenAttached;
+        long time = mPlayer.getTime();
+        if (time > 0)
+            mPlayedTime = time;
+        openSource(playing, mPlayedTime);
+    }
+
+    /**
+     * Shows frames from {@code service} above the SeekBar while it is dragged. Pass null to
+     * turn the previews off.
+     *
+     * @see ThumbnailService#get(Context)
+     */
+    public void setThumbnailService(ThumbnailService service) {
+        hideSeekPreview();
+        mThumbnails = service;
+    }
+
+    private void requestSeekPreview(int position) {
+        if (mThumbnails == null || mSource == null || mSeekPreview == null) return;
+        mThumbnails.cancel(mPreviewCallback);
+        // a hundred steps across the clip are plenty while scrubbing, and share cached frames
+        long step = Math.max(1000, mDuration / 100);
+        mThumbnails.requestFrame(mSource, position / step * step, mSeekPreview.getLayoutParams().width, mPreviewCallback);
+        positionSeekPreview();
+    }
+
+    private void positionSeekPreview() {
+        if (mSeekPreview.getVisibility() != View.VISIBLE) return;
+        FrameLayout.LayoutParams lp = (FrameLayout.LayoutParams) mSeekPreview.getLayoutParams();
+        if (lp.bottomMargin != mControlsFrame.getHeight()) {
+            lp.bottomMargin = mControlsFrame.getHeight();
+            mSeekPreview.setLayoutParams(lp);
+        }
+
+        int max = mSeeker.getMax();
+        int track = mSeeker.getWidth() - mSeeker.getPaddingLeft() - mSeeker.getPaddingRight();
+        float thumbX = mControlsFrame.getLeft() + mSeeker.getLeft() + mSeeker.getPaddingLeft()
+                + (max > 0 ? track * (float) mSeeker.getProgress() / max : 0);
+        int width = lp.width;
+        mSeekPreview.setTranslationX(Math.max(0, Math.min(getWidth() - width, thumbX - width / 2f)));
+    }
+
+    private void hideSeekPreview() {
+        if (mThumbnails != null)
+            mThumbnails.cancel(mPreviewCallback);
+        if (mSeekPreview != null) {
+            mSeekPreview.setVisibility(View.GONE);
+            mSeekPreview.setImageDrawable(null);
+        }
+    }
+
+    /**
+     * Caps how often the position label and SeekBar are refreshed during playback.
+     * Pass 0 to skip updates entirely in that state; defaults are 4 Hz while the
+     * controls are shown and 0 Hz while they are hidden.
+     */
+    public void setProgressUpdateRate(float controlsShownHz, float controlsHiddenHz) {
+        mProgressScheduler.setRates(controlsShownHz, controlsHiddenHz);
     }
 
     public void seekTo(@IntRange(from = 0, to = Integer.MAX_VALUE) int pos) {
+        mLateResumeKey = null;
         if (mPlayer == null) return;
-        mPlayer.setTime(pos);
+        // not started yet: move where the first play() starts instead
+        if (mPendingStart.replace(pos)) {
+            mPlayedTime = pos;
+            return;
+        }
+        VLCPlayerPool.touch(mPlayer);
+        mSeekPipeline.seek(pos, SystemClock.uptimeMillis());
+    }
+
+    /**
+     * Seek counters and latency, for monitoring.
+     */
+    public SeekPipeline getSeekPipeline() {
+        return mSeekPipeline;
     }
 
     public void play() {
-        if (mPlayer != null)
-            mPlayer.play();
+        if (mGridParked) {
+            // a tile paused by its grid coordinator starts once the coordinator activates it
+            mResumeAfterGrid = true;
+            return;
+        }
+        if (mPlayer != null) {
+            VLCPlayerPool.touch(mPlayer);
+            long startTime = mPendingStart.take();
+            if (startTime > 0)
+                mMetrics.onSeek();
+            mCommands.execute(PlayerCommandExecutor.play(mPlayer, startTime));
+        } else {
+            mPlayWhenAttached = true;
+            bindPlayer();
+        }
 
         mBtnPlayPause.setImageDrawable(mPauseDrawable);
 
@@ -196,22 +833,32 @@ public class VLCVideoPlayer extends FrameLayout implements
 
     public void pause() {
         if (mPlayer != null)
-            mPlayer.pause();
+            mCommands.execute(PlayerCommandExecutor.pause(mPlayer));
+        mPlayWhenAttached = false;
+        mResumeAfterGrid = false;
 
         mBtnPlayPause.setImageDrawable(mPlayDrawable);
     }
 
     public void stop() {
         if (mPlayer != null)
-            mPlayer.stop();
+            mCommands.execute(PlayerCommandExecutor.stop(mPlayer));
+        mPlayWhenAttached = false;
+        mResumeAfterGrid = false;
 
         mBtnPlayPause.setImageDrawable(mPlayDrawable);
     }
 
     public void release() {
         if (mPlayer != null) {
-            mPlayer.release();
-            mPlayer = null;
+            MediaPlayer player = mPlayer;
+            unbindPlayer(player);
+            VLCPlayerPool.recycle(player);
+        }
+        mPrefetcher.clear();
+        if (mVlcInstance != null) {
+            LibVLCPool.release(mVlcInstance);
+            mVlcInstance = null;
         }
     }
 
@@ -223,24 +870,10 @@ public class VLCVideoPlayer extends FrameLayout implements
             return;
         }
 
-        setKeepScreenOn(true);
-
         final LayoutInflater li = LayoutInflater.from(getContext());
 
-        mPlayer = new MediaPlayer(mVlcInstance);
-        mPlayer.setEventListener(this);
-        mPlayer.setVideoTrackEnabled(true);
-
-        // Instantiate and add TextureView for rendering
-
-        mVideoFrame = li.inflate(R.layout.videoplayer_include_view, this, false);
-        addView(mVideoFrame);
-
-        mSurfaceFrame = (FrameLayout) mVideoFrame.findViewById(R.id.surface_frame);
-        mSurface = (SurfaceView) mVideoFrame.findViewById(R.id.surface_view);
-        mSurfaceHolder = mSurface.getHolder();
-        mSurfaceHolder.setFormat(PixelFormat.RGBX_8888);
-        mSurfaceHolder.setKeepScreenOn(true);
+        // Instantiate and add the render target
+        inflateVideoFrame(li);
 
         // Inflate and add progress
         mProgressFrame = li.inflate(R.layout.videoplayer_include_progress, this, false);
@@ -258,6 +891,12 @@ public class VLCVideoPlayer extends FrameLayout implements
         controlsLp.gravity = Gravity.BOTTOM;
         addView(mControlsFrame, controlsLp);
 
+        // Inflate seek preview, shown above the controls while scrubbing
+        mSeekPreview = (ImageView) li.inflate(R.layout.videoplayer_include_seek_preview, this, false);
+        final FrameLayout.LayoutParams previewLp = (FrameLayout.LayoutParams) mSeekPreview.getLayoutParams();
+        previewLp.gravity = Gravity.BOTTOM | Gravity.LEFT;
+        addView(mSeekPreview, previewLp);
+
         if (mControlsDisabled) {
             mClickFrame.setOnClickListener(null);
             mControlsFrame.setVisibility(View.GONE);
@@ -286,9 +925,180 @@ public class VLCVideoPlayer extends FrameLayout implements
         mBtnPlayPause.setImageDrawable(mPlayDrawable);
 
         setControlsEnabled(false);
+        mProgressScheduler.setControlsVisible(!mControlsDisabled);
+    }
 
-        if (mSource != null)
-            setSource(mSource);
+    private void inflateVideoFrame(LayoutInflater li) {
+        mSurfaceGeometry = null;
+        if (mRenderTarget == RENDER_TEXTURE_VIEW) {
+            mVideoFrame = li.inflate(R.layout.videoplayer_include_texture_view, this, false);
+            mTextureView = (TextureView) mVideoFrame.findViewById(R.id.texture_view);
+            mTextureView.addOnLayoutChangeListener(new OnLayoutChangeListener() {
+                @Override
+                public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                           int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                    if (right - left != oldRight - oldLeft || bottom - top != oldBottom - oldTop)
+                        applyTextureTransform();
+                }
+            });
+            mSurface = null;
+            mSurfaceHolder = null;
+        } else {
+            mVideoFrame = li.inflate(R.layout.videoplayer_include_view, this, false);
+            mSurface = (SurfaceView) mVideoFrame.findViewById(R.id.surface_view);
+            mSurfaceHolder = mSurface.getHolder();
+            mSurfaceHolder.setFormat(mVlcOptions.getPixelFormat());
+            mTextureView = null;
+        }
+        mSurfaceFrame = (FrameLayout) mVideoFrame.findViewById(R.id.surface_frame);
+        addView(mVideoFrame, 0);
+    }
+
+    /**
+     * Picks what the video is rendered into, one of the {@code RENDER_*} constants.
+     * Switching while playing re-attaches the video output to the new view.
+     */
+    public void setRenderTarget(@RenderTarget int target) {
+        if (target == mRenderTarget) return;
+        mRenderTarget = target;
+        if (mVideoFrame == null) return;
+
+        IVLCVout vlcOut = mPlayer != null ? mPlayer.getVLCVout() : null;
+        if (vlcOut != null && vlcOut.areViewsAttached())
+            vlcOut.detachViews();
+        removeView(mVideoFrame);
+        inflateVideoFrame(LayoutInflater.from(getContext()));
+        if (vlcOut != null && !mAudioOnly)
+            attachVideoOutput(vlcOut);
+    }
+
+    @RenderTarget
+    public int getRenderTarget() {
+        return mRenderTarget;
+    }
+
+    /**
+     * How the picture is fitted into the view, one of the {@code SURFACE_*} constants.
+     */
+    public void setScaleMode(@ScaleMode int mode) {
+        if (mode == mCurrentSize) return;
+        mCurrentSize = mode;
+        changeSurfaceSize();
+    }
+
+    @ScaleMode
+    public int getScaleMode() {
+        return mCurrentSize;
+    }
+
+    /**
+     * Whether the surface buffer is limited to the on-screen size of the picture instead of
+     * the full decoded size. Saves graphics memory and bandwidth when large streams play in
+     * small views, e.g. a grid of thumbnails. Only affects {@link #RENDER_SURFACE_VIEW}.
+     * Combine with {@link VlcOptions#CHROMA_RGB16} to halve the buffer size again.
+     */
+    public void setCapBufferToView(boolean cap) {
+        if (cap == mCapBufferToView) return;
+        mCapBufferToView = cap;
+        changeSurfaceSize();
+    }
+
+    /**
+     * Zooms into the picture by {@code zoom} (1 for none) on top of the scale mode, moved by
+     * {@code panX}/{@code panY} pixels from the center. The pan is limited to keep the view
+     * covered. Only supported with {@link #RENDER_TEXTURE_VIEW}.
+     */
+    public void setZoom(@FloatRange(from = 1.0) float zoom, float panX, float panY) {
+        mZoom = Math.max(1f, zoom);
+        mPanX = panX;
+        mPanY = panY;
+        applyTextureTransform();
+    }
+
+    public float getZoom() {
+        return mZoom;
+    }
+
+    public float getPanX() {
+        return mPanX;
+    }
+
+    public float getPanY() {
+        return mPanY;
+    }
+
+    private void attachVideoOutput(IVLCVout vlcOut) {
+        if (mTextureView != null)
+            vlcOut.setVideoView(mTextureView);
+        else
+            vlcOut.setVideoView(mSurface);
+        vlcOut.attachViews();
+    }
+
+    private void bindPlayer() {
+        if (mPlayer != null) return;
+        boolean play = mAutoPlay || mPlayWhenAttached;
+        if (play && mGridParked) {
+            // the grid coordinator starts it once it is active
+            mResumeAfterGrid = true;
+            mPlayWhenAttached = false;
+            play = false;
+        }
+        openSource(play, mPlayedTime);
+    }
+
+    /**
+     * Acquires the engine and a player for this view if it has none yet. Returns false while
+     * the view is not attached, in which case {@link #onAttachedToWindow()} binds it later.
+     */
+    private boolean ensurePlayer() {
+        if (mPlayer != null) return true;
+        if (mVideoFrame == null || getWindowToken() == null) return false;
+        if (mVlcInstance == null)
+            mVlcInstance = LibVLCPool.acquire(getContext(), mVlcOptions.get());
+
+        mPlayer = VLCPlayerPool.acquire(mVlcInstance, this, !mGridParked);
+        mPlayer.setEventListener(this);
+        mPlayer.setVideoTrackEnabled(!mAudioOnly);
+        // a pooled player keeps the rate its previous view left it at
+        mLiveRate = mPlayer.getRate();
+
+        IVLCVout vlcOut = mPlayer.getVLCVout();
+        if (!mAudioOnly && !vlcOut.areViewsAttached()) {
+            vlcOut.addCallback(this);
+            attachVideoOutput(vlcOut);
+        }
+        return true;
+    }
+
+    /**
+     * Detaches this view from {@code player} and remembers where playback was,
+     * so the next {@link #bindPlayer()} can resume from there.
+     */
+    private void unbindPlayer(MediaPlayer player) {
+        if (player != mPlayer) return;
+
+        endMetricsSession();
+        mPlayWhenAttached = player.isPlaying();
+        long time = player.getTime();
+        if (time > 0)
+            mPlayedTime = time;
+
+        player.setEventListener(null);
+        IVLCVout vlcOut = player.getVLCVout();
+        vlcOut.removeCallback(this);
+        if (vlcOut.areViewsAttached())
+            vlcOut.detachViews();
+        mPlayer = null;
+
+        if (mBtnPlayPause != null)
+            mBtnPlayPause.setImageDrawable(mPlayDrawable);
+        setControlsEnabled(false);
+    }
+
+    @Override
+    public void onPlayerReclaimed(MediaPlayer player) {
+        unbindPlayer(player);
     }
 
     private void setControlsEnabled(boolean enabled) {
@@ -308,6 +1118,7 @@ public class VLCVideoPlayer extends FrameLayout implements
         mControlsFrame.animate().cancel();
         mControlsFrame.setAlpha(0f);
         mControlsFrame.setVisibility(View.VISIBLE);
+        mProgressScheduler.setControlsVisible(true);
         mControlsFrame
                 .animate()
                 .alpha(1f)
@@ -327,6 +1138,7 @@ public class VLCVideoPlayer extends FrameLayout implements
         mControlsFrame.animate().cancel();
         mControlsFrame.setAlpha(1f);
         mControlsFrame.setVisibility(View.VISIBLE);
+        mProgressScheduler.setControlsVisible(false);
         mControlsFrame
                 .animate()
                 .alpha(0f)
@@ -371,12 +1183,19 @@ public class VLCVideoPlayer extends FrameLayout implements
     public void disableControls() {
         mControlsDisabled = true;
         mControlsFrame.setVisibility(View.GONE);
+        mProgressScheduler.setControlsVisible(false);
         mClickFrame.setOnClickListener(null);
         mClickFrame.setClickable(false);
     }
 
     @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
     private void changeSurfaceSize() {
+        if (mTextureView != null) {
+            applyTextureTransform();
+            return;
+        }
+        if (mSurface == null) return;
+
         int sw;
         int sh;
 
@@ -384,94 +1203,64 @@ public class VLCVideoPlayer extends FrameLayout implements
         sw = ((Activity) getContext()).getWindow().getDecorView().getWidth();
         sh = ((Activity) getContext()).getWindow().getDecorView().getHeight();
 
-        double dw = sw, dh = sh;
         boolean isPortrait = getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT;
 
-        if (sw > sh && isPortrait || sw < sh && !isPortrait) {
-            dw = sh;
-            dh = sw;
-        }
-
-        // sanity check
-        if (dw * dh == 0 || mVideoWidth * mVideoHeight == 0) {
+        SurfaceGeometry geometry = SurfaceGeometry.compute(sw, sh, isPortrait,
+                mVideoWidth, mVideoHeight, mVideoVisibleWidth, mVideoVisibleHeight, mSarNum, mSarDen, mCurrentSize);
+        if (geometry == null) {
             Log.e(TAG, "Invalid surface size");
             return;
         }
-
-        // compute the aspect ratio
-        double ar, vw;
-        if (mSarDen == mSarNum) {
-            /* No indication about the density, assuming 1:1 */
-            vw = mVideoVisibleWidth;
-            ar = (double) mVideoVisibleWidth / (double) mVideoVisibleHeight;
-        } else {
-            /* Use the specified aspect ratio */
-            vw = mVideoVisibleWidth * (double) mSarNum / mSarDen;
-            ar = vw / mVideoVisibleHeight;
-        }
-
-        // compute the display aspect ratio
-        double dar = dw / dh;
-
-        switch (mCurrentSize) {
-            case SURFACE_BEST_FIT:
-                if (dar < ar)
-                    dh = dw / ar;
-                else
-                    dw = dh * ar;
-                break;
-            case SURFACE_FIT_HORIZONTAL:
-                dh = dw / ar;
-                break;
-            case SURFACE_FIT_VERTICAL:
-                dw = dh * ar;
-                break;
-            case SURFACE_FILL:
-                break;
-            case SURFACE_16_9:
-                ar = 16.0 / 9.0;
-                if (dar < ar)
-                    dh = dw / ar;
-                else
-                    dw = dh * ar;
-                break;
-            case SURFACE_4_3:
-                ar = 4.0 / 3.0;
-                if (dar < ar)
-                    dh = dw / ar;
-                else
-                    dw = dh * ar;
-                break;
-            case SURFACE_ORIGINAL:
-                dh = mVideoVisibleHeight;
-                dw = vw;
-                break;
+        if (mCapBufferToView)
+            geometry = geometry.withBufferCappedToSurface();
+        // every applied change costs a measure/layout pass, and a new buffer size a reallocation
+        if (geometry.equals(mSurfaceGeometry)) {
+            mMetrics.onLayoutSkipped();
+            return;
         }
-
-        SurfaceView surface;
-        SurfaceHolder surfaceHolder;
-        FrameLayout surfaceFrame;
-
-        surface = mSurface;
-        surfaceHolder = mSurfaceHolder;
-        surfaceFrame = mSurfaceFrame;
+        SurfaceGeometry previous = mSurfaceGeometry;
+        mSurfaceGeometry = geometry;
+        mMetrics.onLayoutPass();
 
         // force surface buffer size
-        surfaceHolder.setFixedSize(mVideoWidth, mVideoHeight);
+        if (!geometry.sameBuffer(previous))
+            mSurfaceHolder.setFixedSize(geometry.bufferWidth, geometry.bufferHeight);
 
         // set display size
-        ViewGroup.LayoutParams lp = surface.getLayoutParams();
-        lp.width = (int) Math.ceil(dw * mVideoWidth / mVideoVisibleWidth);
-        lp.height = (int) Math.ceil(dh * mVideoHeight / mVideoVisibleHeight);
-        surface.setLayoutParams(lp);
+        if (!geometry.sameSurface(previous)) {
+            ViewGroup.LayoutParams lp = mSurface.getLayoutParams();
+            lp.width = geometry.surfaceWidth;
+            lp.height = geometry.surfaceHeight;
+            mSurface.setLayoutParams(lp);
+        }
 
         // set frame size (crop if necessary)
-        lp = surfaceFrame.getLayoutParams();
-        lp.width = (int) Math.floor(dw);
-        lp.height = (int) Math.floor(dh);
-        surfaceFrame.setLayoutParams(lp);
+        if (!geometry.sameFrame(previous)) {
+            ViewGroup.LayoutParams lp = mSurfaceFrame.getLayoutParams();
+            lp.width = geometry.frameWidth;
+            lp.height = geometry.frameHeight;
+            mSurfaceFrame.setLayoutParams(lp);
+        }
 
-        surface.invalidate();
+        mSurface.invalidate();
+    }
+
+    private void applyTextureTransform() {
+        if (mTextureView == null) return;
+        int width = mTextureView.getWidth();
+        int height = mTextureView.getHeight();
+        SurfaceGeometry geometry = SurfaceGeometry.compute(width, height, height >= width,
+                mVideoWidth, mVideoHeight, mVideoVisibleWidth, mVideoVisibleHeight, mSarNum, mSarDen, mCurrentSize);
+        if (geometry == null) return;
+
+        float[] t = mTextureTransform;
+        geometry.textureTransform(width, height, mZoom, mPanX, mPanY, t);
+        mPanX = t[4];
+        mPanY = t[5];
+        mTextureMatrix.setScale(t[0], t[1]);
+        mTextureMatrix.postTranslate(t[2], t[3]);
+        mTextureView.setTransform(mTextureMatrix);
+        mTextureView.invalidate();
     }
 
     @Override
@@ -501,7 +1290,34 @@ public class VLCVideoPlayer extends FrameLayout implements
 
     @Override
     public void onHardwareAccelerationError(IVLCVout vlcVout) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                fallBackFromHardwareDecoding();
+            }
+        });
+    }
 
+    private void fallBackFromHardwareDecoding() {
+        if (mPlayer == null) return;
+        int next = HardwareDecoding.fallback(mHwMode);
+        if (next == HardwareDecoding.NO_FALLBACK) return;
+
+        Media media = mPlayer.getMedia();
+        String signature = media != null ? HardwareDecoding.signature(media) : null;
+        if (media != null)
+            media.release();
+        Log.w(TAG, "Hardware decoding mode " + mHwMode + " failed for " + signature + ", retrying with " + next);
+        if (signature != null) {
+            mHwBlacklist.setSignature(mSourceKey, signature);
+            mHwBlacklist.setCap(signature, next);
+        }
+
+        long time = mPlayer.getTime();
+        if (time > 0)
+            mPlayedTime = time;
+        mHwFallbackCap = next;
+        openSource(true, mPlayedTime);
     }
 
     @Override
@@ -509,48 +1325,120 @@ public class VLCVideoPlayer extends FrameLayout implements
         switch (event.type) {
             case MediaPlayer.Event.MediaChanged:
                 Log.d(TAG, "MediaChanged");
-                mProgressFrame.setVisibility(View.VISIBLE);
+                removeCallbacks(mShowProgressFrame);
+                if (mTransitionStartMs > 0)
+                    postDelayed(mShowProgressFrame, TRANSITION_SPINNER_DELAY_MS);
+                else
+                    mProgressFrame.setVisibility(View.VISIBLE);
                 mSeeker.setProgress(0);
                 mSeeker.setEnabled(false);
                 setControlsEnabled(false);
                 mWasPlayed = false;
+                mDuration = 0;
+                mSeekPipeline.reset();
                 break;
             case MediaPlayer.Event.Opening:
                 Log.d(TAG, "Opening");
                 mWasPlayed = false;
+                // replaying the same media, e.g. when looping, starts a new session too
+                if (!mMetrics.isSessionActive())
+                    mMetrics.startSession(SystemClock.uptimeMillis());
                 break;
             case MediaPlayer.Event.Playing:
                 Log.d(TAG, "Playing");
+                mMetrics.onPlaying(SystemClock.uptimeMillis());
+                updateKeepScreenOn();
+                // latency is back at its target after opening or resuming
+                mDrift.reset();
                 if (!mWasPlayed) {
+                    removeCallbacks(mShowProgressFrame);
                     mProgressFrame.setVisibility(View.INVISIBLE);
-                    mLabelPosition.setText(Util.getDurationString(0, false));
-                    mLabelDuration.setText(Util.getDurationString(mPlayer.getLength(), false));
+                    mDuration = mPlayer.getLength();
+                    rememberDecoderSignature();
+                    setTimeLabel(mLabelPosition, mPositionFormatter, 0, false);
+                    setTimeLabel(mLabelDuration, mDurationFormatter, mDuration, false);
+                    mSeeker.setMax((int) Math.max(0, mDuration));
                     mSeeker.setProgress(0);
-                    mSeeker.setMax((int)mPlayer.getLength());
+                    mProgressScheduler.invalidate();
+                    prefetchNext();
                     setControlsEnabled(true);
                     mWasPlayed = true;
+                    updateSeekerVisibility();
+                    mDispatcher.prepared(mDuration);
                 }
                 break;
+            case MediaPlayer.Event.Paused:
+            case MediaPlayer.Event.Stopped:
+                mMetrics.onPaused(SystemClock.uptimeMillis());
+                updateKeepScreenOn();
+                break;
+            case MediaPlayer.Event.EncounteredError:
+                Log.w(TAG, "EncounteredError");
+                updateKeepScreenOn();
+                mDispatcher.error();
+                break;
+            case MediaPlayer.Event.ESAdded:
+            case MediaPlayer.Event.ESDeleted:
+                mDispatcher.tracksChanged(event.getEsChangedType());
+                if (event.getEsChangedType() != TrackInfo.TYPE_VIDEO) break;
+                // a newly opened media selects its video track by itself
+                if (mAudioOnly && event.type == MediaPlayer.Event.ESAdded)
+                    mPlayer.setVideoTrackEnabled(false);
+                else
+                    selectRendition();
+                break;
             case MediaPlayer.Event.Buffering:
                 float buffering = event.getBuffering();
+                mMetrics.onBuffering(buffering, SystemClock.uptimeMillis());
+                if (mCachingController != null && mCachingFill != null)
+                    mCachingController.onBuffering(mCachingFill, buffering, SystemClock.uptimeMillis());
                 if (mSeeker != null) {
                     if (buffering == 100) mSeeker.setSecondaryProgress(mSeeker.getMax());
                     else mSeeker.setSecondaryProgress(Math.round(mSeeker.getMax() * buffering / 100f));
                 }
+                mDispatcher.buffering(buffering);
+                if (mRenditionSelector != null)
+                    sampleThroughput(buffering);
                 break;
             case MediaPlayer.Event.TimeChanged:
-                long pos = mPlayer.getTime();
-                final long dur = mPlayer.getLength();
-                if (pos > dur) pos = dur;
-                mLabelPosition.setText(Util.getDurationString(pos, false));
-                mLabelDuration.setText(Util.getDurationString(dur - pos, true));
-                mSeeker.setProgress((int)pos);
-                mSeeker.setMax((int)dur);
-                mPlayedTime = pos;
+                mPlayedTime = event.getTimeChanged();
+                if (mResumeStore != null && mSourceKey != null && !mLiveMode)
+                    mResumeStore.put(mSourceKey, mPlayedTime);
+                mSeekPipeline.onTimeChanged(SystemClock.uptimeMillis());
+                mProgressScheduler.onTimeChanged(mPlayedTime);
+                mDispatcher.progress(mPlayedTime, mDuration);
+                if (mLoop) {
+                    long gap = mLoopTracker.onTimeChanged(mPlayedTime, mDuration, SystemClock.uptimeMillis());
+                    if (gap >= 0) {
+                        Log.d(TAG, "Looped after a " + gap + "ms gap");
+                        mMetrics.onLoop(gap);
+                    }
+                }
+                if (mLiveMode && mPlayer.isPlaying())
+                    onLiveTimeChanged(mPlayedTime);
+                break;
+            case MediaPlayer.Event.Vout:
+                if (event.getVoutCount() > 0)
+                    mMetrics.onFirstFrame(SystemClock.uptimeMillis());
+                if (event.getVoutCount() > 0 && mTransitionStartMs > 0) {
+                    long timeToFirstFrame = SystemClock.uptimeMillis() - mTransitionStartMs;
+                    mTransitionStartMs = 0;
+                    Log.d(TAG, "Playlist item " + mPlaylistIndex + " first frame after " + timeToFirstFrame + "ms");
+                    if (mPlaylistTransitionListener != null)
+                        mPlaylistTransitionListener.onPlaylistTransition(this, mPlaylistIndex, timeToFirstFrame);
+                }
                 break;
             case MediaPlayer.Event.EndReached:
                 Log.d(TAG, "EndReached");
+                if (mResumeStore != null && mSourceKey != null)
+                    mResumeStore.remove(mSourceKey);
+                mPlayedTime = 0;
+                endMetricsSession();
+                mDispatcher.completion();
+                if (mPlaylistIndex >= 0 && next())
+                    break;
                 stop();
+                // single sources repeat in place; only live ones, opened without repeating, end here
                 if (mLoop) {
                     play();
                 }
@@ -558,10 +1446,42 @@ public class VLCVideoPlayer extends FrameLayout implements
         }
     }
 
+    private void rememberDecoderSignature() {
+        if (mSourceKey == null) return;
+        Media media = mPlayer.getMedia();
+        if (media == null) return;
+        mHwBlacklist.setSignature(mSourceKey, HardwareDecoding.signature(media));
+        media.release();
+    }
+
+    @Override
+    public void onProgressUpdate(long pos) {
+        if (mSeeker == null || mSeekPipeline.isDragging()) return;
+        long dur = mDuration;
+        if (dur <= 0 && mPlayer != null)
+            dur = mDuration = mPlayer.getLength();
+        if (dur <= 0) {
+            // unbounded, e.g. a live stream: only the position means something
+            setTimeLabel(mLabelPosition, mPositionFormatter, pos, false);
+            return;
+        }
+        if (pos > dur) pos = dur;
+        setTimeLabel(mLabelPosition, mPositionFormatter, pos, false);
+        setTimeLabel(mLabelDuration, mDurationFormatter, dur - pos, true);
+        if (mSeeker.getMax() != (int) dur)
+            mSeeker.setMax((int) dur);
+        mSeeker.setProgress((int) pos);
+    }
+
+    private static void setTimeLabel(TextView label, TimeLabelFormatter formatter, long timeMs, boolean negativePrefix) {
+        if (formatter.update(timeMs, negativePrefix))
+            label.setText(formatter.buffer(), 0, formatter.length());
+    }
+
     @Override
     public void onClick(View view) {
         if (view.getId() == R.id.btnPlayPause) {
-            if (mPlayer.isPlaying()) {
+            if (isPlaying()) {
                 pause();
             } else {
                 play();
@@ -571,42 +1491,364 @@ public class VLCVideoPlayer extends FrameLayout implements
 
     @Override
     public void onProgressChanged(SeekBar seekBar, int value, boolean fromUser) {
-        if (fromUser) seekTo(value);
+        if (!fromUser || mPlayer == null) return;
+        if (mSeekPipeline.isDragging()) {
+            setTimeLabel(mLabelPosition, mPositionFormatter, value, false);
+            setTimeLabel(mLabelDuration, mDurationFormatter, seekBar.getMax() - value, true);
+            mSeekPipeline.dragTo(value, SystemClock.uptimeMillis());
+            requestSeekPreview(value);
+        } else {
+            seekTo(value);
+        }
     }
 
     @Override
     public void onStartTrackingTouch(SeekBar seekBar) {
+        mSeekPipeline.startDrag();
     }
 
     @Override
     public void onStopTrackingTouch(SeekBar seekBar) {
+        hideSeekPreview();
+        if (mPlayer == null) {
+            mSeekPipeline.reset();
+            return;
+        }
+        mSeekPipeline.stopDrag(seekBar.getProgress(), SystemClock.uptimeMillis());
     }
 
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
+        bindPlayer();
+        if (mGrid != null)
+            mGrid.onAttached(this);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mProgressScheduler.cancel();
+        removeCallbacks(mShowProgressFrame);
+        hideSeekPreview();
+        release();
+        setKeepScreenOn(false);
+        if (mGrid != null)
+            mGrid.onDetached(this);
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateKeepScreenOn();
+        if (mGrid != null)
+            mGrid.requestUpdate();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateKeepScreenOn();
+        if (mGrid != null)
+            mGrid.requestUpdate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        selectRendition();
+        if (mGrid != null)
+            mGrid.requestUpdate();
+    }
+
+    /**
+     * Plays the source as a live stream: low caching without clock jitter absorption, no
+     * seek bar, and a slightly raised playback rate whenever the latency drifts above
+     * {@link #setLiveLatencyTarget(int)}. Applies from the next time a source is opened.
+     */
+    public void setLiveMode(boolean live) {
+        mLiveMode = live;
+        updateSeekerVisibility();
+    }
+
+    public boolean isLiveMode() {
+        return mLiveMode;
+    }
+
+    /**
+     * Caching, and so the latency aimed for, in live mode. Defaults to {@value #DEFAULT_LIVE_LATENCY_MS} ms.
+     */
+    public void setLiveLatencyTarget(@IntRange(from = 0) int latencyMs) {
+        mLiveLatencyMs = latencyMs;
+    }
+
+    /**
+     * Latency accumulated on top of the target in live mode, in milliseconds.
+     */
+    public long getLiveDriftMs() {
+        return mDrift.getDriftMs();
+    }
+
+    private void onLiveTimeChanged(long timeMs) {
+        float rate = mDrift.onTimeChanged(timeMs, SystemClock.uptimeMillis());
+        if (mDrift.needsResync()) {
+            Log.w(TAG, "Live latency drifted by " + mDrift.getDriftMs() + "ms, reopening at the live edge");
+            openSource(true, 0);
+            return;
+        }
+        // compared against the last rate set rather than asking the player on every update
+        if (rate != mLiveRate) {
+            mPlayer.setRate(rate);
+            mLiveRate = rate;
+        }
+    }
+
+    /**
+     * Hides the seek bar and remaining time when there is nothing to seek in.
+     */
+    private void updateSeekerVisibility() {
+        if (mSeeker == null) return;
+        int visibility = mLiveMode || (mWasPlayed && mDuration <= 0) ? View.GONE : View.VISIBLE;
+        mSeeker.setVisibility(visibility);
+        mLabelDuration.setVisibility(visibility);
+    }
+
+    /**
+     * Tracks of {@code type}, one of the {@code TrackInfo.TYPE_*} constants, of the playing
+     * media. Empty until the media is playing.
+     */
+    public List<TrackInfo> getTracks(int type) {
+        if (mPlayer == null) return Collections.emptyList();
+        MediaPlayer.TrackDescription[] descriptions;
+        int selected;
+        switch (type) {
+            case TrackInfo.TYPE_AUDIO:
+                descriptions = mPlayer.getAudioTracks();
+                selected = mPlayer.getAudioTrack();
+                break;
+            case TrackInfo.TYPE_VIDEO:
+                descriptions = mPlayer.getVideoTracks();
+                selected = mPlayer.getVideoTrack();
+                break;
+            case TrackInfo.TYPE_TEXT:
+                descriptions = mPlayer.getSpuTracks();
+                selected = mPlayer.getSpuTrack();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown track type " + type);
+        }
+        if (descriptions == null) return Collections.emptyList();
+
+        Media media = mPlayer.getMedia();
+        List<TrackInfo> tracks = new ArrayList<>(descriptions.length);
+        for (MediaPlayer.TrackDescription description : descriptions) {
+            // libvlc lists a "Disable" entry with id -1
+            if (description.id < 0) continue;
+            Media.Track track = media != null ? findTrack(media, description.id) : null;
+            int width = 0;
+            int height = 0;
+            if (track instanceof Media.VideoTrack) {
+                width = ((Media.VideoTrack) track).width;
+                height = ((Media.VideoTrack) track).height;
+            }
+            tracks.add(new TrackInfo(type, description.id, description.name,
+                    track != null ? track.language : null, track != null ? track.codec : null,
+                    width, height, track != null ? track.bitrate : 0, description.id == selected));
+        }
+        if (media != null)
+            media.release();
+        return tracks;
+    }
+
+    private static Media.Track findTrack(Media media, int id) {
+        for (int i = 0, count = media.getTrackCount(); i < count; i++) {
+            Media.Track track = media.getTrack(i);
+            if (track != null && track.id == id)
+                return track;
+        }
+        return null;
+    }
+
+    /**
+     * Switches to the track with {@code id} from {@link #getTracks(int)}, or turns tracks of
+     * {@code type} off with -1. Returns false if libvlc refused.
+     */
+    public boolean selectTrack(int type, int id) {
+        if (mPlayer == null) return false;
+        switch (type) {
+            case TrackInfo.TYPE_AUDIO:
+                return mPlayer.setAudioTrack(id);
+            case TrackInfo.TYPE_VIDEO:
+                return mPlayer.setVideoTrack(id);
+            case TrackInfo.TYPE_TEXT:
+                return mPlayer.setSpuTrack(id);
+            default:
+                throw new IllegalArgumentException("Unknown track type " + type);
+        }
+    }
+
+    /**
+     * Lets {@code selector} pick the video rendition from the measured throughput and the
+     * size of this view. Pass null to play whatever libvlc picks.
+     */
+    public void setRenditionSelector(RenditionSelector selector) {
+        mRenditionSelector = selector;
+        selectRendition();
+    }
+
+    public RenditionSelector getRenditionSelector() {
+        return mRenditionSelector;
+    }
+
+    private void selectRendition() {
+        if (mRenditionSelector == null || mPlayer == null || mPlayer.getVideoTracksCount() < 2) return;
+        List<TrackInfo> tracks = getTracks(TrackInfo.TYPE_VIDEO);
+        int id = mRenditionSelector.select(tracks, getWidth(), getHeight());
+        if (id < 0) return;
+        for (TrackInfo track : tracks) {
+            if (track.getId() == id && !track.isSelected()) {
+                Log.d(TAG, "Switching to rendition " + track);
+                mPlayer.setVideoTrack(id);
+            }
+        }
+    }
+
+    private void sampleThroughput(float buffering) {
+        if (buffering >= 100f) {
+            mRenditionSelector.onBufferingDone();
+            return;
+        }
+        Media media = mPlayer.getMedia();
+        if (media == null) return;
+        Media.Stats stats = media.getStats();
+        media.release();
+        if (stats != null)
+            mRenditionSelector.onBufferingSample(stats.readBytes, SystemClock.uptimeMillis());
+    }
+
+    /**
+     * Plays audio only: the video track is deselected, so nothing is decoded, and the video
+     * output is detached from the views. Use it while the app is in the background; the view
+     * must stay attached to its window, and long background playback needs a foreground
+     * service as usual. Turning it off reattaches the output and seeks to the current
+     * position so the picture resumes in sync.
+     */
+    public void setAudioOnly(boolean audioOnly) {
+        if (audioOnly == mAudioOnly) return;
+        mAudioOnly = audioOnly;
+        updateKeepScreenOn();
+        if (mPlayer == null) return;
 
         IVLCVout vlcOut = mPlayer.getVLCVout();
+        if (audioOnly) {
+            mPlayer.setVideoTrackEnabled(false);
+            vlcOut.removeCallback(this);
+            if (vlcOut.areViewsAttached())
+                vlcOut.detachViews();
+            return;
+        }
+
         if (!vlcOut.areViewsAttached()) {
             vlcOut.addCallback(this);
-            vlcOut.setVideoView(mSurface);
-            vlcOut.attachViews();
+            attachVideoOutput(vlcOut);
+        }
+        mPlayer.setVideoTrackEnabled(true);
+        // restart decoding at the current position rather than at the next keyframe
+        long time = mPlayer.getTime();
+        if (time > 0 && mPlayer.isSeekable()) {
+            mMetrics.onSeek();
+            mLoopTracker.onSeek(SystemClock.uptimeMillis());
+            mCommands.execute(PlayerCommandExecutor.seekTime(mPlayer, time));
         }
     }
 
-    @Override
-    protected void onDetachedFromWindow() {
-        super.onDetachedFromWindow();
-        release();
+    public boolean isAudioOnly() {
+        return mAudioOnly;
+    }
+
+    /**
+     * Keeps the screen on only while this view is showing and playing.
+     */
+    private void updateKeepScreenOn() {
+        setKeepScreenOn(mPlayer != null && !mAudioOnly && mPlayer.isPlaying()
+                && getWindowVisibility() == View.VISIBLE && isShown());
+    }
+
+    /**
+     * Whether every frame or only keyframes are decoded, one of the {@code DECODE_*} constants.
+     * Changing it while a source is open reopens it at the current position.
+     */
+    public void setDecodeMode(@DecodeMode int mode) {
+        if (mode == mDecodeMode) return;
+        mDecodeMode = mode;
+        if (mPlayer == null || mSource == null) return;
 
-        mSeeker = null;
-        mLabelPosition = null;
-        mLabelDuration = null;
-        mBtnPlayPause = null;
+        reopenAtCurrentTime(mPlayer.isPlaying() || mPlayWhenAttached);
+    }
+
+    /**
+     * Like {@link #setDecodeMode(int)}, but only applied the next time the source is opened or
+     * the grid resumes this view, so the current media keeps playing undisturbed.
+     */
+    void setDecodeModeOnResume(@DecodeMode int mode) {
+        mDecodeMode = mode;
+    }
+
+    private void reopenAtCurrentTime(boolean play) {
+        long time = mPlayer.getTime();
+        if (time > 0)
+            mPlayedTime = time;
+        openSource(play, mPlayedTime);
+    }
 
-        mControlsFrame = null;
-        mClickFrame = null;
-        mProgressFrame = null;
+    @DecodeMode
+    public int getDecodeMode() {
+        return mDecodeMode;
+    }
+
+    /**
+     * Set by {@link PlayerGridCoordinator#add(VLCVideoPlayer)}.
+     */
+    void setGridCoordinator(PlayerGridCoordinator grid) {
+        mGrid = grid;
+    }
+
+    /**
+     * Pauses for the grid coordinator, remembering whether playback should resume. A kept
+     * player is parked in the pool, so it does not count towards the decoder cap.
+     */
+    void suspendForGrid(boolean releasePlayer) {
+        boolean playing = isPlaying() || mPlayWhenAttached || mResumeAfterGrid;
+        mGridParked = true;
+        if (mPlayer != null) {
+            mCommands.execute(PlayerCommandExecutor.pause(mPlayer));
+            VLCPlayerPool.setDecoding(mPlayer, false);
+        }
+        if (mBtnPlayPause != null)
+            mBtnPlayPause.setImageDrawable(mPlayDrawable);
+        if (releasePlayer && mPlayer != null) {
+            MediaPlayer player = mPlayer;
+            unbindPlayer(player);
+            VLCPlayerPool.recycle(player);
+        }
+        mPlayWhenAttached = false;
+        mResumeAfterGrid = playing;
+    }
+
+    /**
+     * Undoes {@link #suspendForGrid(boolean)}, re-acquiring a player if it was released.
+     */
+    void resumeForGrid() {
+        mGridParked = false;
+        if (mPlayer != null)
+            VLCPlayerPool.setDecoding(mPlayer, true);
+        bindPlayer();
+        // a kept player still has its media from before; a re-acquired one was opened just now
+        if (mPlayer != null && mSource != null && mOpenedDecodeMode != mDecodeMode)
+            reopenAtCurrentTime(false);
+        if (!mResumeAfterGrid) return;
+        mResumeAfterGrid = false;
+        play();
     }
 
     @Override
@@ -1,45 +1,129 @@
 package com.insthync.vlc_videoplayer.library;
 
+import android.graphics.ImageFormat;
+import android.graphics.PixelFormat;
 import android.util.Log;
 
 import org.videolan.libvlc.BuildConfig;
-import org.videolan.libvlc.util.VLCUtil;
+import org.videolan.libvlc.Media;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Created by pedro on 25/06/17.
+ * <p>
+ * Immutable set of LibVLC options. Use {@link Builder} to tune it; {@link #equals(Object)}
+ * and {@link #hashCode()} are stable so instances can key engine caches.
  */
 public class VlcOptions {
 
-    private final String TAG = "VlcOptions";
+    private static final String TAG = "VlcOptions";
+
+    private static final int MAX_CACHING_MS = 60000;
+
+    /** Leave the choice to libvlc. */
+    public static final int HW_DECODING_AUTOMATIC = -1;
+    /** Software decoding only. */
+    public static final int HW_DECODING_DISABLED = 0;
+    /** MediaCodec decoding, frames copied back for software rendering. */
+    public static final int HW_DECODING_DECODING = 1;
+    /** MediaCodec decoding with direct rendering. */
+    public static final int HW_DECODING_FULL = 2;
+
+    public static final String CHROMA_RGB32 = "RV32";
+    public static final String CHROMA_RGB16 = "RV16";
+    public static final String CHROMA_YV12 = "YV12";
+
+    public static final String RESAMPLER_SOXR = "soxr";
+    public static final String RESAMPLER_UGLY = "ugly";
+
+    private final int deblocking;
+    private final boolean enableFrameSkip;
+    private final boolean enableTimeStretchingAudio;
+    private final int networkCaching;
+    private final int fileCaching;
+    private final int liveCaching;
+    private final int hardwareDecoding;
+    private final int threads;
+    private final String chroma;
+    private final String resampler;
+    private final boolean verboseMode;
+    private final List<String> extraArgs;
+
+    public VlcOptions() {
+        this(new Builder());
+    }
+
+    private VlcOptions(Builder builder) {
+        deblocking = builder.deblocking;
+        enableFrameSkip = builder.enableFrameSkip;
+        enableTimeStretchingAudio = builder.enableTimeStretchingAudio;
+        networkCaching = builder.networkCaching;
+        fileCaching = builder.fileCaching;
+        liveCaching = builder.liveCaching;
+        hardwareDecoding = builder.hardwareDecoding;
+        threads = builder.threads;
+        chroma = builder.chroma;
+        resampler = builder.resampler;
+        verboseMode = builder.verboseMode;
+        extraArgs = Collections.unmodifiableList(new ArrayList<>(builder.extraArgs));
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
 
-    private int deblocking = -1;
-    private boolean enableFrameSkip = false;
-    private boolean enableTimeStretchingAudio = false;
-    private int networkCaching = 0;
-    private boolean verboseMode = BuildConfig.DEBUG;
-    private List<String> extraArgs = null;
+    /**
+     * A builder pre-filled with these options, to derive a tweaked copy.
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
 
+    /**
+     * LibVLC arguments for the running device.
+     */
     public ArrayList<String> get() {
-        ArrayList<String> options = new ArrayList<>(16);
+        return get(DeviceSpecs.current());
+    }
+
+    ArrayList<String> get(DeviceSpecs specs) {
+        ArrayList<String> options = new ArrayList<>(24);
 
         options.add(enableTimeStretchingAudio ? "--audio-time-stretch" : "--no-audio-time-stretch");
         options.add("--avcodec-skiploopfilter");
-        options.add(String.valueOf(getDeblocking(deblocking)));
+        options.add(String.valueOf(getDeblocking(deblocking, specs)));
         options.add("--avcodec-skip-frame");
         options.add(enableFrameSkip ? "2" : "0");
         options.add("--avcodec-skip-idct");
         options.add(enableFrameSkip ? "2" : "0");
         options.add("--audio-resampler");
-        options.add(getResampler());
+        options.add(resampler != null ? resampler : getResampler(specs));
+
+        if (threads > 0) {
+            options.add("--avcodec-threads=" + threads);
+        }
+
+        if (chroma != null) {
+            options.add("--android-display-chroma");
+            options.add(chroma);
+        }
 
         if (networkCaching > 0) {
-            options.add("--network-caching=" + Math.min(60000, networkCaching));
+            options.add("--network-caching=" + Math.min(MAX_CACHING_MS, networkCaching));
+        }
+        if (fileCaching > 0) {
+            options.add("--file-caching=" + Math.min(MAX_CACHING_MS, fileCaching));
+        }
+        if (liveCaching > 0) {
+            options.add("--live-caching=" + Math.min(MAX_CACHING_MS, liveCaching));
         }
 
         final List<String> extra = extraArgs;
-        if (extra != null) {
+        if (!extra.isEmpty()) {
             options.addAll(extra);
         }
 
@@ -47,10 +131,127 @@ public class VlcOptions {
         return options;
     }
 
+    /**
+     * Applies the per-media part of these options (hardware decoding) to {@code media}.
+     */
+    public void applyTo(Media media) {
+        applyHardwareDecoding(media, hardwareDecoding);
+    }
+
+    static void applyHardwareDecoding(Media media, int hardwareDecoding) {
+        switch (hardwareDecoding) {
+            case HW_DECODING_DISABLED:
+                media.setHWDecoderEnabled(false, false);
+                break;
+            case HW_DECODING_DECODING:
+                media.setHWDecoderEnabled(true, true);
+                media.addOption(":no-mediacodec-dr");
+                media.addOption(":no-omxil-dr");
+                break;
+            case HW_DECODING_FULL:
+                media.setHWDecoderEnabled(true, true);
+                break;
+        }
+    }
+
+    /**
+     * Makes {@code media} decode keyframes only, which libavcodec can skip cheaply and
+     * MediaCodec cannot, so hardware decoding is turned off for it.
+     */
+    static void applyKeyframesOnly(Media media) {
+        media.setHWDecoderEnabled(false, false);
+        // skip B and P frames
+        media.addOption(":avcodec-skip-frame=3");
+    }
+
+    /**
+     * Opens {@code media} with {@code cachingMs} of caching whatever its access, and lets the
+     * clock follow the source without absorbing jitter, trading smoothness for latency.
+     */
+    static void applyLowLatency(Media media, int cachingMs) {
+        media.addOption(":network-caching=" + cachingMs);
+        media.addOption(":live-caching=" + cachingMs);
+        media.addOption(":clock-jitter=0");
+        media.addOption(":clock-synchro=0");
+    }
+
+    /**
+     * Makes libvlc restart {@code media} in place when it ends, keeping the decoders and
+     * output alive, up to the highest repeat count it accepts.
+     */
+    static void applyRepeat(Media media) {
+        media.addOption(":input-repeat=65535");
+    }
+
+    public int getNetworkCaching() {
+        return networkCaching;
+    }
+
+    public int getFileCaching() {
+        return fileCaching;
+    }
+
+    public int getLiveCaching() {
+        return liveCaching;
+    }
+
+    public int getHardwareDecoding() {
+        return hardwareDecoding;
+    }
+
+    public boolean isFrameSkipEnabled() {
+        return enableFrameSkip;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public String getChroma() {
+        return chroma;
+    }
+
+    /**
+     * Surface pixel format matching the output chroma, so frames are not converted again
+     * on their way to the display. RGB16 and YV12 take half the memory and bandwidth of RGB32.
+     */
+    public int getPixelFormat() {
+        if (CHROMA_RGB16.equals(chroma)) return PixelFormat.RGB_565;
+        if (CHROMA_YV12.equals(chroma)) return ImageFormat.YV12;
+        return PixelFormat.RGBX_8888;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        VlcOptions other = (VlcOptions) o;
+        return deblocking == other.deblocking
+                && enableFrameSkip == other.enableFrameSkip
+                && enableTimeStretchingAudio == other.enableTimeStretchingAudio
+                && networkCaching == other.networkCaching
+                && fileCaching == other.fileCaching
+                && liveCaching == other.liveCaching
+                && hardwareDecoding == other.hardwareDecoding
+                && threads == other.threads
+                && verboseMode == other.verboseMode
+                && (chroma == null ? other.chroma == null : chroma.equals(other.chroma))
+                && (resampler == null ? other.resampler == null : resampler.equals(other.resampler))
+                && extraArgs.equals(other.extraArgs);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(new Object[] {
+                deblocking, enableFrameSkip, enableTimeStretchingAudio, networkCaching, fileCaching,
+                liveCaching, hardwareDecoding, threads, chroma, resampler, verboseMode, extraArgs
+        });
+    }
+
     /*
      The below functions are borrowed from the official VLC app:
      */
-    private int getDeblocking(int deblocking) {
+    private int getDeblocking(int deblocking, DeviceSpecs m) {
         int ret = deblocking;
         if (deblocking < 0) {
             /*
@@ -60,7 +261,6 @@ public class VlcOptions {
               Skip non-ref (1) for all armv7 more than 1.2 Ghz and more than 2 cores
               Skip non-key (3) for all devices that don't meet anything above
              */
-            VLCUtil.MachineSpecs m = VLCUtil.getMachineSpecs();
             if (m == null) {
                 return ret;
             }
@@ -80,9 +280,132 @@ public class VlcOptions {
         return ret;
     }
 
-    private String getResampler() {
-        final VLCUtil.MachineSpecs m = VLCUtil.getMachineSpecs();
-        return (m == null || m.processors > 2) ? "soxr" : "ugly";
+    private String getResampler(DeviceSpecs m) {
+        return (m == null || m.processors > 2) ? RESAMPLER_SOXR : RESAMPLER_UGLY;
     }
-}
 
+    public static class Builder {
+
+        private int deblocking = -1;
+        private boolean enableFrameSkip = false;
+        private boolean enableTimeStretchingAudio = false;
+        private int networkCaching = 0;
+        private int fileCaching = 0;
+        private int liveCaching = 0;
+        private int hardwareDecoding = HW_DECODING_AUTOMATIC;
+        private int threads = 0;
+        private String chroma = null;
+        private String resampler = null;
+        private boolean verboseMode = BuildConfig.DEBUG;
+        private final List<String> extraArgs = new ArrayList<>();
+
+        public Builder() {
+        }
+
+        private Builder(VlcOptions options) {
+            deblocking = options.deblocking;
+            enableFrameSkip = options.enableFrameSkip;
+            enableTimeStretchingAudio = options.enableTimeStretchingAudio;
+            networkCaching = options.networkCaching;
+            fileCaching = options.fileCaching;
+            liveCaching = options.liveCaching;
+            hardwareDecoding = options.hardwareDecoding;
+            threads = options.threads;
+            chroma = options.chroma;
+            resampler = options.resampler;
+            verboseMode = options.verboseMode;
+            extraArgs.addAll(options.extraArgs);
+        }
+
+        /**
+         * Loop filter skipping, 0 (none) to 4 (all); -1 picks a value from the device specs.
+         */
+        public Builder setDeblocking(int deblocking) {
+            this.deblocking = deblocking;
+            return this;
+        }
+
+        public Builder setFrameSkipEnabled(boolean enabled) {
+            this.enableFrameSkip = enabled;
+            return this;
+        }
+
+        public Builder setTimeStretchingAudioEnabled(boolean enabled) {
+            this.enableTimeStretchingAudio = enabled;
+            return this;
+        }
+
+        /**
+         * Network caching in milliseconds, 0 for the libvlc default. Capped to 60000.
+         */
+        public Builder setNetworkCaching(int cachingMs) {
+            this.networkCaching = cachingMs;
+            return this;
+        }
+
+        /**
+         * File caching in milliseconds, 0 for the libvlc default. Capped to 60000.
+         */
+        public Builder setFileCaching(int cachingMs) {
+            this.fileCaching = cachingMs;
+            return this;
+        }
+
+        /**
+         * Live capture caching in milliseconds, 0 for the libvlc default. Capped to 60000.
+         */
+        public Builder setLiveCaching(int cachingMs) {
+            this.liveCaching = cachingMs;
+            return this;
+        }
+
+        /**
+         * One of the {@code HW_DECODING_*} constants.
+         */
+        public Builder setHardwareDecoding(int mode) {
+            this.hardwareDecoding = mode;
+            return this;
+        }
+
+        /**
+         * Decoder threads, 0 to let avcodec decide.
+         */
+        public Builder setThreads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Output chroma, one of the {@code CHROMA_*} constants, or null for the libvlc default.
+         */
+        public Builder setChroma(String chroma) {
+            this.chroma = chroma;
+            return this;
+        }
+
+        /**
+         * Audio resampler module, or null to pick one from the device specs.
+         */
+        public Builder setResampler(String resampler) {
+            this.resampler = resampler;
+            return this;
+        }
+
+        public Builder setVerboseMode(boolean verbose) {
+            this.verboseMode = verbose;
+            return this;
+        }
+
+        /**
+         * Raw LibVLC arguments appended after the generated ones.
+         */
+        public Builder addExtraArgs(String... args) {
+            this.extraArgs.addAll(Arrays.asList(args));
+            return this;
+        }
+
+        public VlcOptions build() {
+            return new VlcOptions(this);
+        }
+    }
+}
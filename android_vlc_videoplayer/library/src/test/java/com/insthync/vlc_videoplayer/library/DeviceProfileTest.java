@@ -0,0 +1,92 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+public class DeviceProfileTest {
+
+    private static String fixture(String name) throws IOException {
+        InputStream in = DeviceProfileTest.class.getResourceAsStream("/cpuinfo/" + name);
+        assertNotNull("missing fixture " + name, in);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void parsesArmV6SingleCore() throws Exception {
+        DeviceSpecs specs = DeviceSpecs.parse(fixture("armv6_single.txt"), null, fixture("meminfo_768mb.txt"));
+        assertEquals(1, specs.processors);
+        assertTrue(specs.hasArmV6);
+        assertFalse(specs.hasArmV7);
+        assertEquals(527.15f, specs.bogoMIPS, 0.01f);
+        assertEquals(768, specs.totalRamMb);
+        assertEquals(DeviceProfile.TIER_LOW, DeviceProfile.classify(specs));
+    }
+
+    @Test
+    public void parsesOldArmV7DualCoreWithoutCountingModelLine() throws Exception {
+        DeviceSpecs specs = DeviceSpecs.parse(fixture("armv7_dual.txt"), "1200000", fixture("meminfo_2gb.txt"));
+        assertEquals(2, specs.processors);
+        assertTrue(specs.hasArmV7);
+        assertEquals(1200f, specs.frequency, 0.01f);
+        assertEquals(DeviceProfile.TIER_LOW, DeviceProfile.classify(specs));
+    }
+
+    @Test
+    public void classifiesQuadCoreAsMid() throws Exception {
+        DeviceSpecs specs = DeviceSpecs.parse(fixture("armv7_quad.txt"), "1300000\n", fixture("meminfo_2gb.txt"));
+        assertEquals(4, specs.processors);
+        assertEquals(1838, specs.totalRamMb);
+        assertEquals(DeviceProfile.TIER_MID, DeviceProfile.classify(specs));
+
+        // a slow clock drops it to the low tier
+        DeviceSpecs slow = DeviceSpecs.parse(fixture("armv7_quad.txt"), "1000000", fixture("meminfo_2gb.txt"));
+        assertEquals(DeviceProfile.TIER_LOW, DeviceProfile.classify(slow));
+    }
+
+    @Test
+    public void classifiesOctaCoreWithRamAsHigh() throws Exception {
+        DeviceSpecs specs = DeviceSpecs.parse(fixture("arm64_octa.txt"), "2803200", fixture("meminfo_6gb.txt"));
+        assertEquals(8, specs.processors);
+        assertTrue(specs.hasArmV7);
+        assertFalse(specs.hasMips);
+        assertEquals(DeviceProfile.TIER_HIGH, DeviceProfile.classify(specs));
+
+        DeviceSpecs lowRam = DeviceSpecs.parse(fixture("arm64_octa.txt"), "2803200", fixture("meminfo_768mb.txt"));
+        assertEquals(DeviceProfile.TIER_LOW, DeviceProfile.classify(lowRam));
+    }
+
+    @Test
+    public void unknownSpecsAreMid() throws Exception {
+        assertEquals(DeviceProfile.TIER_MID, DeviceProfile.classify(null));
+    }
+
+    @Test
+    public void presetsCanBeOverridden() throws Exception {
+        VlcOptions low = DeviceProfile.newBuilder(DeviceProfile.TIER_LOW).build();
+        assertTrue(low.isFrameSkipEnabled());
+        assertEquals(VlcOptions.CHROMA_RGB16, low.getChroma());
+
+        VlcOptions tuned = DeviceProfile.newBuilder(DeviceProfile.TIER_LOW)
+                .setChroma(VlcOptions.CHROMA_RGB32)
+                .setNetworkCaching(5000)
+                .build();
+        assertEquals(VlcOptions.CHROMA_RGB32, tuned.getChroma());
+        assertEquals(5000, tuned.getNetworkCaching());
+        assertTrue(tuned.isFrameSkipEnabled());
+        assertNotEquals(low, tuned);
+    }
+}
@@ -0,0 +1,39 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HardwareDecodingTest {
+
+    @Test
+    public void fallsBackFromFullToDecodingToSoftware() throws Exception {
+        assertEquals(VlcOptions.HW_DECODING_DECODING, HardwareDecoding.fallback(VlcOptions.HW_DECODING_AUTOMATIC));
+        assertEquals(VlcOptions.HW_DECODING_DECODING, HardwareDecoding.fallback(VlcOptions.HW_DECODING_FULL));
+        assertEquals(VlcOptions.HW_DECODING_DISABLED, HardwareDecoding.fallback(VlcOptions.HW_DECODING_DECODING));
+        assertEquals(HardwareDecoding.NO_FALLBACK, HardwareDecoding.fallback(VlcOptions.HW_DECODING_DISABLED));
+    }
+
+    @Test
+    public void capOnlyLowersTheRequestedMode() throws Exception {
+        int auto = VlcOptions.HW_DECODING_AUTOMATIC;
+        assertEquals(VlcOptions.HW_DECODING_FULL, HardwareDecoding.resolve(VlcOptions.HW_DECODING_FULL, auto));
+        assertEquals(auto, HardwareDecoding.resolve(auto, auto));
+        assertEquals(VlcOptions.HW_DECODING_DECODING,
+                HardwareDecoding.resolve(auto, VlcOptions.HW_DECODING_DECODING));
+        assertEquals(VlcOptions.HW_DECODING_DECODING,
+                HardwareDecoding.resolve(VlcOptions.HW_DECODING_FULL, VlcOptions.HW_DECODING_DECODING));
+        assertEquals(VlcOptions.HW_DECODING_DISABLED,
+                HardwareDecoding.resolve(VlcOptions.HW_DECODING_DISABLED, VlcOptions.HW_DECODING_DECODING));
+    }
+
+    @Test
+    public void signatureGroupsSimilarResolutions() throws Exception {
+        assertEquals("h264@1080", HardwareDecoding.signature("H264 ", 1920, 1080));
+        assertEquals("h264@1080", HardwareDecoding.signature("h264", 1080, 1920));
+        assertEquals("h264@1080", HardwareDecoding.signature("h264", 1440, 1000));
+        assertEquals("hevc@2160", HardwareDecoding.signature("hevc", 3840, 2160));
+        assertEquals("vp90@360", HardwareDecoding.signature("vp90", 320, 180));
+        assertEquals("mp4v@4320", HardwareDecoding.signature("mp4v", 10000, 8000));
+    }
+}
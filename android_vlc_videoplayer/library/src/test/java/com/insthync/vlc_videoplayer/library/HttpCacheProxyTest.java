@@ -0,0 +1,318 @@
+package com.insthync.vlc_videoplayer.library;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the proxy against a local HTTP stand-in origin that supports range requests.
+ */
+public class HttpCacheProxyTest {
+
+    private static final int CLIP_SIZE = 5 * CacheFile.CHUNK_SIZE + 1234;
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private final byte[] mClip = new byte[CLIP_SIZE];
+    private final AtomicInteger mOriginHits = new AtomicInteger();
+    private volatile String mClipTag = "\"v1\"";
+    private HttpServer mOrigin;
+    private String mClipUrl;
+    private File mCacheDir;
+    private HttpCacheProxy mProxy;
+
+    @Before
+    public void setUp() throws Exception {
+        new Random(42).nextBytes(mClip);
+        mOrigin = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mOrigin.createContext("/clip.mp4", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mOriginHits.incrementAndGet();
+                int start = 0;
+                int end = CLIP_SIZE - 1;
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                exchange.getResponseHeaders().set("Content-Type", "video/mp4");
+                exchange.getResponseHeaders().set("ETag", mClipTag);
+                if (range != null) {
+                    Matcher m = RANGE.matcher(range);
+                    assertTrue(m.matches());
+                    start = Integer.parseInt(m.group(1));
+                    if (!m.group(2).isEmpty()) end = Math.min(end, Integer.parseInt(m.group(2)));
+                    exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + CLIP_SIZE);
+                    exchange.sendResponseHeaders(206, end - start + 1);
+                } else {
+                    exchange.sendResponseHeaders(200, CLIP_SIZE);
+                }
+                OutputStream out = exchange.getResponseBody();
+                try {
+                    out.write(mClip, start, end - start + 1);
+                } catch (IOException ignored) {
+                    // client went away
+                }
+                exchange.close();
+            }
+        });
+        // no Content-Length and no range support, as from a live source
+        mOrigin.createContext("/live.ts", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mOriginHits.incrementAndGet();
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream out = exchange.getResponseBody();
+                try {
+                    out.write(mClip);
+                } catch (IOException ignored) {
+                    // client went away
+                }
+                exchange.close();
+            }
+        });
+        mOrigin.start();
+        mClipUrl = "http://127.0.0.1:" + mOrigin.getAddress().getPort() + "/clip.mp4";
+
+        mCacheDir = File.createTempFile("proxy", "cache");
+        assertTrue(mCacheDir.delete());
+        mProxy = new HttpCacheProxy(mCacheDir, 64L * 1024 * 1024);
+        mProxy.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProxy.shutdown();
+        mOrigin.stop(0);
+        File[] files = mCacheDir.listFiles();
+        if (files != null)
+            for (File file : files) assertTrue(file.delete());
+        assertTrue(mCacheDir.delete());
+    }
+
+    @Test
+    public void secondFullReadCostsNoNetwork() throws Exception {
+        assertArrayEquals(mClip, get(mClipUrl, null));
+        int hits = mOriginHits.get();
+        long originBytes = mProxy.getOriginBytes();
+
+        assertArrayEquals(mClip, get(mClipUrl, null));
+        assertEquals(hits, mOriginHits.get());
+        assertEquals(originBytes, mProxy.getOriginBytes());
+        assertEquals(CLIP_SIZE, mProxy.getCacheHitBytes());
+    }
+
+    @Test
+    public void servesRangesAndOnlyFetchesMissingChunks() throws Exception {
+        int start = CacheFile.CHUNK_SIZE * 2 + 100;
+        int end = CacheFile.CHUNK_SIZE * 3 + 50;
+        assertArrayEquals(Arrays.copyOfRange(mClip, start, end + 1), get(mClipUrl, "bytes=" + start + "-" + end));
+        // the range is widened to whole chunks [2, 3], which finish downloading after the response
+        awaitCacheSize(2L * CacheFile.CHUNK_SIZE);
+        assertEquals(2L * CacheFile.CHUNK_SIZE, mProxy.getOriginBytes());
+
+        assertArrayEquals(mClip, get(mClipUrl, null));
+        assertEquals(CLIP_SIZE, mProxy.getOriginBytes());
+
+        byte[] tail = get(mClipUrl, "bytes=" + (CLIP_SIZE - 10) + "-");
+        assertArrayEquals(Arrays.copyOfRange(mClip, CLIP_SIZE - 10, CLIP_SIZE), tail);
+        assertEquals(CLIP_SIZE, mProxy.getOriginBytes());
+    }
+
+    @Test
+    public void cacheSurvivesProxyRestart() throws Exception {
+        assertArrayEquals(mClip, get(mClipUrl, null));
+        mProxy.shutdown();
+
+        mProxy = new HttpCacheProxy(mCacheDir, 64L * 1024 * 1024);
+        mProxy.start();
+        int hits = mOriginHits.get();
+        assertArrayEquals(mClip, get(mClipUrl, null));
+        // one single-byte request to check the ETag, the body comes from disk
+        assertEquals(hits + 1, mOriginHits.get());
+        assertEquals(0, mProxy.getOriginBytes());
+        assertEquals(CLIP_SIZE, mProxy.getCacheHitBytes());
+
+        assertArrayEquals(mClip, get(mClipUrl, null));
+        assertEquals(hits + 1, mOriginHits.get());
+    }
+
+    @Test
+    public void dropsEntryWhenOriginChanges() throws Exception {
+        assertArrayEquals(mClip, get(mClipUrl, null));
+        mProxy.shutdown();
+
+        new Random(7).nextBytes(mClip);
+        mClipTag = "\"v2\"";
+        mProxy = new HttpCacheProxy(mCacheDir, 64L * 1024 * 1024);
+        mProxy.start();
+        assertArrayEquals(mClip, get(mClipUrl, null));
+        assertEquals(CLIP_SIZE, mProxy.getOriginBytes());
+        assertEquals(0, mProxy.getCacheHitBytes());
+        awaitCacheSize(CLIP_SIZE);
+    }
+
+    @Test
+    public void dropsEntryWhenOriginChangesMidway() throws Exception {
+        int end = 2 * CacheFile.CHUNK_SIZE - 1;
+        assertArrayEquals(Arrays.copyOfRange(mClip, 0, end + 1), get(mClipUrl, "bytes=0-" + end));
+        awaitCacheSize(2L * CacheFile.CHUNK_SIZE);
+
+        // the missing chunks come back with a new ETag: the request fails, the next one refetches
+        new Random(7).nextBytes(mClip);
+        mClipTag = "\"v2\"";
+        try {
+            // the response is cut short after the cached part
+            assertTrue(get(mClipUrl, null).length < CLIP_SIZE);
+        } catch (IOException expected) {
+        }
+        assertEquals(0, mProxy.getCacheSize());
+        assertArrayEquals(mClip, get(mClipUrl, null));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries() throws Exception {
+        mProxy.shutdown();
+        mProxy = new HttpCacheProxy(mCacheDir, 8L * CacheFile.CHUNK_SIZE);
+        mProxy.start();
+
+        assertArrayEquals(mClip, get(mClipUrl, null));
+        assertArrayEquals(mClip, get(mClipUrl + "?copy=2", null));
+        assertTrue(mProxy.getCacheSize() <= mProxy.getMaxCacheSize());
+
+        // the first entry was evicted to make room for the second
+        int hits = mOriginHits.get();
+        assertArrayEquals(mClip, get(mClipUrl, null));
+        assertTrue(mOriginHits.get() > hits);
+    }
+
+    @Test
+    public void rejectsNonHttpUrls() throws Exception {
+        assertEquals(400, status(proxyBase() + URLEncoder.encode("file:///etc/hosts", "UTF-8"), null));
+        assertEquals(400, status(proxyBase() + URLEncoder.encode("jar:file:///a.jar!/b", "UTF-8"), null));
+        assertArrayEquals(mClip, get(mClipUrl, null));
+    }
+
+    @Test
+    public void rejectsMalformedEscapes() throws Exception {
+        assertEquals(400, status(proxyBase() + "http%3A%2F%2F127.0.0.1%2Fclip%ZZ", null));
+        assertArrayEquals(mClip, get(mClipUrl, null));
+    }
+
+    @Test
+    public void rejectsOversizedRanges() throws Exception {
+        String url = mProxy.getProxyUrl(mClipUrl);
+        assertEquals(416, status(url, "bytes=99999999999999999999-"));
+        assertEquals(416, status(url, "bytes=10-5"));
+        assertEquals(0, mOriginHits.get());
+        assertArrayEquals(mClip, get(mClipUrl, null));
+    }
+
+    @Test
+    public void passesThroughUnknownLengthsFromTheRequestedOffset() throws Exception {
+        String liveUrl = "http://127.0.0.1:" + mOrigin.getAddress().getPort() + "/live.ts";
+        assertArrayEquals(mClip, get(liveUrl, null));
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(mProxy.getProxyUrl(liveUrl)).openConnection();
+        connection.setRequestProperty("Range", "bytes=1000-");
+        try {
+            assertEquals(206, connection.getResponseCode());
+            assertEquals("bytes 1000-*/*", connection.getHeaderField("Content-Range"));
+            assertArrayEquals(Arrays.copyOfRange(mClip, 1000, CLIP_SIZE), readAll(connection.getInputStream()));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void prefetchCachesTheHeadWithoutServingIt() throws Exception {
+        mProxy.prefetch(mClipUrl, CacheFile.CHUNK_SIZE + 1);
+        awaitCacheSize(2L * CacheFile.CHUNK_SIZE);
+        assertEquals(0, mProxy.getCacheHitBytes());
+
+        long originBytes = mProxy.getOriginBytes();
+        int end = 2 * CacheFile.CHUNK_SIZE - 1;
+        assertArrayEquals(Arrays.copyOfRange(mClip, 0, end + 1), get(mClipUrl, "bytes=0-" + end));
+        assertEquals(originBytes, mProxy.getOriginBytes());
+
+        // already cached: no second download
+        mProxy.prefetch(mClipUrl, CacheFile.CHUNK_SIZE);
+        assertArrayEquals(mClip, get(mClipUrl, null));
+        assertEquals(CLIP_SIZE, mProxy.getOriginBytes());
+    }
+
+    @Test
+    public void prefetchSkipsUnknownLengths() throws Exception {
+        mProxy.prefetch("http://127.0.0.1:" + mOrigin.getAddress().getPort() + "/live.ts", CacheFile.CHUNK_SIZE);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mOriginHits.get() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(1, mOriginHits.get());
+        Thread.sleep(100);
+        assertEquals(0, mProxy.getCacheSize());
+        assertEquals(0, mProxy.getOriginBytes());
+    }
+
+    private String proxyBase() {
+        String url = mProxy.getProxyUrl(mClipUrl);
+        return url.substring(0, url.indexOf("url=") + 4);
+    }
+
+    private int status(String proxyUrl, String range) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(proxyUrl).openConnection();
+        if (range != null) connection.setRequestProperty("Range", range);
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void awaitCacheSize(long bytes) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mProxy.getCacheSize() < bytes && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(bytes, mProxy.getCacheSize());
+    }
+
+    private byte[] get(String url, String range) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(mProxy.getProxyUrl(url)).openConnection();
+        if (range != null) connection.setRequestProperty("Range", range);
+        assertEquals(range != null ? 206 : 200, connection.getResponseCode());
+        try {
+            return readAll(connection.getInputStream());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class HttpDiskCacheTest {
+
+    // two full chunks and a short last one
+    private static final long CONTENT_LENGTH = 2L * CacheFile.CHUNK_SIZE + 1000;
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws Exception {
+        mDir = File.createTempFile("disk", "cache");
+        assertTrue(mDir.delete());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null)
+            for (File file : files) assertTrue(file.delete());
+        assertTrue(mDir.delete());
+    }
+
+    private static void fill(HttpDiskCache cache, CacheFile file) throws Exception {
+        file.initialize(CONTENT_LENGTH, "video/mp4", null);
+        for (int chunk = 0; chunk < file.getChunkCount(); chunk++) {
+            assertTrue(file.markChunk(chunk));
+            cache.onChunkCached(file.chunkLength(chunk));
+        }
+    }
+
+    @Test
+    public void countsTheShortLastChunkExactly() throws Exception {
+        HttpDiskCache cache = new HttpDiskCache(mDir, 64L * CacheFile.CHUNK_SIZE);
+        CacheFile file = cache.open("http://example.com/a.mp4");
+        fill(cache, file);
+        assertEquals(CONTENT_LENGTH, file.getCachedBytes());
+        assertEquals(CONTENT_LENGTH, cache.size());
+        cache.close(file);
+    }
+
+    @Test
+    public void reopeningDoesNotInflateSizes() throws Exception {
+        HttpDiskCache cache = new HttpDiskCache(mDir, 64L * CacheFile.CHUNK_SIZE);
+        CacheFile file = cache.open("http://example.com/a.mp4");
+        fill(cache, file);
+        cache.close(file);
+
+        for (int i = 0; i < 3; i++) {
+            file = cache.open("http://example.com/a.mp4");
+            assertEquals(CONTENT_LENGTH, file.getCachedBytes());
+            cache.close(file);
+        }
+        assertEquals(CONTENT_LENGTH, cache.size());
+
+        // a fresh cache reads the same size back from the index
+        cache = new HttpDiskCache(mDir, 64L * CacheFile.CHUNK_SIZE);
+        assertEquals(0, cache.size());
+        cache.load();
+        assertEquals(CONTENT_LENGTH, cache.size());
+        file = cache.open("http://example.com/a.mp4");
+        cache.close(file);
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evictsOnceOverBudgetAfterReopens() throws Exception {
+        HttpDiskCache cache = new HttpDiskCache(mDir, 3L * CacheFile.CHUNK_SIZE);
+        CacheFile first = cache.open("http://example.com/a.mp4");
+        fill(cache, first);
+        cache.close(first);
+        cache.close(cache.open("http://example.com/a.mp4"));
+
+        CacheFile second = cache.open("http://example.com/b.mp4");
+        fill(cache, second);
+        cache.close(second);
+
+        // both entries do not fit, the least recently used one is gone
+        assertEquals(CONTENT_LENGTH, cache.size());
+        assertFalse(new File(mDir, HttpDiskCache.keyFor("http://example.com/a.mp4") + ".idx").exists());
+    }
+}
@@ -0,0 +1,79 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LiveDriftControllerTest {
+
+    /**
+     * A live feed observed every 250 ms of wall time; the media clock advances at the
+     * current rate unless the stream is stalled.
+     */
+    private static final class Feed {
+        final LiveDriftController controller = new LiveDriftController();
+        long now;
+        float media;
+        float rate = 1f;
+
+        void play(long durationMs) {
+            for (long t = 0; t < durationMs; t += 250) {
+                now += 250;
+                media += 250 * rate;
+                rate = controller.onTimeChanged((long) media, now);
+            }
+        }
+
+        void stall(long durationMs) {
+            now += durationMs;
+        }
+    }
+
+    @Test
+    public void steadyStreamPlaysAtNormalRate() {
+        Feed feed = new Feed();
+        feed.play(60000);
+        assertEquals(1f, feed.rate, 0f);
+        assertEquals(0, feed.controller.getDriftMs());
+    }
+
+    @Test
+    public void catchesUpAfterStall() {
+        Feed feed = new Feed();
+        feed.play(5000);
+        feed.stall(2000);
+        feed.play(1000);
+        assertTrue(feed.rate > 1f);
+        assertTrue(feed.rate <= 1.08f);
+        assertFalse(feed.controller.needsResync());
+
+        feed.play(120000);
+        assertEquals(1f, feed.rate, 0f);
+        assertTrue(feed.controller.getDriftMs() < 100);
+    }
+
+    @Test
+    public void ignoresClockJitter() {
+        LiveDriftController controller = new LiveDriftController();
+        long media = 0;
+        for (int i = 0; i < 400; i++) {
+            media += 250;
+            // updates arrive up to 150 ms late, but the stream keeps up on average
+            long jitter = (i % 3) * 75;
+            assertEquals(1f, controller.onTimeChanged(media, media + jitter), 0f);
+        }
+    }
+
+    @Test
+    public void asksForResyncWhenTooFarBehind() {
+        Feed feed = new Feed();
+        feed.play(2000);
+        feed.stall(30000);
+        feed.play(10000);
+        assertTrue(feed.controller.needsResync());
+
+        feed.controller.reset();
+        assertFalse(feed.controller.needsResync());
+        assertEquals(1f, feed.controller.getRate(), 0f);
+    }
+}
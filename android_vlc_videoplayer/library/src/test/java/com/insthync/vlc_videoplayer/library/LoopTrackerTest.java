@@ -0,0 +1,46 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LoopTrackerTest {
+
+    @Test
+    public void measuresGapOfWrap() {
+        LoopTracker tracker = new LoopTracker();
+        assertEquals(-1, tracker.onTimeChanged(0, 10000, 1000));
+        assertEquals(-1, tracker.onTimeChanged(9900, 10000, 10900));
+        // 100 ms were left and 50 ms played after the wrap, but 400 ms passed
+        assertEquals(250, tracker.onTimeChanged(50, 10000, 11300));
+        assertEquals(-1, tracker.onTimeChanged(300, 10000, 11550));
+    }
+
+    @Test
+    public void seamlessWrapHasNoGap() {
+        LoopTracker tracker = new LoopTracker();
+        tracker.onTimeChanged(9800, 10000, 0);
+        assertEquals(0, tracker.onTimeChanged(100, 10000, 290));
+    }
+
+    @Test
+    public void backwardSeekIsNotALoop() {
+        LoopTracker tracker = new LoopTracker();
+        tracker.onTimeChanged(9000, 10000, 0);
+        tracker.onSeek(100);
+        assertEquals(-1, tracker.onTimeChanged(9200, 10000, 200));
+        assertEquals(-1, tracker.onTimeChanged(0, 10000, 500));
+
+        // the seek is consumed, the next wrap counts again
+        tracker.onTimeChanged(9900, 10000, 10400);
+        assertEquals(0, tracker.onTimeChanged(0, 10000, 10500));
+    }
+
+    @Test
+    public void smallBackwardJumpsAreIgnored() {
+        LoopTracker tracker = new LoopTracker();
+        tracker.onTimeChanged(5000, 10000, 0);
+        assertEquals(-1, tracker.onTimeChanged(4000, 10000, 250));
+        assertEquals(-1, tracker.onTimeChanged(100, 0, 500));
+    }
+}
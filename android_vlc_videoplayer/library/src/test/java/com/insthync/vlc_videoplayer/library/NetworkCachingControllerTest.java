@@ -0,0 +1,199 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NetworkCachingControllerTest {
+
+    /**
+     * One view playing a recorded event trace, shifted by {@code offsetMs}.
+     */
+    private static final class Stream {
+        final List<String[]> events = new ArrayList<>();
+        final PlaybackMetrics metrics;
+        NetworkCachingController.Fill fill;
+        int next;
+
+        Stream(String name, long offsetMs, PlaybackMetrics metrics) throws IOException {
+            this.metrics = metrics;
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    NetworkCachingControllerTest.class.getResourceAsStream("/traces/" + name), "UTF-8"));
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isEmpty() || line.startsWith("#")) continue;
+                    String[] parts = line.split(" ");
+                    parts[0] = String.valueOf(Long.parseLong(parts[0]) + offsetMs);
+                    events.add(parts);
+                }
+            } finally {
+                in.close();
+            }
+        }
+
+        /**
+         * Feeds one event through the metrics and the controller the way the view does.
+         */
+        void feed(String[] parts, NetworkCachingController controller) {
+            long now = Long.parseLong(parts[0]);
+            String event = parts[1];
+            if (event.equals("open")) {
+                fill = controller.openFill();
+                metrics.startSession(now);
+            } else if (event.equals("buffering")) {
+                float percent = Float.parseFloat(parts[2]);
+                metrics.onBuffering(percent, now);
+                controller.onBuffering(fill, percent, now);
+            } else if (event.equals("playing")) {
+                metrics.onPlaying(now);
+            } else if (event.equals("frame")) {
+                metrics.onFirstFrame(now);
+            } else if (event.equals("seek")) {
+                metrics.onSeek();
+            } else if (event.equals("end")) {
+                PlaybackMetrics.Session session = metrics.endSession(now, 0, 0, 0);
+                controller.onSessionEnd(session.getStallCount(), session.getStallMs(), session.getPlayMs());
+                fill = null;
+            } else {
+                throw new IllegalArgumentException("Unknown event " + parts[1]);
+            }
+        }
+    }
+
+    /**
+     * Replays the streams' events up to {@code untilMs} against one controller, interleaved
+     * by time. Later calls continue where the previous one stopped.
+     */
+    private static void replay(NetworkCachingController controller, long untilMs, Stream... streams) {
+        while (true) {
+            Stream earliest = null;
+            for (Stream stream : streams) {
+                if (stream.next >= stream.events.size() || nextTime(stream) > untilMs) continue;
+                if (earliest == null || nextTime(stream) < nextTime(earliest))
+                    earliest = stream;
+            }
+            if (earliest == null) return;
+            earliest.feed(earliest.events.get(earliest.next++), controller);
+        }
+    }
+
+    private static long nextTime(Stream stream) {
+        return Long.parseLong(stream.events.get(stream.next)[0]);
+    }
+
+    private static void replay(String name, PlaybackMetrics metrics, NetworkCachingController controller) throws IOException {
+        replay(controller, Long.MAX_VALUE, new Stream(name, 0, metrics));
+    }
+
+    @Test
+    public void raisesCachingAfterStallingSession() throws Exception {
+        NetworkCachingController controller = new NetworkCachingController(1000, 300, 10000);
+        replay("stalling_cellular.txt", new PlaybackMetrics(), controller);
+
+        // 4.2 s stalled out of ~67 s is above 5% rebuffering, so the caching doubles
+        assertEquals(2000, controller.getCachingMs());
+        assertEquals(1, controller.getRaiseCount());
+        assertTrue(controller.getFillRate() < 1);
+
+        replay("stalling_cellular.txt", new PlaybackMetrics(), controller);
+        assertEquals(4000, controller.getCachingMs());
+    }
+
+    @Test
+    public void lowersCachingOnlyAfterCleanSessionsOnFastLink() throws Exception {
+        NetworkCachingController controller = new NetworkCachingController(1000, 300, 10000);
+        PlaybackMetrics metrics = new PlaybackMetrics();
+
+        replay("fast_wifi.txt", metrics, controller);
+        assertEquals(1000, controller.getCachingMs());
+        assertTrue(controller.getFillRate() > 1.5f);
+
+        replay("fast_wifi.txt", metrics, controller);
+        assertEquals(800, controller.getCachingMs());
+        assertEquals(1, controller.getLowerCount());
+
+        for (int i = 0; i < 20; i++)
+            replay("fast_wifi.txt", metrics, controller);
+        assertEquals(300, controller.getCachingMs());
+    }
+
+    @Test
+    public void stallResetsTheCleanSessionRun() throws Exception {
+        NetworkCachingController controller = new NetworkCachingController(1000, 300, 10000);
+        PlaybackMetrics metrics = new PlaybackMetrics();
+
+        replay("fast_wifi.txt", metrics, controller);
+        replay("stalling_cellular.txt", metrics, controller);
+        replay("fast_wifi.txt", metrics, controller);
+        assertEquals(2000, controller.getCachingMs());
+        assertEquals(0, controller.getLowerCount());
+    }
+
+    @Test
+    public void staysWithinBounds() {
+        NetworkCachingController controller = new NetworkCachingController(9000, 300, 10000);
+        controller.onSessionEnd(5, 20000, 60000);
+        assertEquals(10000, controller.getCachingMs());
+
+        // short clean sessions are ignored
+        controller = new NetworkCachingController(100, 300, 10000);
+        assertEquals(300, controller.getCachingMs());
+        controller.onSessionEnd(0, 0, 5000);
+        controller.onSessionEnd(0, 0, 5000);
+        assertEquals(300, controller.getCachingMs());
+    }
+
+    private static float smooth(float rate, float sample) {
+        return rate + 0.3f * (sample - rate);
+    }
+
+    @Test
+    public void interleavedViewsKeepTheirOwnFill() throws Exception {
+        // the startup fills of a fast and a slow view interleave, and a third view ends its
+        // session at 1 s, in the middle of the slow view's fill
+        NetworkCachingController shared = new NetworkCachingController(1000, 300, 10000);
+        Stream wifi = new Stream("fast_wifi.txt", 0, new PlaybackMetrics());
+        Stream cellular = new Stream("stalling_cellular.txt", 0, new PlaybackMetrics());
+        Stream ending = new Stream("fast_wifi.txt", -29000, new PlaybackMetrics());
+
+        // each wifi fill samples 6x then 8x real time
+        float expected = smooth(6f, 8f);
+        replay(shared, 150, wifi, cellular, ending);
+        expected = smooth(smooth(expected, 6f), 8f);
+        // mixing in the cellular view's 0% at 100 ms would have measured 0% -> 70% in 50 ms, 14x
+        assertEquals(expected, shared.getFillRate(), 0.001f);
+
+        // the cellular fill samples 25% of 1 s per 600 ms, before and after the other session ended
+        replay(shared, 1300, wifi, cellular, ending);
+        expected = smooth(smooth(expected, 0.25f * 1000 / 600), 0.25f * 1000 / 600);
+        assertEquals(expected, shared.getFillRate(), 0.001f);
+
+        replay(shared, Long.MAX_VALUE, wifi, cellular, ending);
+        assertEquals(2000, shared.getCachingMs());
+    }
+
+    @Test
+    public void stallOfOneViewRaisesCachingForAll() throws Exception {
+        NetworkCachingController shared = new NetworkCachingController(1000, 300, 10000);
+        Stream cellular = new Stream("stalling_cellular.txt", 0, new PlaybackMetrics());
+        replay(shared, Long.MAX_VALUE, new Stream("fast_wifi.txt", 0, new PlaybackMetrics()), cellular);
+        assertEquals(2000, shared.getCachingMs());
+        assertEquals(0, shared.getLowerCount());
+
+        // the next opened media uses the shared decision
+        cellular.feed(new String[]{"70000", "open"}, shared);
+        assertEquals(2000, cellular.fill.cachingMs);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidRange() {
+        new NetworkCachingController(1000, 2000, 1000);
+    }
+}
@@ -0,0 +1,54 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PendingStartTest {
+
+    @Test
+    public void openWithoutPlayKeepsPositionForFirstPlay() {
+        PendingStart pending = new PendingStart();
+        // setSource() with autoPlay off, resuming a stored position
+        assertEquals(0, pending.onOpen(false, 42000));
+        assertEquals(42000, pending.take());
+        // later plays just resume
+        assertEquals(0, pending.take());
+    }
+
+    @Test
+    public void openWithPlaySeeksRightAway() {
+        PendingStart pending = new PendingStart();
+        assertEquals(42000, pending.onOpen(true, 42000));
+        assertEquals(0, pending.take());
+    }
+
+    @Test
+    public void newOpenDropsOldPosition() {
+        PendingStart pending = new PendingStart();
+        pending.onOpen(false, 42000);
+        pending.onOpen(false, 0);
+        assertEquals(0, pending.take());
+
+        pending.onOpen(false, 42000);
+        pending.onOpen(true, 0);
+        assertEquals(0, pending.take());
+    }
+
+    @Test
+    public void seekBeforePlayMovesStart() {
+        PendingStart pending = new PendingStart();
+        assertFalse(pending.replace(5000));
+
+        pending.onOpen(false, 42000);
+        assertTrue(pending.replace(5000));
+        assertEquals(5000, pending.take());
+        assertFalse(pending.replace(5000));
+
+        // seeking to the very start still has to override the resumed position
+        pending.onOpen(false, 42000);
+        assertTrue(pending.replace(0));
+        assertEquals(0, pending.take());
+        assertFalse(pending.isPending());
+    }
+}
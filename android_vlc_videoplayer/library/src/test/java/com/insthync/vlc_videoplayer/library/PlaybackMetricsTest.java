@@ -0,0 +1,91 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PlaybackMetricsTest {
+
+    @Test
+    public void tracksStartupStallsAndPlayTime() throws Exception {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        final long[] seen = new long[3];
+        metrics.setListener(new PlaybackMetrics.Listener() {
+            @Override
+            public void onSessionEnd(PlaybackMetrics m, PlaybackMetrics.Session session) {
+                seen[0] = session.getStartupMs();
+                seen[1] = session.getStallCount();
+                seen[2] = session.getLostFrames();
+            }
+        });
+
+        metrics.startSession(1000);
+        metrics.onBuffering(50, 1100);   // startup buffering, not a stall
+        metrics.onPlaying(1200);
+        metrics.onFirstFrame(1400);
+        metrics.onBuffering(30, 5200);   // stall
+        metrics.onBuffering(100, 5700);
+        metrics.onSeek();
+        metrics.onBuffering(10, 8000);   // caused by the seek
+        metrics.onBuffering(100, 8300);
+        metrics.endSession(11200, 250, 240, 10);
+
+        assertEquals(400, seen[0]);
+        assertEquals(1, seen[1]);
+        assertEquals(10, seen[2]);
+        assertEquals(1, metrics.getSessionCount());
+        assertEquals(1, metrics.getStallCount());
+        assertEquals(500, metrics.getStallMs());
+        assertEquals(9500, metrics.getPlayMs());
+        assertEquals(0.05f, metrics.getRebufferRatio(), 0.0001f);
+        assertEquals(1, metrics.getStartupHistogram().getTotalCount());
+        assertEquals(500, metrics.getStallHistogram().getMax());
+        assertEquals(50, metrics.getRebufferHistogram().getMax());
+    }
+
+    @Test
+    public void pausedTimeIsNotPlayTime() throws Exception {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.startSession(0);
+        metrics.onPlaying(0);
+        metrics.onFirstFrame(100);
+        metrics.onPaused(1000);
+        metrics.onPlaying(5000);
+        metrics.endSession(6000, 0, 0, 0);
+        assertEquals(2000, metrics.getPlayMs());
+        assertFalse(metrics.isSessionActive());
+    }
+
+    @Test
+    public void replacedSessionIsClosed() throws Exception {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.startSession(0);
+        metrics.onFirstFrame(300);
+        metrics.startSession(1000);
+        assertEquals(1, metrics.getSessionCount());
+        metrics.endSession(2000, 0, 0, 0);
+        assertEquals(2, metrics.getSessionCount());
+        assertEquals(1, metrics.getStartupCount());
+    }
+
+    @Test
+    public void histogramPercentiles() throws Exception {
+        Histogram histogram = new Histogram(100, 200, 500);
+        for (int i = 1; i <= 90; i++)
+            histogram.record(50);
+        for (int i = 1; i <= 9; i++)
+            histogram.record(150);
+        histogram.record(900);
+
+        assertEquals(4, histogram.getBucketCount());
+        assertEquals(100, histogram.getTotalCount());
+        assertEquals(100, histogram.getPercentile(50));
+        assertEquals(200, histogram.getPercentile(95));
+        assertEquals(900, histogram.getPercentile(100));
+        assertEquals(1, histogram.getCount(3));
+        assertEquals(Long.MAX_VALUE, histogram.getUpperBound(3));
+
+        histogram.reset();
+        assertEquals(0, histogram.getPercentile(50));
+    }
+}
@@ -0,0 +1,156 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PlayerCommandExecutorTest {
+
+    private final List<String> mLog = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch mBlock = new CountDownLatch(1);
+    private PlayerCommandExecutor mExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        mExecutor = new PlayerCommandExecutor("test", new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+    }
+
+    private PlayerCommandExecutor.Command command(Object target, int type, final String name) {
+        return new PlayerCommandExecutor.Command(target, type) {
+            @Override
+            public void run() {
+                mLog.add(name);
+            }
+
+            @Override
+            void done() {
+                mLog.add(name + " done");
+            }
+
+            @Override
+            void discard() {
+                mLog.add(name + " discarded");
+            }
+        };
+    }
+
+    private void blockWorker() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        mExecutor.execute(new PlayerCommandExecutor.Command(new Object(), PlayerCommandExecutor.PLAYBACK) {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    mBlock.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+    }
+
+    private void drain() throws Exception {
+        final CountDownLatch drained = new CountDownLatch(1);
+        mExecutor.execute(new PlayerCommandExecutor.Command(new Object(), PlayerCommandExecutor.PLAYBACK) {
+            @Override
+            public void run() {
+                drained.countDown();
+            }
+        });
+        assertTrue(drained.await(1, TimeUnit.SECONDS));
+        // let the last done() callback finish
+        Thread.sleep(20);
+    }
+
+    @Test
+    public void runsCommandsInOrderAndReportsResults() throws Exception {
+        Object player = new Object();
+        mExecutor.execute(command(player, PlayerCommandExecutor.OPEN, "open"));
+        mExecutor.execute(command(player, PlayerCommandExecutor.SEEK, "seek"));
+        mExecutor.execute(command(player, PlayerCommandExecutor.PLAYBACK, "pause"));
+        drain();
+        assertEquals(Arrays.asList("open", "open done", "seek", "seek done", "pause", "pause done"),
+                new ArrayList<>(mLog));
+    }
+
+    @Test
+    public void collapsesSupersededCommands() throws Exception {
+        Object player = new Object();
+        Object other = new Object();
+        blockWorker();
+
+        mExecutor.execute(command(player, PlayerCommandExecutor.SEEK, "seek 1"));
+        mExecutor.execute(command(player, PlayerCommandExecutor.SEEK, "seek 2"));
+        mExecutor.execute(command(other, PlayerCommandExecutor.SEEK, "other seek"));
+        mExecutor.execute(command(player, PlayerCommandExecutor.PLAYBACK, "stop"));
+        mExecutor.execute(command(player, PlayerCommandExecutor.OPEN, "open 1"));
+        mExecutor.execute(command(player, PlayerCommandExecutor.OPEN, "open 2"));
+        mExecutor.execute(command(player, PlayerCommandExecutor.PLAYBACK, "play"));
+        mExecutor.execute(command(player, PlayerCommandExecutor.SEEK, "seek 3"));
+
+        assertEquals(4, mExecutor.getPendingCount());
+        assertEquals(4, mExecutor.getSupersededCount());
+        assertTrue(mLog.contains("seek 1 discarded"));
+        assertTrue(mLog.contains("open 1 discarded"));
+
+        mLog.clear();
+        mBlock.countDown();
+        drain();
+        assertEquals(Arrays.asList("other seek", "open 2", "play", "seek 3"), ran());
+    }
+
+    @Test
+    public void releaseDropsEverythingPending() throws Exception {
+        Object player = new Object();
+        blockWorker();
+        mExecutor.execute(command(player, PlayerCommandExecutor.OPEN, "open"));
+        mExecutor.execute(command(player, PlayerCommandExecutor.PLAYBACK, "play"));
+        mExecutor.execute(command(player, PlayerCommandExecutor.RELEASE, "release"));
+        mExecutor.execute(command(player, PlayerCommandExecutor.OPEN, "late open"));
+
+        mLog.clear();
+        mBlock.countDown();
+        drain();
+        assertEquals(Arrays.asList("release", "late open"), ran());
+    }
+
+    @Test
+    public void failingCommandDoesNotStopTheWorker() throws Exception {
+        Object player = new Object();
+        mExecutor.execute(new PlayerCommandExecutor.Command(player, PlayerCommandExecutor.OPEN) {
+            @Override
+            public void run() {
+                throw new IllegalStateException("player released");
+            }
+        });
+        mExecutor.execute(command(player, PlayerCommandExecutor.SEEK, "seek"));
+        drain();
+        assertEquals(Arrays.asList("seek"), ran());
+        assertEquals(3, mExecutor.getExecutedCount());
+    }
+
+    private List<String> ran() {
+        List<String> ran = new ArrayList<>();
+        synchronized (mLog) {
+            for (String entry : mLog) {
+                if (!entry.endsWith(" done") && !entry.endsWith(" discarded"))
+                    ran.add(entry);
+            }
+        }
+        return ran;
+    }
+}
@@ -0,0 +1,96 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.Test;
+
+import static com.insthync.vlc_videoplayer.library.PlayerGridCoordinator.STATE_ACTIVE;
+import static com.insthync.vlc_videoplayer.library.PlayerGridCoordinator.STATE_HIDDEN;
+import static com.insthync.vlc_videoplayer.library.PlayerGridCoordinator.STATE_PAUSED;
+import static org.junit.Assert.*;
+
+public class PlayerGridCoordinatorTest {
+
+    private static int[] assign(float[] fractions, int focused, int budget) {
+        int[] states = new int[fractions.length];
+        PlayerGridCoordinator.assign(fractions, fractions.length, focused, budget, 0.25f, states);
+        return states;
+    }
+
+    @Test
+    public void mostVisiblePlayersGetTheBudget() {
+        int[] states = assign(new float[]{0.5f, 1f, 0f, 0.9f, 1f}, -1, 3);
+        assertArrayEquals(new int[]{STATE_PAUSED, STATE_ACTIVE, STATE_HIDDEN, STATE_ACTIVE, STATE_ACTIVE}, states);
+    }
+
+    @Test
+    public void focusedPlayerAlwaysActive() {
+        int[] states = assign(new float[]{1f, 1f, 0.1f}, 2, 1);
+        assertArrayEquals(new int[]{STATE_PAUSED, STATE_PAUSED, STATE_ACTIVE}, states);
+
+        // unless it is off-screen, which frees its slot
+        states = assign(new float[]{1f, 1f, 0f}, 2, 1);
+        assertArrayEquals(new int[]{STATE_ACTIVE, STATE_PAUSED, STATE_HIDDEN}, states);
+    }
+
+    @Test
+    public void mostlyObscuredPlayersStayPaused() {
+        int[] states = assign(new float[]{0.2f, 0.3f}, -1, 9);
+        assertArrayEquals(new int[]{STATE_PAUSED, STATE_ACTIVE}, states);
+    }
+
+    /**
+     * Drives a ledger the way the coordinator drives the pool: tiles attach parked, then each
+     * update suspends before it resumes. Returns how many players the pool had to reclaim.
+     */
+    private static int applyToPool(PlayerLedger<Integer, String, Integer> pool, int cap,
+                                   int[] applied, int[] states) {
+        int reclaimed = 0;
+        for (int i = 0; i < states.length; i++) {
+            if (states[i] != STATE_ACTIVE && applied[i] == STATE_ACTIVE)
+                pool.setParked(i, true);
+        }
+        for (int i = 0; i < states.length; i++) {
+            if (states[i] != STATE_ACTIVE || applied[i] == STATE_ACTIVE) continue;
+            while (pool.nextToReclaim(cap) != null) {
+                pool.giveBack(pool.nextToReclaim(cap).getKey());
+                reclaimed++;
+            }
+            pool.setParked(i, false);
+        }
+        System.arraycopy(states, 0, applied, 0, states.length);
+        return reclaimed;
+    }
+
+    @Test
+    public void nineTilesWithBudgetOfFourNeverReclaim() {
+        final int tiles = 9;
+        final int budget = 4;
+        PlayerLedger<Integer, String, Integer> pool = new PlayerLedger<>();
+        int[] applied = new int[tiles];
+        for (int i = 0; i < tiles; i++) {
+            pool.borrow(i, "engine", i);
+            pool.setParked(i, true);
+            applied[i] = STATE_PAUSED;
+        }
+        assertNull(pool.nextToReclaim(budget));
+
+        float[] fractions = {1f, 1f, 1f, 1f, 1f, 1f, 0.5f, 0.5f, 0.5f};
+        assertEquals(0, applyToPool(pool, budget, applied, assign(fractions, -1, budget)));
+        assertEquals(budget, pool.decodingCount());
+
+        // scrolling down moves the budget to the last tiles, focus included
+        float[] scrolled = {0.1f, 0.1f, 0.1f, 0.5f, 0.5f, 0.5f, 1f, 1f, 1f};
+        assertEquals(0, applyToPool(pool, budget, applied, assign(scrolled, 3, budget)));
+        assertEquals(budget, pool.decodingCount());
+        assertEquals(tiles, pool.activeCount());
+        for (int i = 0; i < tiles; i++)
+            assertEquals(applied[i] != STATE_ACTIVE, pool.isParked(i));
+    }
+
+    @Test
+    public void budgetFollowsDeviceTier() {
+        assertTrue(PlayerGridCoordinator.defaultBudget(DeviceProfile.TIER_LOW)
+                < PlayerGridCoordinator.defaultBudget(DeviceProfile.TIER_MID));
+        assertTrue(PlayerGridCoordinator.defaultBudget(DeviceProfile.TIER_MID)
+                < PlayerGridCoordinator.defaultBudget(DeviceProfile.TIER_HIGH));
+    }
+}
@@ -0,0 +1,97 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class PlayerLedgerTest {
+
+    private static PlayerLedger<String, String, String> borrowed(String... players) {
+        PlayerLedger<String, String, String> ledger = new PlayerLedger<>();
+        for (String player : players)
+            ledger.borrow(player, "engine", "view-" + player);
+        return ledger;
+    }
+
+    @Test
+    public void reclaimsNothingBelowTheCap() {
+        assertNull(borrowed("a", "b").nextToReclaim(3));
+        assertNull(borrowed().nextToReclaim(0));
+    }
+
+    @Test
+    public void reclaimsLeastRecentlyUsed() {
+        PlayerLedger<String, String, String> ledger = borrowed("a", "b", "c");
+        assertEquals("a", ledger.nextToReclaim(3).getKey());
+        assertEquals("view-a", ledger.nextToReclaim(3).getValue());
+
+        // a is played again, b is now the least recently used
+        ledger.touch("a");
+        assertEquals("b", ledger.nextToReclaim(3).getKey());
+        ledger.touch("b");
+        ledger.touch("c");
+        assertEquals("a", ledger.nextToReclaim(3).getKey());
+    }
+
+    @Test
+    public void lookingUpTheCandidateDoesNotTouchIt() {
+        PlayerLedger<String, String, String> ledger = borrowed("a", "b");
+        ledger.nextToReclaim(2);
+        assertEquals("a", ledger.nextToReclaim(2).getKey());
+    }
+
+    @Test
+    public void parkedPlayersAreNotCountedNorReclaimed() {
+        PlayerLedger<String, String, String> ledger = borrowed("a", "b", "c");
+        ledger.setParked("a", true);
+        assertNull(ledger.nextToReclaim(3));
+        assertEquals("b", ledger.nextToReclaim(2).getKey());
+
+        // giving a parked player back unparks it
+        ledger.giveBack("a");
+        assertFalse(ledger.isParked("a"));
+        assertEquals(2, ledger.decodingCount());
+    }
+
+    @Test
+    public void touchingAnIdlePlayerIsIgnored() {
+        PlayerLedger<String, String, String> ledger = borrowed("a", "b");
+        assertTrue(ledger.giveBack("a"));
+        ledger.touch("a");
+        assertEquals(1, ledger.activeCount());
+        assertEquals(1, ledger.idleCount());
+        assertFalse(ledger.giveBack("a"));
+    }
+
+    @Test
+    public void trimsOldestIdleFirst() {
+        PlayerLedger<String, String, String> ledger = borrowed("a", "b", "c", "d");
+        ledger.giveBack("c");
+        ledger.giveBack("a");
+        ledger.giveBack("d");
+        assertEquals(Collections.singletonList("c"), ledger.trimIdle(2));
+        assertEquals(Arrays.asList("a", "d"), ledger.trimIdle(0));
+        assertEquals("engine", ledger.forget("a"));
+        assertNull(ledger.forget("a"));
+        assertEquals(1, ledger.activeCount());
+    }
+
+    @Test
+    public void reusesNewestIdlePlayerOfTheSameEngine() {
+        PlayerLedger<String, String, String> ledger = new PlayerLedger<>();
+        ledger.borrow("a", "engine-1", "v");
+        ledger.borrow("b", "engine-2", "v");
+        ledger.borrow("c", "engine-1", "v");
+        ledger.giveBack("a");
+        ledger.giveBack("b");
+        ledger.giveBack("c");
+
+        assertEquals("c", ledger.takeIdle("engine-1"));
+        assertEquals("a", ledger.takeIdle("engine-1"));
+        assertNull(ledger.takeIdle("engine-1"));
+        assertEquals(1, ledger.idleCount());
+    }
+}
@@ -0,0 +1,57 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RenditionSelectorTest {
+
+    private static TrackInfo video(int id, int width, int height, int bitrate) {
+        return new TrackInfo(TrackInfo.TYPE_VIDEO, id, "Track " + id, null, "h264", width, height, bitrate, false);
+    }
+
+    private static final List<TrackInfo> LADDER = Arrays.asList(
+            video(1, 1920, 1080, 6000000),
+            video(2, 1280, 720, 3000000),
+            video(3, 854, 480, 1200000),
+            video(4, 426, 240, 400000));
+
+    @Test
+    public void smallestRenditionCoveringTheView() {
+        assertEquals(3, RenditionSelector.pick(LADDER, -1, 800, 450));
+        assertEquals(1, RenditionSelector.pick(LADDER, -1, 1920, 1080));
+        // larger than every rendition: the largest
+        assertEquals(1, RenditionSelector.pick(LADDER, -1, 2560, 1440));
+    }
+
+    @Test
+    public void throughputCapsTheRendition() {
+        // 75% of 5 Mbps fits 720p but not 1080p
+        assertEquals(2, RenditionSelector.pick(LADDER, 5000000, 1920, 1080));
+        // nothing fits: the cheapest
+        assertEquals(4, RenditionSelector.pick(LADDER, 100000, 1920, 1080));
+    }
+
+    @Test
+    public void noVideoTracksLeavesTheChoiceToLibvlc() {
+        assertEquals(-1, RenditionSelector.pick(Arrays.<TrackInfo>asList(), 1000000, 100, 100));
+    }
+
+    @Test
+    public void measuresThroughputWhileBuffering() {
+        RenditionSelector selector = new RenditionSelector();
+        assertEquals(-1, selector.getThroughputBps());
+        selector.onBufferingSample(0, 0);
+        selector.onBufferingSample(250000, 500);   // 4 Mbps
+        assertEquals(4000000, selector.getThroughputBps());
+
+        // the gap between two buffering periods is not counted
+        selector.onBufferingDone();
+        selector.onBufferingSample(1000000, 60000);
+        selector.onBufferingSample(1125000, 61000);   // 1 Mbps
+        assertEquals(3100000, selector.getThroughputBps());
+    }
+}
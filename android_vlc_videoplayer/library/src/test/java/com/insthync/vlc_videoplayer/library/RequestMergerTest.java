@@ -0,0 +1,51 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class RequestMergerTest {
+
+    @Test
+    public void mergesRequestsForTheSameKey() {
+        RequestMerger<String, String> merger = new RequestMerger<>();
+        assertTrue(merger.add("v.mp4@1000", "preview"));
+        assertFalse(merger.add("v.mp4@1000", "poster"));
+        // the same callback twice is delivered once
+        assertFalse(merger.add("v.mp4@1000", "preview"));
+        assertTrue(merger.add("v.mp4@2000", "preview"));
+        assertEquals(2, merger.size());
+
+        assertTrue(merger.isWanted("v.mp4@1000"));
+        assertEquals(Arrays.asList("preview", "poster"), merger.finish("v.mp4@1000"));
+        assertEquals(1, merger.size());
+
+        // a finished key starts new work
+        assertTrue(merger.add("v.mp4@1000", "poster"));
+    }
+
+    @Test
+    public void cancelledRequestsAreSkipped() {
+        RequestMerger<String, String> merger = new RequestMerger<>();
+        merger.add("a", "preview");
+        merger.add("b", "preview");
+        merger.add("b", "poster");
+        merger.cancel("preview");
+
+        assertFalse(merger.isWanted("a"));
+        assertEquals(1, merger.size());
+        assertTrue(merger.isWanted("b"));
+        assertEquals(Collections.singletonList("poster"), merger.finish("b"));
+        assertEquals(0, merger.size());
+    }
+
+    @Test
+    public void finishingAnUnknownKeyHasNoCallbacks() {
+        RequestMerger<String, String> merger = new RequestMerger<>();
+        assertTrue(merger.finish("a").isEmpty());
+        assertFalse(merger.isWanted("a"));
+    }
+}
@@ -0,0 +1,186 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ResumePositionStoreTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("resume", ".log");
+        assertTrue(mFile.delete());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        //noinspection ResultOfMethodCallIgnored
+        mFile.delete();
+    }
+
+    @Test
+    public void normalizesEquivalentUris() throws Exception {
+        assertEquals("http://example.com/a.mp4?a=1&b=2",
+                ResumeKeys.normalize("HTTP://Example.COM:80/a.mp4?b=2&a=1#t=10"));
+        assertEquals("https://example.com/",
+                ResumeKeys.normalize("https://example.com:443"));
+        assertEquals("file:///sdcard/movie.mkv", ResumeKeys.normalize("file:///sdcard/movie.mkv"));
+    }
+
+    @Test
+    public void keepsHostPortAndQueryApart() throws Exception {
+        String a = ResumeKeys.normalize("http://cdn1.example.com/v.mp4?id=1");
+        assertNotEquals(a, ResumeKeys.normalize("http://cdn2.example.com/v.mp4?id=1"));
+        assertNotEquals(a, ResumeKeys.normalize("http://cdn1.example.com/v.mp4?id=2"));
+        assertNotEquals(a, ResumeKeys.normalize("http://cdn1.example.com:8080/v.mp4?id=1"));
+    }
+
+    @Test
+    public void persistsCoalescedWrites() throws Exception {
+        FileResumePositionStore store = new FileResumePositionStore(mFile, 100, 60000);
+        for (int i = 0; i <= 1000; i++)
+            store.put("a", i);
+        store.put("b", 42);
+        store.remove("b");
+        store.put("c", 7);
+        assertEquals(1000, store.get("a"));
+        assertEquals(ResumePositionStore.NO_POSITION, store.get("b"));
+        store.flush();
+
+        // one batch: latest value per key only
+        assertTrue(mFile.length() < 100);
+
+        FileResumePositionStore reloaded = loaded(new FileResumePositionStore(mFile, 100, 60000));
+        assertEquals(1000, reloaded.get("a"));
+        assertEquals(ResumePositionStore.NO_POSITION, reloaded.get("b"));
+        assertEquals(7, reloaded.get("c"));
+    }
+
+    @Test
+    public void compactsLogAndBoundsEntries() throws Exception {
+        FileResumePositionStore store = new FileResumePositionStore(mFile, 50, 60000);
+        for (int round = 0; round < 30; round++) {
+            for (int i = 0; i < 100; i++)
+                store.put("title-" + i, round * 1000 + i);
+            store.flush();
+        }
+        assertEquals(50, store.size());
+        // 3000 appended records would be ~60 KB; compaction keeps the log near the live set
+        assertTrue("log is " + mFile.length() + " bytes", mFile.length() < 30000);
+
+        FileResumePositionStore reloaded = loaded(new FileResumePositionStore(mFile, 50, 60000));
+        assertEquals(50, reloaded.size());
+        assertEquals(29099, reloaded.get("title-99"));
+        assertEquals(ResumePositionStore.NO_POSITION, reloaded.get("title-0"));
+    }
+
+    @Test
+    public void truncatesTornRecordBeforeAppending() throws Exception {
+        FileResumePositionStore store = new FileResumePositionStore(mFile, 100, 60000);
+        store.put("a", 1000);
+        store.flush();
+        long complete = mFile.length();
+
+        // a crash mid-append leaves half a record
+        FileOutputStream out = new FileOutputStream(mFile, true);
+        out.write(new byte[]{1, 0, 9, 'h', 'a', 'l'});
+        out.close();
+
+        FileResumePositionStore reloaded = loaded(new FileResumePositionStore(mFile, 100, 60000));
+        assertEquals(1000, reloaded.get("a"));
+        assertEquals(complete, mFile.length());
+        reloaded.put("b", 2000);
+        reloaded.flush();
+
+        FileResumePositionStore again = loaded(new FileResumePositionStore(mFile, 100, 60000));
+        assertEquals(1000, again.get("a"));
+        assertEquals(2000, again.get("b"));
+    }
+
+    @Test
+    public void updatesDoNotWaitForTheLog() throws Exception {
+        // a log that takes a while to parse
+        FileResumePositionStore store = new FileResumePositionStore(mFile, 100000, 60000);
+        for (int i = 0; i < 50000; i++)
+            store.put("title-" + i, i);
+        store.put("a", 1);
+        store.put("b", 2);
+        store.flush();
+
+        FileResumePositionStore reloaded = new FileResumePositionStore(mFile, 100000, 60000);
+        reloaded.put("a", 5);
+        reloaded.remove("b");
+        reloaded.put("c", 7);
+        // buffered updates answer lookups and win over the log
+        assertEquals(5, reloaded.get("a"));
+        assertEquals(ResumePositionStore.NO_POSITION, reloaded.get("b"));
+        loaded(reloaded);
+        assertEquals(49999, reloaded.get("title-49999"));
+        assertEquals(5, reloaded.get("a"));
+        assertEquals(ResumePositionStore.NO_POSITION, reloaded.get("b"));
+        assertEquals(7, reloaded.get("c"));
+        reloaded.flush();
+
+        FileResumePositionStore again = loaded(new FileResumePositionStore(mFile, 100000, 60000));
+        assertEquals(5, again.get("a"));
+        assertEquals(ResumePositionStore.NO_POSITION, again.get("b"));
+        assertEquals(7, again.get("c"));
+    }
+
+    @Test
+    public void lookupsDoNotWaitForTheLog() throws Exception {
+        FileResumePositionStore store = new FileResumePositionStore(mFile, 100000, 60000);
+        for (int i = 0; i < 50000; i++)
+            store.put("title-" + i, i);
+        store.flush();
+
+        final FileResumePositionStore reloaded = new FileResumePositionStore(mFile, 100000, 60000);
+        final long[] afterLoad = new long[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        reloaded.whenLoaded(new Runnable() {
+            @Override
+            public void run() {
+                afterLoad[0] = reloaded.get("title-49999");
+                done.countDown();
+            }
+        });
+        // unknown until the log is read, never blocking
+        long early = reloaded.get("title-49999");
+        assertTrue(early == ResumePositionStore.NO_POSITION || early == 49999);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(49999, afterLoad[0]);
+        assertTrue(reloaded.isLoaded());
+
+        // once loaded, callbacks run right away
+        final boolean[] ran = new boolean[1];
+        reloaded.whenLoaded(new Runnable() {
+            @Override
+            public void run() {
+                ran[0] = true;
+            }
+        });
+        assertTrue(ran[0]);
+    }
+
+    private static FileResumePositionStore loaded(FileResumePositionStore store) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        store.whenLoaded(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return store;
+    }
+}
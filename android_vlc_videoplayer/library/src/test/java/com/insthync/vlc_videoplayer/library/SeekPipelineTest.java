@@ -0,0 +1,141 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SeekPipelineTest {
+
+    private final List<String> mSeeks = new ArrayList<>();
+    private long mLastSeekId;
+    private Runnable mTimeout;
+    private SeekPipeline mPipeline;
+
+    @Before
+    public void setUp() {
+        mPipeline = new SeekPipeline(new SeekPipeline.Target() {
+            @Override
+            public void seekFast(long timeMs, long seekId) {
+                mSeeks.add("fast " + timeMs);
+                mLastSeekId = seekId;
+            }
+
+            @Override
+            public void seekPrecise(long timeMs, long seekId) {
+                mSeeks.add("precise " + timeMs);
+                mLastSeekId = seekId;
+            }
+
+            @Override
+            public void postDelayed(Runnable action, long delayMs) {
+                assertEquals(SeekPipeline.SEEK_TIMEOUT_MS, delayMs);
+                mTimeout = action;
+            }
+
+            @Override
+            public void removeCallbacks(Runnable action) {
+                if (action == mTimeout)
+                    mTimeout = null;
+            }
+        });
+    }
+
+    @Test
+    public void timeChangedBeforeTheSeekRanIsIgnored() {
+        mPipeline.seek(60000, 0);
+        // a stale position from before the seek, even close to the target
+        mPipeline.onTimeChanged(100);
+        assertTrue(mPipeline.isInFlight());
+
+        mPipeline.onSeekApplied(mLastSeekId);
+        mPipeline.onTimeChanged(250);
+        assertFalse(mPipeline.isInFlight());
+        assertEquals(250, mPipeline.getLastLatencyMs());
+        assertNull(mTimeout);
+    }
+
+    @Test
+    public void completesOnFirstTimeChangedWhereverItLands() {
+        mPipeline.seek(60000, 0);
+        mPipeline.onSeekApplied(mLastSeekId);
+        // a keyframe far from the target still ends the seek
+        mPipeline.onTimeChanged(80);
+        assertFalse(mPipeline.isInFlight());
+        assertEquals(1, mPipeline.getIssuedCount());
+        assertEquals(0, mPipeline.getTimedOutCount());
+    }
+
+    @Test
+    public void dragIssuesOneSeekAtATime() {
+        mPipeline.startDrag();
+        mPipeline.dragTo(1000, 0);
+        mPipeline.dragTo(2000, 10);
+        mPipeline.dragTo(3000, 20);
+        assertEquals(1, mPipeline.getIssuedCount());
+        assertEquals(1, mPipeline.getDroppedCount());
+
+        mPipeline.onSeekApplied(mLastSeekId);
+        mPipeline.onTimeChanged(100);
+        assertEquals(2, mPipeline.getIssuedCount());
+        assertTrue(mPipeline.isInFlight());
+
+        mPipeline.stopDrag(3500, 120);
+        // the release replaces the in-flight drag seek, nothing was pending
+        assertEquals("[fast 1000, fast 3000, precise 3500]", mSeeks.toString());
+        assertEquals(1, mPipeline.getDroppedCount());
+        assertEquals(4, mPipeline.getRequestCount());
+    }
+
+    @Test
+    public void appliedReportOfSupersededSeekIsIgnored() {
+        mPipeline.seek(1000, 0);
+        long first = mLastSeekId;
+        mPipeline.seek(2000, 10);
+        mPipeline.onSeekApplied(first);
+        mPipeline.onTimeChanged(50);
+        assertTrue(mPipeline.isInFlight());
+
+        mPipeline.onSeekApplied(mLastSeekId);
+        mPipeline.onTimeChanged(60);
+        assertFalse(mPipeline.isInFlight());
+        assertEquals(50, mPipeline.getLastLatencyMs());
+    }
+
+    @Test
+    public void timeoutFiresWithoutFurtherRequests() {
+        mPipeline.startDrag();
+        mPipeline.dragTo(1000, 0);
+        mPipeline.dragTo(2000, 10);
+        assertNotNull(mTimeout);
+
+        // paused: the player applies the seek but reports no time
+        mPipeline.onSeekApplied(mLastSeekId);
+        mTimeout.run();
+        assertEquals(1, mPipeline.getTimedOutCount());
+        // the pending target goes out right away, with a fresh timeout
+        assertEquals("[fast 1000, fast 2000]", mSeeks.toString());
+        assertTrue(mPipeline.isInFlight());
+        assertNotNull(mTimeout);
+
+        mTimeout.run();
+        assertEquals(2, mPipeline.getTimedOutCount());
+        assertFalse(mPipeline.isInFlight());
+        assertEquals(0, mPipeline.getAverageLatencyMs());
+    }
+
+    @Test
+    public void resetCancelsTheTimeout() {
+        mPipeline.seek(1000, 0);
+        mPipeline.reset();
+        assertNull(mTimeout);
+        assertFalse(mPipeline.isInFlight());
+
+        mPipeline.onSeekApplied(mLastSeekId);
+        mPipeline.onTimeChanged(100);
+        assertEquals(0, mPipeline.getLastLatencyMs());
+    }
+}
@@ -0,0 +1,124 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SurfaceGeometryTest {
+
+    @Test
+    public void bestFitLetterboxes() throws Exception {
+        SurfaceGeometry geometry = SurfaceGeometry.compute(1920, 1080, false,
+                1280, 544, 1280, 534, 1, 1, VLCVideoPlayer.SURFACE_BEST_FIT);
+        assertEquals(1280, geometry.bufferWidth);
+        assertEquals(544, geometry.bufferHeight);
+        assertEquals(1920, geometry.frameWidth);
+        assertEquals(801, geometry.frameHeight);
+        // the padded buffer rows are pushed outside the frame
+        assertEquals(1920, geometry.surfaceWidth);
+        assertEquals(816, geometry.surfaceHeight);
+    }
+
+    @Test
+    public void fitHorizontalUsesSampleAspectRatio() throws Exception {
+        // anamorphic 720x576 PAL 16:9
+        SurfaceGeometry geometry = SurfaceGeometry.compute(1080, 1920, true,
+                720, 576, 720, 576, 64, 45, VLCVideoPlayer.SURFACE_FIT_HORIZONTAL);
+        assertEquals(1080, geometry.frameWidth);
+        assertEquals(607, geometry.frameHeight);
+
+        geometry = SurfaceGeometry.compute(1080, 1920, true,
+                720, 576, 720, 576, 64, 45, VLCVideoPlayer.SURFACE_ORIGINAL);
+        assertEquals(1024, geometry.frameWidth);
+        assertEquals(576, geometry.frameHeight);
+    }
+
+    @Test
+    public void swapsDisplaySizeToMatchOrientation() throws Exception {
+        SurfaceGeometry landscape = SurfaceGeometry.compute(1920, 1080, false,
+                640, 480, 640, 480, 1, 1, VLCVideoPlayer.SURFACE_FILL);
+        SurfaceGeometry stale = SurfaceGeometry.compute(1080, 1920, false,
+                640, 480, 640, 480, 1, 1, VLCVideoPlayer.SURFACE_FILL);
+        assertEquals(landscape, stale);
+        assertEquals(1920, landscape.frameWidth);
+    }
+
+    @Test
+    public void unknownSizesYieldNothing() throws Exception {
+        assertNull(SurfaceGeometry.compute(0, 0, true, 640, 480, 640, 480, 1, 1, VLCVideoPlayer.SURFACE_BEST_FIT));
+        assertNull(SurfaceGeometry.compute(1920, 1080, false, 0, 0, 0, 0, 0, 0, VLCVideoPlayer.SURFACE_BEST_FIT));
+    }
+
+    @Test
+    public void detectsWhichPartChanged() throws Exception {
+        SurfaceGeometry a = SurfaceGeometry.compute(1920, 1080, false,
+                1280, 720, 1280, 720, 1, 1, VLCVideoPlayer.SURFACE_BEST_FIT);
+        SurfaceGeometry sameOutput = SurfaceGeometry.compute(1920, 1080, false,
+                1280, 720, 1280, 720, 1, 1, VLCVideoPlayer.SURFACE_BEST_FIT);
+        assertEquals(a, sameOutput);
+        assertEquals(a.hashCode(), sameOutput.hashCode());
+
+        SurfaceGeometry upscaled = SurfaceGeometry.compute(1920, 1080, false,
+                1920, 1080, 1920, 1080, 1, 1, VLCVideoPlayer.SURFACE_BEST_FIT);
+        assertFalse(a.sameBuffer(upscaled));
+        assertTrue(a.sameSurface(upscaled));
+        assertTrue(a.sameFrame(upscaled));
+        assertFalse(a.sameBuffer(null));
+    }
+
+    @Test
+    public void textureTransformScalesStretchedBufferToGeometry() throws Exception {
+        // a 1280x720 view showing 4:3 video, best fit: 960x720 pillarboxed
+        SurfaceGeometry geometry = SurfaceGeometry.compute(1280, 720, false,
+                640, 480, 640, 480, 1, 1, VLCVideoPlayer.SURFACE_BEST_FIT);
+        float[] t = new float[6];
+        geometry.textureTransform(1280, 720, 1f, 0, 0, t);
+        assertEquals(0.75f, t[0], 0.0001f);
+        assertEquals(1f, t[1], 0.0001f);
+        assertEquals(160f, t[2], 0.0001f);
+        assertEquals(0f, t[3], 0.0001f);
+    }
+
+    @Test
+    public void texturePanIsClampedToKeepViewCovered() throws Exception {
+        SurfaceGeometry geometry = SurfaceGeometry.compute(1280, 720, false,
+                1280, 720, 1280, 720, 1, 1, VLCVideoPlayer.SURFACE_BEST_FIT);
+        float[] t = new float[6];
+        geometry.textureTransform(1280, 720, 2f, 1000, -100, t);
+        // 2560x1440 picture may move at most 640 / 360 pixels off center
+        assertEquals(640f, t[4], 0.0001f);
+        assertEquals(-100f, t[5], 0.0001f);
+        assertEquals(2f, t[0], 0.0001f);
+        assertEquals(0f, t[2], 0.0001f);
+        assertEquals(-460f, t[3], 0.0001f);
+
+        // without zoom there is nothing to pan
+        geometry.textureTransform(1280, 720, 1f, 50, 50, t);
+        assertEquals(0f, t[4], 0.0001f);
+        assertEquals(0f, t[5], 0.0001f);
+    }
+
+    @Test
+    public void bufferCapFollowsOnScreenSize() throws Exception {
+        // 4K stream in a 640x360 grid cell
+        SurfaceGeometry geometry = SurfaceGeometry.compute(640, 360, false,
+                3840, 2160, 3840, 2160, 1, 1, VLCVideoPlayer.SURFACE_BEST_FIT);
+        SurfaceGeometry capped = geometry.withBufferCappedToSurface();
+        assertEquals(640, capped.bufferWidth);
+        assertEquals(360, capped.bufferHeight);
+        assertTrue(capped.sameSurface(geometry));
+        assertTrue(capped.sameFrame(geometry));
+
+        // odd sizes are rounded down to even ones
+        geometry = SurfaceGeometry.compute(641, 361, false,
+                3840, 2160, 3840, 2160, 1, 1, VLCVideoPlayer.SURFACE_FILL);
+        capped = geometry.withBufferCappedToSurface();
+        assertEquals(640, capped.bufferWidth);
+        assertEquals(360, capped.bufferHeight);
+
+        // never scaled up
+        geometry = SurfaceGeometry.compute(1920, 1080, false,
+                640, 360, 640, 360, 1, 1, VLCVideoPlayer.SURFACE_BEST_FIT);
+        assertSame(geometry, geometry.withBufferCappedToSurface());
+    }
+}
@@ -0,0 +1,78 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ThumbnailDiskCacheTest {
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws Exception {
+        mDir = File.createTempFile("thumbnail", "cache");
+        assertTrue(mDir.delete());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null)
+            for (File file : files) assertTrue(file.delete());
+        assertTrue(mDir.delete());
+    }
+
+    private static byte[] jpeg(int length, int fill) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) fill);
+        return data;
+    }
+
+    @Test
+    public void storesAndReplaces() {
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(mDir, 10000, 80);
+        assertNull(cache.getBytes("a"));
+        cache.putBytes("a", jpeg(100, 1));
+        assertArrayEquals(jpeg(100, 1), cache.getBytes("a"));
+        cache.putBytes("a", jpeg(50, 2));
+        assertArrayEquals(jpeg(50, 2), cache.getBytes("a"));
+        assertEquals(1, mDir.listFiles().length);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(mDir, 2500, 80);
+        cache.putBytes("a", jpeg(1000, 1));
+        cache.putBytes("b", jpeg(1000, 2));
+        // file times have a coarse resolution, so age them explicitly
+        assertTrue(new File(mDir, HttpDiskCache.keyFor("a") + ".jpg").setLastModified(2000000000L));
+        assertTrue(new File(mDir, HttpDiskCache.keyFor("b") + ".jpg").setLastModified(1000000000L));
+
+        cache.putBytes("c", jpeg(1000, 3));
+        assertNull(cache.getBytes("b"));
+        assertNotNull(cache.getBytes("a"));
+        assertNotNull(cache.getBytes("c"));
+    }
+
+    @Test
+    public void countsFilesLeftByEarlierRuns() {
+        ThumbnailDiskCache previous = new ThumbnailDiskCache(mDir, 10000, 80);
+        previous.putBytes("a", jpeg(1000, 1));
+        previous.putBytes("b", jpeg(1000, 2));
+        assertTrue(new File(mDir, HttpDiskCache.keyFor("a") + ".jpg").setLastModified(1000000000L));
+
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(mDir, 2500, 80);
+        cache.putBytes("c", jpeg(1000, 3));
+        assertNull(cache.getBytes("a"));
+        assertEquals(2, mDir.listFiles().length);
+
+        cache.clear();
+        assertEquals(0, mDir.listFiles().length);
+        assertNull(cache.getBytes("b"));
+    }
+}
@@ -0,0 +1,80 @@
+package com.insthync.vlc_videoplayer.library;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plain JVM microbenchmark comparing the old {@code String.format} label path with
+ * {@link TimeLabelFormatter}. Not a unit test; run its {@code main()} from the IDE.
+ * <p>
+ * Each iteration simulates one TimeChanged event (~4 per second of playback) updating
+ * both the position and the remaining-time label.
+ */
+public class TimeLabelFormatterBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final int EVENTS_PER_ROUND = 1000000;
+    private static final long DURATION_MS = TimeUnit.MINUTES.toMillis(95);
+    private static final long EVENT_INTERVAL_MS = 250;
+
+    private static long sSink;
+
+    public static void main(String[] args) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runStringFormat();
+            runFormatter();
+        }
+
+        long stringFormatNs = 0;
+        long formatterNs = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            stringFormatNs += runStringFormat();
+            formatterNs += runFormatter();
+        }
+
+        report("String.format", stringFormatNs);
+        report("TimeLabelFormatter", formatterNs);
+        System.out.println("sink " + sSink);
+    }
+
+    private static long runStringFormat() {
+        long start = System.nanoTime();
+        for (int i = 0; i < EVENTS_PER_ROUND; i++) {
+            long pos = (i * EVENT_INTERVAL_MS) % DURATION_MS;
+            sSink += oldDurationString(pos, false).length();
+            sSink += oldDurationString(DURATION_MS - pos, true).length();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runFormatter() {
+        TimeLabelFormatter position = new TimeLabelFormatter();
+        TimeLabelFormatter remaining = new TimeLabelFormatter();
+        long start = System.nanoTime();
+        for (int i = 0; i < EVENTS_PER_ROUND; i++) {
+            long pos = (i * EVENT_INTERVAL_MS) % DURATION_MS;
+            if (position.update(pos, false))
+                sSink += position.length();
+            if (remaining.update(DURATION_MS - pos, true))
+                sSink += remaining.length();
+        }
+        return System.nanoTime() - start;
+    }
+
+    // the implementation Util.getDurationString used before TimeLabelFormatter
+    private static String oldDurationString(long durationMs, boolean negativePrefix) {
+        return String.format(
+                Locale.getDefault(),
+                "%s%02d:%02d",
+                negativePrefix ? "-" : "",
+                TimeUnit.MILLISECONDS.toMinutes(durationMs),
+                TimeUnit.MILLISECONDS.toSeconds(durationMs)
+                        - TimeUnit.MINUTES.toSeconds(TimeUnit.MILLISECONDS.toMinutes(durationMs)));
+    }
+
+    private static void report(String name, long totalNs) {
+        double perEvent = (double) totalNs / ((long) MEASURED_ROUNDS * EVENTS_PER_ROUND);
+        System.out.println(String.format(Locale.US, "%-20s %8.1f ns/event", name, perEvent));
+    }
+}
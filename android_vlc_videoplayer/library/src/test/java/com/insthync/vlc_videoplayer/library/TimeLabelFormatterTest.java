@@ -0,0 +1,46 @@
+package com.insthync.vlc_videoplayer.library;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimeLabelFormatterTest {
+
+    private static String format(long durationMs, boolean negativePrefix) {
+        char[] buffer = new char[TimeLabelFormatter.MAX_LENGTH];
+        return new String(buffer, 0, TimeLabelFormatter.format(durationMs, negativePrefix, buffer));
+    }
+
+    @Test
+    public void formatsMinutesAndSeconds() throws Exception {
+        assertEquals("00:00", format(0, false));
+        assertEquals("00:59", format(59999, false));
+        assertEquals("01:00", format(60000, false));
+        assertEquals("-59:59", format(3599999, true));
+    }
+
+    @Test
+    public void formatsHoursPastSixtyMinutes() throws Exception {
+        assertEquals("1:00:00", format(3600000, false));
+        assertEquals("1:33:12", format((93 * 60 + 12) * 1000L, false));
+        assertEquals("-12:05:09", format(((12 * 60 + 5) * 60 + 9) * 1000L, true));
+    }
+
+    @Test
+    public void clampsNegativeDurations() throws Exception {
+        assertEquals("-00:00", format(-1500, true));
+    }
+
+    @Test
+    public void skipsUpdateWithinSameSecond() throws Exception {
+        TimeLabelFormatter formatter = new TimeLabelFormatter();
+        assertTrue(formatter.update(1000, false));
+        assertFalse(formatter.update(1999, false));
+        assertTrue(formatter.update(1999, true));
+        assertTrue(formatter.update(2000, true));
+        assertEquals("-00:02", new String(formatter.buffer(), 0, formatter.length()));
+
+        formatter.reset();
+        assertTrue(formatter.update(2000, true));
+    }
+}
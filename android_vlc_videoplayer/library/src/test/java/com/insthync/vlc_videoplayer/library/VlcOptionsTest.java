@@ -0,0 +1,95 @@
+package com.insthync.vlc_videoplayer.library;
+
+import android.graphics.ImageFormat;
+import android.graphics.PixelFormat;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VlcOptionsTest {
+
+    private static final DeviceSpecs QUAD_CORE = new DeviceSpecs(4, 1800, 38, false, true, false, 2048);
+    private static final DeviceSpecs ARMV6 = new DeviceSpecs(1, 800, 700, true, false, false, 512);
+
+    @Test
+    public void defaultsMatchLegacyArguments() throws Exception {
+        List<String> args = new VlcOptions().get(QUAD_CORE);
+        assertEquals("--no-audio-time-stretch", args.get(0));
+        assertEquals("1", valueOf(args, "--avcodec-skiploopfilter"));
+        assertEquals("0", valueOf(args, "--avcodec-skip-frame"));
+        assertEquals("soxr", valueOf(args, "--audio-resampler"));
+        assertFalse(hasPrefix(args, "--network-caching"));
+    }
+
+    @Test
+    public void deblockingFollowsDeviceSpecs() throws Exception {
+        VlcOptions options = new VlcOptions();
+        assertEquals("4", valueOf(options.get(ARMV6), "--avcodec-skiploopfilter"));
+        assertEquals("ugly", valueOf(options.get(ARMV6), "--audio-resampler"));
+        assertEquals("-1", valueOf(options.get(null), "--avcodec-skiploopfilter"));
+        assertEquals("2", valueOf(VlcOptions.newBuilder().setDeblocking(2).build().get(ARMV6), "--avcodec-skiploopfilter"));
+    }
+
+    @Test
+    public void builderEmitsTunedArguments() throws Exception {
+        List<String> args = VlcOptions.newBuilder()
+                .setNetworkCaching(90000)
+                .setFileCaching(300)
+                .setLiveCaching(150)
+                .setFrameSkipEnabled(true)
+                .setThreads(2)
+                .setChroma(VlcOptions.CHROMA_RGB16)
+                .setResampler(VlcOptions.RESAMPLER_UGLY)
+                .addExtraArgs("--no-sub-autodetect-file")
+                .build()
+                .get(QUAD_CORE);
+
+        assertTrue(args.contains("--network-caching=60000"));
+        assertTrue(args.contains("--file-caching=300"));
+        assertTrue(args.contains("--live-caching=150"));
+        assertTrue(args.contains("--avcodec-threads=2"));
+        assertTrue(args.contains("--no-sub-autodetect-file"));
+        assertEquals("2", valueOf(args, "--avcodec-skip-frame"));
+        assertEquals("RV16", valueOf(args, "--android-display-chroma"));
+        assertEquals("ugly", valueOf(args, "--audio-resampler"));
+    }
+
+    @Test
+    public void equalOptionsShareHashCode() throws Exception {
+        VlcOptions a = VlcOptions.newBuilder().setNetworkCaching(1500).addExtraArgs("--foo").build();
+        VlcOptions b = VlcOptions.newBuilder().addExtraArgs("--foo").setNetworkCaching(1500).build();
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(a, a.toBuilder().build());
+        assertEquals(new VlcOptions(), VlcOptions.newBuilder().build());
+
+        assertNotEquals(a, a.toBuilder().setNetworkCaching(1000).build());
+        assertNotEquals(a, a.toBuilder().setChroma(VlcOptions.CHROMA_YV12).build());
+    }
+
+    private static String valueOf(List<String> args, String name) {
+        int i = args.indexOf(name);
+        assertTrue(name + " missing", i >= 0 && i + 1 < args.size());
+        return args.get(i + 1);
+    }
+
+    @Test
+    public void pixelFormatFollowsChroma() throws Exception {
+        assertEquals(PixelFormat.RGBX_8888, new VlcOptions().getPixelFormat());
+        assertEquals(PixelFormat.RGBX_8888,
+                VlcOptions.newBuilder().setChroma(VlcOptions.CHROMA_RGB32).build().getPixelFormat());
+        assertEquals(PixelFormat.RGB_565,
+                VlcOptions.newBuilder().setChroma(VlcOptions.CHROMA_RGB16).build().getPixelFormat());
+        assertEquals(ImageFormat.YV12,
+                VlcOptions.newBuilder().setChroma(VlcOptions.CHROMA_YV12).build().getPixelFormat());
+    }
+
+    private static boolean hasPrefix(List<String> args, String prefix) {
+        for (String arg : args)
+            if (arg.startsWith(prefix)) return true;
+        return false;
+    }
+}